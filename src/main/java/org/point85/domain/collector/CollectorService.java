@@ -6,10 +6,13 @@ import java.net.InetAddress;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ExecutorService;
@@ -27,11 +30,16 @@ import org.point85.domain.db.DatabaseEventClient;
 import org.point85.domain.db.DatabaseEventListener;
 import org.point85.domain.db.DatabaseEventSource;
 import org.point85.domain.db.DatabaseEventStatus;
+import org.point85.domain.file.FileCheckpoint;
 import org.point85.domain.file.FileEventClient;
 import org.point85.domain.file.FileEventListener;
 import org.point85.domain.file.FileEventSource;
+import org.point85.domain.file.FileProcessor;
+import org.point85.domain.http.EquipmentEventRequestDto;
+import org.point85.domain.http.EquipmentEventResponseDto;
 import org.point85.domain.http.HttpEventListener;
 import org.point85.domain.http.HttpSource;
+import org.point85.domain.http.NioHttpServer;
 import org.point85.domain.http.OeeHttpServer;
 import org.point85.domain.jms.JMSClient;
 import org.point85.domain.jms.JMSEquipmentEventListener;
@@ -64,10 +72,9 @@ import org.point85.domain.opc.ua.OpcUaAsynchListener;
 import org.point85.domain.opc.ua.OpcUaSource;
 import org.point85.domain.opc.ua.UaOpcClient;
 import org.point85.domain.persistence.PersistenceService;
+import org.point85.domain.persistence.UnitOfWork;
 import org.point85.domain.plant.Equipment;
 import org.point85.domain.plant.EquipmentEventResolver;
-import org.point85.domain.plant.KeyedObject;
-import org.point85.domain.plant.Reason;
 import org.point85.domain.script.EventResolver;
 import org.point85.domain.script.OeeContext;
 import org.point85.domain.script.OeeEventType;
@@ -97,6 +104,9 @@ public class CollectorService
 	// sec for a event resolution message to live in the queue
 	private static final int RESOLUTION_TTL_SEC = 3600;
 
+	// msec to wait for the event journal to drain at shutdown
+	private static final long JOURNAL_DRAIN_MSEC = 5000;
+
 	// thread pool service
 	private final ExecutorService executorService = Executors.newCachedThreadPool();
 
@@ -121,9 +131,17 @@ public class CollectorService
 	// JVM host name
 	private String hostname;
 
+	// startup time in msec and time from startup to the first saved event
+	private volatile long startupMillis = 0;
+	private volatile Duration timeToFirstEvent;
+
 	// JVM host IP address
 	private String ip;
 
+	// optional local journal of resolved events and its replay thread
+	private EventJournal eventJournal;
+	private EventJournalReplayer journalReplayer;
+
 	// data source information
 	private final Map<String, OpcDaInfo> opcDaSubscriptionMap = new HashMap<>();
 	private final Map<String, OpcUaInfo> opcUaSubscriptionMap = new HashMap<>();
@@ -148,6 +166,9 @@ public class CollectorService
 		fileServerMap.clear();
 		mqttBrokerMap.clear();
 
+		// pick up definitions changed by other processes, e.g. before a restart
+		PersistenceService.instance().getReferenceCache().clear();
+
 		gson = new Gson();
 		appContext = new OeeContext();
 		equipmentResolver = new EquipmentEventResolver();
@@ -158,6 +179,23 @@ public class CollectorService
 		return appContext;
 	}
 
+	// time from startup to the first saved event, or null if none yet
+	public Duration getTimeToFirstEvent() {
+		return timeToFirstEvent;
+	}
+
+	private void onEventSaved() {
+		if (timeToFirstEvent != null || startupMillis == 0) {
+			return;
+		}
+
+		timeToFirstEvent = Duration.ofMillis(System.currentTimeMillis() - startupMillis);
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Time to first event: " + timeToFirstEvent.toMillis() + " msec");
+		}
+	}
+
 	// collect all HTTP server info
 	private void buildHttpServers(EventResolver resolver) throws Exception {
 		HttpSource source = (HttpSource) resolver.getDataSource();
@@ -370,6 +408,17 @@ public class CollectorService
 
 			FileEventClient fileClient = new FileEventClient(this, fileEventSource, sourceIds, pollingIntervals);
 
+			// parallel processing and recovery of unfinished files
+			fileClient.setProcessorThreads(FileProcessor.getConfiguredThreads());
+			fileClient.createFolders();
+			fileClient.recoverFiles();
+
+			// event-driven detection of new files
+			fileClient.setWatchMode(Boolean.getBoolean(FileEventClient.WATCH_MODE_PROPERTY));
+
+			// one event per record
+			fileClient.setStreamingMode(Boolean.getBoolean(FileEventClient.STREAMING_MODE_PROPERTY));
+
 			// add to context
 			appContext.getFileEventClients().add(fileClient);
 
@@ -391,6 +440,9 @@ public class CollectorService
 			}
 
 			OeeHttpServer httpServer = new OeeHttpServer(port);
+			httpServer.setNonBlocking(Boolean.getBoolean(OeeHttpServer.NIO_MODE_PROPERTY));
+			httpServer.setWorkerThreads(
+					Integer.getInteger(OeeHttpServer.NIO_WORKERS_PROPERTY, NioHttpServer.DEFAULT_WORKERS));
 			httpServer.setDataChangeListener(this);
 			httpServer.setAcceptingEventRequests(true);
 			httpServer.startup();
@@ -654,6 +706,15 @@ public class CollectorService
 			logger.info("Beginning startup");
 		}
 
+		startupMillis = System.currentTimeMillis();
+		timeToFirstEvent = null;
+
+		// warm up the persistence layer while connecting to the data sources
+		PersistenceService.instance().warmUp();
+
+		// journal resolved events locally if configured
+		startEventJournal();
+
 		// our host
 		InetAddress address = InetAddress.getLocalHost();
 		hostname = address.getHostName();
@@ -839,6 +900,8 @@ public class CollectorService
 			onException("Unable to stop data collection.", e);
 		}
 
+		stopEventJournal();
+
 		// shutdown executor service
 		executorService.shutdown();
 
@@ -960,10 +1023,68 @@ public class CollectorService
 		getExecutorService().execute(new HttpTask(sourceId, dataValue, timestamp, reason));
 	}
 
+	// HTTP batch request, resolved on the calling thread so each event has a status
+	@Override
+	public List<EquipmentEventResponseDto> onHttpEquipmentEvents(List<EquipmentEventRequestDto> events) {
+		List<EquipmentEventResponseDto> responses = new ArrayList<>(events.size());
+		List<OeeEvent> resolvedEvents = new ArrayList<>(events.size());
+		List<EquipmentEventResponseDto> resolvedResponses = new ArrayList<>(events.size());
+
+		for (EquipmentEventRequestDto dto : events) {
+			EquipmentEventResponseDto response = new EquipmentEventResponseDto();
+			responses.add(response);
+
+			try {
+				OffsetDateTime odt = null;
+				if (dto.getTimestamp() != null) {
+					odt = DomainUtils.offsetDateTimeFromString(dto.getTimestamp(), DomainUtils.OFFSET_DATE_TIME_8601);
+				}
+
+				OeeEvent resolvedEvent = resolveOeeEvent(dto.getSourceId(), dto.getValue(), odt, dto.getReason());
+
+				if (resolvedEvent != null) {
+					checkDuration(resolvedEvent);
+					resolvedEvents.add(resolvedEvent);
+					resolvedResponses.add(response);
+				}
+			} catch (Exception e) {
+				response.setErrorText(e.getMessage());
+			}
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info("HTTP event batch of " + events.size() + " events, " + resolvedEvents.size() + " resolved");
+		}
+
+		try {
+			recordResolutions(resolvedEvents);
+		} catch (Exception e) {
+			onException("Unable to save the HTTP event batch.", e);
+
+			for (EquipmentEventResponseDto response : resolvedResponses) {
+				response.setErrorText("Unable to save the event batch: " + e.getMessage());
+			}
+		}
+		return responses;
+	}
+
 	// File request
 	@Override
 	public void resolveFileEvents(FileEventClient client, String sourceId, List<File> files) {
-		getExecutorService().execute(new FileTask(client, sourceId, files));
+		FileProcessor processor = client.getFileProcessor(sourceId);
+
+		for (File file : files) {
+			FileTask task = new FileTask(client, sourceId, file);
+
+			if (processor != null) {
+				if (!processor.submit(file, task)) {
+					// stopped or busy, so leave it for the next poll
+					client.stopProcessing(file);
+				}
+			} else {
+				getExecutorService().execute(task);
+			}
+		}
 	}
 
 	@Override
@@ -973,6 +1094,12 @@ public class CollectorService
 	}
 
 	private void purgeRecords(OeeEvent event) throws Exception {
+		// whole partitions are dropped by EventPartitionManager.maintain with one
+		// retention period for all equipment
+		if (PersistenceService.instance().isEventTablePartitioned()) {
+			return;
+		}
+
 		Equipment equipment = event.getEquipment();
 
 		Duration days = equipment.findRetentionPeriod();
@@ -1005,32 +1132,115 @@ public class CollectorService
 			logger.info("Saving OEE event to database: " + event);
 		}
 
-		List<KeyedObject> records = new ArrayList<>();
-		records.add(event);
+		// one EntityManager and transaction for the reads, writes and purge
+		try (UnitOfWork work = PersistenceService.instance().beginUnitOfWork()) {
+			List<OeeEvent> records = new ArrayList<>();
+			records.add(event);
+
+			// close off previous events if not summarized
+			OeeEventType type = event.getEventType();
+
+			if (!type.isProduction() && event.getOffsetEndTime() == null) {
+				// availability, material or job change
+				OeeEvent lastRecord = PersistenceService.instance().fetchLastEvent(event.getEquipment(), type);
 
-		// close off previous events if not summarized
-		OeeEventType type = event.getEventType();
+				if (lastRecord != null) {
+					lastRecord.setOffsetEndTime(event.getOffsetStartTime());
+					Duration duration = Duration.between(lastRecord.getStartTime(), lastRecord.getEndTime());
+					lastRecord.setDuration(duration);
 
-		if (!type.isProduction() && event.getOffsetEndTime() == null) {
-			// availability, material or job change
-			OeeEvent lastRecord = PersistenceService.instance().fetchLastEvent(event.getEquipment(), type);
+					records.add(lastRecord);
+				}
+			}
 
-			if (lastRecord != null) {
-				lastRecord.setOffsetEndTime(event.getOffsetStartTime());
-				Duration duration = Duration.between(lastRecord.getStartTime(), lastRecord.getEndTime());
-				lastRecord.setDuration(duration);
+			// save records
+			PersistenceService.instance().saveEvents(records);
 
-				records.add(lastRecord);
+			// purge old data
+			if (!type.isProduction()) {
+				purgeRecords(event);
 			}
+
+			work.commit();
 		}
+		onEventSaved();
+	}
+
+	public void saveOeeEvents(List<OeeEvent> events) throws Exception {
+		// one EntityManager and transaction for the whole batch
+		try (UnitOfWork work = PersistenceService.instance().beginUnitOfWork()) {
+			List<OeeEvent> records = new ArrayList<>();
+
+			// last open event by equipment and type, including those in this batch
+			Map<Equipment, Map<OeeEventType, OeeEvent>> lastEvents = new HashMap<>();
 
-		// save records
-		PersistenceService.instance().save(records);
+			// equipment with events that can be purged
+			Set<Equipment> purgeEquipment = new HashSet<>();
 
-		// purge old data
-		if (!type.isProduction()) {
-			purgeRecords(event);
+			for (OeeEvent event : events) {
+				Equipment equipment = event.getEquipment();
+				Duration days = equipment.findRetentionPeriod();
+
+				if (days != null && days.equals(Duration.ZERO)) {
+					// no need to save or purge
+					continue;
+				}
+
+				records.add(event);
+
+				// close off previous events if not summarized
+				OeeEventType type = event.getEventType();
+
+				if (!type.isProduction() && event.getOffsetEndTime() == null) {
+					Map<OeeEventType, OeeEvent> typeEvents = lastEvents.computeIfAbsent(equipment,
+							k -> new EnumMap<>(OeeEventType.class));
+
+					OeeEvent lastRecord = typeEvents.get(type);
+
+					if (lastRecord == null) {
+						lastRecord = PersistenceService.instance().fetchLastEvent(equipment, type);
+
+						if (lastRecord != null) {
+							records.add(lastRecord);
+						}
+					}
+
+					if (lastRecord != null) {
+						lastRecord.setOffsetEndTime(event.getOffsetStartTime());
+						Duration duration = Duration.between(lastRecord.getStartTime(), lastRecord.getEndTime());
+						lastRecord.setDuration(duration);
+					}
+					typeEvents.put(type, event);
+				}
+
+				if (!type.isProduction()) {
+					purgeEquipment.add(equipment);
+				}
+			}
+
+			if (records.isEmpty()) {
+				// nothing to save, which is not a failure of an enclosing unit of work
+				work.commit();
+				return;
+			}
+
+			if (logger.isInfoEnabled()) {
+				logger.info("Saving " + records.size() + " OEE event records to database in one transaction");
+			}
+
+			// save records
+			PersistenceService.instance().saveEvents(records);
+
+			// purge old data once per equipment
+			for (OeeEvent event : events) {
+				if (purgeEquipment.remove(event.getEquipment())) {
+					purgeRecords(event);
+				}
+			}
+
+			work.commit();
 		}
+		onEventSaved();
 	}
 
 	@Override
@@ -1340,6 +1550,78 @@ public class CollectorService
 	}
 
 	public synchronized void recordResolution(OeeEvent resolvedEvent) throws Exception {
+		checkDuration(resolvedEvent);
+
+		// save in database, through the journal if enabled
+		if (eventJournal != null) {
+			journalEvent(resolvedEvent);
+			journalReplayer.signal();
+		} else {
+			saveOeeEvent(resolvedEvent);
+		}
+
+		// send event message
+		sendResolutionMessage(resolvedEvent);
+	}
+
+	// append to the journal to be saved by the replayer
+	private void journalEvent(OeeEvent resolvedEvent) throws Exception {
+		eventJournal.append(encodeEvent(resolvedEvent));
+	}
+
+	// an event that cannot be replayed fails instead of being saved ahead of the
+	// journal
+	private byte[] encodeEvent(OeeEvent resolvedEvent) throws Exception {
+		try {
+			return EventJournalCodec.encode(resolvedEvent);
+		} catch (Exception e) {
+			// e.g. an unsaved reason
+			throw new Exception("The resolved event cannot be journaled: " + e.getMessage(), e);
+		}
+	}
+
+	private void startEventJournal() throws Exception {
+		if (eventJournal != null) {
+			return;
+		}
+
+		eventJournal = EventJournal.fromSystemProperties();
+
+		if (eventJournal == null) {
+			return;
+		}
+
+		journalReplayer = new EventJournalReplayer(eventJournal, this);
+		journalReplayer.start();
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Journaling resolved events in " + eventJournal.getDirectory() + " with fsync policy "
+					+ eventJournal.getFsyncPolicy());
+		}
+	}
+
+	private synchronized void stopEventJournal() {
+		if (eventJournal == null) {
+			return;
+		}
+
+		// give the replayer a chance to save what is left
+		journalReplayer.stop(JOURNAL_DRAIN_MSEC);
+
+		try {
+			eventJournal.close();
+		} catch (IOException e) {
+			onException("Unable to close the event journal.", e);
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Event journal closed with " + eventJournal.getPendingBytes() + " bytes to replay.");
+		}
+		eventJournal = null;
+		journalReplayer = null;
+	}
+
+	private void checkDuration(OeeEvent resolvedEvent) throws Exception {
 		if (resolvedEvent.getOffsetEndTime() != null && resolvedEvent.getDuration() != null) {
 			Duration delta = Duration.between(resolvedEvent.getStartTime(), resolvedEvent.getEndTime());
 
@@ -1348,17 +1630,45 @@ public class CollectorService
 						+ " cannot be greater than the time period duration of " + delta);
 			}
 		}
+	}
+
+	// save a batch of resolved events in one transaction
+	public synchronized void recordResolutions(List<OeeEvent> resolvedEvents) throws Exception {
+		for (OeeEvent resolvedEvent : resolvedEvents) {
+			checkDuration(resolvedEvent);
+		}
 
-		// save in database
-		saveOeeEvent(resolvedEvent);
+		// save in database, through the journal if enabled
+		if (eventJournal != null) {
+			// encode all first so that a failure journals none of the batch
+			List<byte[]> payloads = new ArrayList<>(resolvedEvents.size());
+			for (OeeEvent resolvedEvent : resolvedEvents) {
+				payloads.add(encodeEvent(resolvedEvent));
+			}
 
-		// send event message
-		sendResolutionMessage(resolvedEvent);
+			for (byte[] payload : payloads) {
+				eventJournal.append(payload);
+			}
+			journalReplayer.signal();
+		} else {
+			saveOeeEvents(resolvedEvents);
+		}
+
+		// send event messages
+		for (OeeEvent resolvedEvent : resolvedEvents) {
+			sendResolutionMessage(resolvedEvent);
+		}
 	}
 
 	private void sendResolutionMessage(OeeEvent resolvedEvent) {
 		try {
-			if (appContext.getMessagingClients().size() == 0) {
+			boolean hasPushClients = false;
+
+			for (OeeHttpServer httpServer : appContext.getHttpServers()) {
+				hasPushClients |= httpServer.hasPushClients();
+			}
+
+			if (appContext.getMessagingClients().size() == 0 && !hasPushClients) {
 				return;
 			}
 
@@ -1366,6 +1676,17 @@ public class CollectorService
 			CollectorResolvedEventMessage message = new CollectorResolvedEventMessage(hostname, ip);
 			message.fromResolvedEvent(resolvedEvent);
 
+			// push to HTTP clients
+			if (hasPushClients) {
+				for (OeeHttpServer httpServer : appContext.getHttpServers()) {
+					httpServer.publishResolvedEvent(message);
+				}
+			}
+
+			if (appContext.getMessagingClients().size() == 0) {
+				return;
+			}
+
 			for (MessagingClient pubsub : appContext.getMessagingClients()) {
 				pubsub.publish(message, RoutingKey.RESOLVED_EVENT, RESOLUTION_TTL_SEC);
 			}
@@ -1389,30 +1710,39 @@ public class CollectorService
 
 	private void resolveEvent(String sourceId, Object dataValue, OffsetDateTime timestamp, String reason)
 			throws Exception {
-		EventResolver eventResolver = equipmentResolver.getResolver(sourceId);
+		OeeEvent resolvedEvent = resolveOeeEvent(sourceId, dataValue, timestamp, reason);
+
+		if (resolvedEvent != null) {
+			recordResolution(resolvedEvent);
+		}
+	}
+
+	// returns null if the resolver is in watch mode
+	private OeeEvent resolveOeeEvent(String sourceId, Object dataValue, OffsetDateTime timestamp, String reason)
+			throws Exception {
+		// one EntityManager for the lookups, closed when the event is resolved
+		try (UnitOfWork work = PersistenceService.instance().beginUnitOfWork()) {
+			EventResolver eventResolver = equipmentResolver.getResolver(sourceId);
 
-		// event
-		OeeEvent resolvedEvent = equipmentResolver.invokeResolver(eventResolver, getAppContext(), dataValue, timestamp);
+			// event
+			OeeEvent resolvedEvent = equipmentResolver.invokeResolver(eventResolver, getAppContext(), dataValue,
+					timestamp);
 
-		// reason
-		String reasonName = reason;
+			// reason
+			String reasonName = reason;
 
-		if (reasonName == null) {
-			// could have been set in the resolver script code
-			reasonName = eventResolver.getReason();
-		}
+			if (reasonName == null) {
+				// could have been set in the resolver script code
+				reasonName = eventResolver.getReason();
+			}
 
-		if (reasonName != null) {
-			Reason eventReason = PersistenceService.instance().fetchReasonByName(reasonName);
-			
-			if (eventReason == null) {
-				throw new Exception("Reason " + reasonName + " is not defined.");
+			if (reasonName != null) {
+				resolvedEvent.setReason(equipmentResolver.fetchReason(reasonName));
 			}
-			resolvedEvent.setReason(eventReason);
-		}
 
-		if (!eventResolver.isWatchMode()) {
-			recordResolution(resolvedEvent);
+			work.commit();
+
+			return eventResolver.isWatchMode() ? null : resolvedEvent;
 		}
 	}
 
@@ -1664,48 +1994,112 @@ public class CollectorService
 	private class FileTask implements Runnable {
 		private final FileEventClient fileClient;
 		private final String sourceId;
-		private final List<File> files;
+		private final File file;
 
-		FileTask(FileEventClient fileClient, String sourceId, List<File> files) {
+		FileTask(FileEventClient fileClient, String sourceId, File file) {
 			this.fileClient = fileClient;
 			this.sourceId = sourceId;
-			this.files = files;
+			this.file = file;
 		}
 
 		@Override
 		public void run() {
-			for (File file : files) {
-				try {
-					// event time (unless set by script)
-					OffsetDateTime timestamp = fileClient.getFileService().extractTimestamp(file);
+			try {
+				// event time (unless set by script)
+				OffsetDateTime timestamp = fileClient.getFileService().extractTimestamp(file);
 
-					if (logger.isInfoEnabled()) {
-						logger.info("File event, file: " + file.getName() + ", source: " + sourceId + ", timestamp: "
-								+ timestamp);
-					}
+				if (logger.isInfoEnabled()) {
+					logger.info("File event, file: " + file.getName() + ", source: " + sourceId + ", timestamp: "
+							+ timestamp);
+				}
 
+				if (fileClient.isStreamingMode()) {
+					// move to in-process then resolve each record
+					fileClient.moveFile(file, FileEventClient.READY_FOLDER, FileEventClient.PROCESSING_FOLDER);
+					resolveRecords(timestamp);
+				} else {
 					// read contents in ready folder
 					String fileContent = fileClient.readFile(file);
 
 					// move to in-process
 					fileClient.moveFile(file, FileEventClient.READY_FOLDER, FileEventClient.PROCESSING_FOLDER);
 
-					// resolve event
-					resolveEvent(sourceId, fileContent, timestamp, null);
+					// resolve event unless it was before a crash
+					try (FileCheckpoint checkpoint = fileClient.openCheckpoint(file)) {
+						if (checkpoint.getRecords() == 0) {
+							resolveEvent(sourceId, fileContent, timestamp, null);
+							checkpoint.setRecords(1, 0);
+						}
+					}
+				}
+
+				// move to pass folder
+				fileClient.moveFile(file, FileEventClient.PROCESSING_FOLDER, FileEventClient.PASS_FOLDER);
+
+			} catch (Exception e) {
+				onException("Unable to invoke script resolver.", e);
 
-					// move to pass folder
-					fileClient.moveFile(file, FileEventClient.PROCESSING_FOLDER, FileEventClient.PASS_FOLDER);
+				// fail
+				try {
+					fileClient.moveFile(file, FileEventClient.PROCESSING_FOLDER, FileEventClient.FAIL_FOLDER, e);
+				} catch (IOException ex) {
+					onException("Unable to move file.", ex);
+				}
+			} finally {
+				// out of the ready folder or available for retry
+				fileClient.stopProcessing(file);
+			}
+		}
 
-				} catch (Exception e) {
-					onException("Unable to invoke script resolver.", e);
+		// resolve each record in the processing folder as its own event
+		private void resolveRecords(OffsetDateTime timestamp) throws Exception {
+			File processingFile = fileClient.getFileInFolder(file, FileEventClient.PROCESSING_FOLDER);
+
+			Exception[] firstError = new Exception[1];
+			long[] failures = new long[1];
+			long count = 0;
+			long resumed = 0;
+			long resumedFailures = 0;
+
+			try (FileCheckpoint checkpoint = fileClient.openCheckpoint(file)) {
+				// records resolved before a crash, including those that failed
+				resumed = checkpoint.getRecords();
+				resumedFailures = checkpoint.getFailures();
+				failures[0] = resumedFailures;
+
+				count = fileClient.readRecords(processingFile, (record, recordNumber) -> {
+					if (recordNumber <= checkpoint.getRecords()) {
+						return;
+					}
 
-					// fail
 					try {
-						fileClient.moveFile(file, FileEventClient.PROCESSING_FOLDER, FileEventClient.FAIL_FOLDER, e);
-					} catch (IOException ex) {
-						onException("Unable to move file.", ex);
+						resolveEvent(sourceId, record, timestamp, null);
+					} catch (Exception e) {
+						failures[0]++;
+
+						if (firstError[0] == null) {
+							firstError[0] = e;
+						}
+						logger.error("Unable to resolve record " + recordNumber + " of file " + file.getName() + ".  "
+								+ e.getMessage());
 					}
+					checkpoint.setRecords(recordNumber, failures[0]);
+				});
+			}
+
+			if (logger.isInfoEnabled()) {
+				logger.info("Resolved " + (count - resumed - (failures[0] - resumedFailures)) + " of " + count
+						+ " records in file " + file.getName()
+						+ (resumed > 0 ? ", resuming after record " + resumed : ""));
+			}
+
+			if (failures[0] > 0) {
+				if (firstError[0] == null) {
+					// all of them failed before a crash
+					throw new Exception(failures[0] + " of " + count + " records failed before the file was recovered.");
 				}
+				throw new Exception(failures[0] + " of " + count + " records failed.  First error: "
+						+ firstError[0].getMessage(), firstError[0]);
 			}
 		}
 	}
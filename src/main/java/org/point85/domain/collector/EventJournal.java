@@ -0,0 +1,533 @@
+package org.point85.domain.collector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local append-only journal of resolved events written ahead of the database.
+ * Records are appended to memory-mapped segment files with a length and CRC32
+ * header. A checkpoint file holds the position of the first record that has
+ * not yet been saved to the database. Segments that have been completely saved
+ * are deleted, and appending fails when the journal reaches its maximum size.
+ *
+ */
+public class EventJournal implements Closeable {
+	// logger
+	private static final Logger logger = LoggerFactory.getLogger(EventJournal.class);
+
+	// system property for the journal directory, journaling is disabled if not set
+	public static final String DIRECTORY_PROPERTY = "event_journal_dir";
+
+	// system property for the fsync policy: always, interval or never
+	public static final String FSYNC_PROPERTY = "event_journal_fsync";
+
+	// system property for the msec between forced writes with the interval policy
+	public static final String FSYNC_INTERVAL_PROPERTY = "event_journal_fsync_msec";
+
+	// system property for the segment file size in MB
+	public static final String SEGMENT_SIZE_PROPERTY = "event_journal_segment_mb";
+
+	// system property for the maximum journal size in MB
+	public static final String MAX_SIZE_PROPERTY = "event_journal_max_mb";
+
+	public static final int DEFAULT_FSYNC_INTERVAL_MSEC = 100;
+	public static final int DEFAULT_SEGMENT_SIZE_MB = 16;
+	public static final int DEFAULT_MAX_SIZE_MB = 1024;
+
+	public enum FsyncPolicy {
+		ALWAYS, INTERVAL, NEVER;
+	}
+
+	// payload length and CRC32
+	private static final int HEADER_SIZE = 8;
+
+	private static final String SEGMENT_PREFIX = "journal-";
+	private static final String SEGMENT_SUFFIX = ".dat";
+	private static final String CHECKPOINT_FILE = "journal.checkpoint";
+
+	private final Path directory;
+	private final FsyncPolicy fsyncPolicy;
+	private final int segmentSize;
+	private final int maxSegments;
+
+	// segment files by sequence number
+	private final TreeMap<Long, Path> segmentFiles = new TreeMap<>();
+
+	// segment being appended to
+	private long writeSequence;
+	private FileChannel writeChannel;
+	private MappedByteBuffer writeBuffer;
+	private int writePosition;
+	private boolean dirty = false;
+
+	// first record not yet saved to the database
+	private long checkpointSequence;
+	private int checkpointPosition;
+
+	// read-only mapping of an earlier segment
+	private long readSequence = -1;
+	private MappedByteBuffer readBuffer;
+
+	private final CRC32 crc = new CRC32();
+
+	// timer for the interval fsync policy
+	private Timer fsyncTimer;
+
+	// metrics
+	private long appendCount = 0;
+	private long appendBytes = 0;
+
+	public EventJournal(Path directory, FsyncPolicy fsyncPolicy, int segmentSize, long maxSize) throws Exception {
+		if (segmentSize <= HEADER_SIZE || maxSize < segmentSize) {
+			throw new Exception("Invalid journal segment size " + segmentSize + " or maximum size " + maxSize);
+		}
+
+		this.directory = directory;
+		this.fsyncPolicy = fsyncPolicy;
+		this.segmentSize = segmentSize;
+		this.maxSegments = (int) Math.max(2, maxSize / segmentSize);
+
+		Files.createDirectories(directory);
+		open();
+	}
+
+	/**
+	 * Open the journal configured by the event_journal_* system properties
+	 *
+	 * @return {@link EventJournal} or null if journaling is not enabled
+	 * @throws Exception Exception
+	 */
+	public static EventJournal fromSystemProperties() throws Exception {
+		String dir = System.getProperty(DIRECTORY_PROPERTY);
+
+		if (dir == null || dir.trim().isEmpty()) {
+			return null;
+		}
+
+		FsyncPolicy policy = FsyncPolicy.valueOf(System.getProperty(FSYNC_PROPERTY, "interval").trim().toUpperCase());
+		int segmentMb = Integer.getInteger(SEGMENT_SIZE_PROPERTY, DEFAULT_SEGMENT_SIZE_MB);
+		long maxMb = Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE_MB);
+
+		EventJournal journal = new EventJournal(Paths.get(dir.trim()), policy, segmentMb * 1024 * 1024,
+				maxMb * 1024 * 1024);
+		journal.startFsyncTimer(Integer.getInteger(FSYNC_INTERVAL_PROPERTY, DEFAULT_FSYNC_INTERVAL_MSEC));
+		return journal;
+	}
+
+	private void open() throws Exception {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : stream) {
+				String name = file.getFileName().toString();
+				long sequence = Long.parseLong(
+						name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+				segmentFiles.put(sequence, file);
+			}
+		}
+
+		readCheckpoint();
+
+		// segments that were saved before the last checkpoint
+		while (!segmentFiles.isEmpty() && segmentFiles.firstKey() < checkpointSequence) {
+			Files.deleteIfExists(segmentFiles.pollFirstEntry().getValue());
+		}
+
+		if (segmentFiles.isEmpty()) {
+			openWriteSegment(checkpointSequence);
+			checkpointPosition = 0;
+		} else {
+			if (segmentFiles.firstKey() > checkpointSequence) {
+				checkpointSequence = segmentFiles.firstKey();
+				checkpointPosition = 0;
+			}
+			openWriteSegment(segmentFiles.lastKey());
+			recoverWritePosition();
+
+			// a checkpoint past records lost in an operating system crash
+			if (checkpointSequence == writeSequence && checkpointPosition > writePosition) {
+				logger.warn("Moving the journal checkpoint back from position " + checkpointPosition
+						+ " to the end of segment " + writeSequence + " at " + writePosition);
+				checkpointPosition = writePosition;
+				writeCheckpoint();
+			}
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Opened event journal " + directory + " with " + segmentFiles.size() + " segment(s), "
+					+ getPendingBytes() + " pending bytes");
+		}
+	}
+
+	private void readCheckpoint() throws IOException {
+		Path file = directory.resolve(CHECKPOINT_FILE);
+
+		if (!Files.exists(file)) {
+			checkpointSequence = segmentFiles.isEmpty() ? 0 : segmentFiles.firstKey();
+			checkpointPosition = 0;
+			return;
+		}
+
+		String[] values = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim().split(" ");
+		checkpointSequence = Long.parseLong(values[0]);
+		checkpointPosition = Integer.parseInt(values[1]);
+	}
+
+	private void writeCheckpoint() throws IOException {
+		Path file = directory.resolve(CHECKPOINT_FILE);
+		Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+
+		byte[] bytes = (checkpointSequence + " " + checkpointPosition).getBytes(StandardCharsets.US_ASCII);
+
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.write(ByteBuffer.wrap(bytes));
+
+			if (!fsyncPolicy.equals(FsyncPolicy.NEVER)) {
+				channel.force(true);
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private void openWriteSegment(long sequence) throws IOException {
+		Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+
+		writeChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		writeBuffer = writeChannel.map(MapMode.READ_WRITE, 0, segmentSize);
+		writeSequence = sequence;
+		writePosition = 0;
+		segmentFiles.put(sequence, file);
+	}
+
+	// find the end of the last segment after a restart
+	private void recoverWritePosition() {
+		int position = 0;
+
+		while (true) {
+			int length = recordLength(writeBuffer, position);
+
+			if (length <= 0) {
+				break;
+			}
+			position += HEADER_SIZE + length;
+		}
+		writePosition = position;
+
+		// clear a torn record so that it is not mistaken for data later
+		if (position + HEADER_SIZE <= segmentSize && writeBuffer.getInt(position) != 0) {
+			logger.warn("Discarding an incomplete journal record at position " + position + " of segment "
+					+ writeSequence);
+
+			for (int i = position; i < segmentSize; i++) {
+				writeBuffer.put(i, (byte) 0);
+			}
+			writeBuffer.force();
+		}
+	}
+
+	// length of a valid record at this position, 0 at the end or -1 if corrupt
+	private int recordLength(MappedByteBuffer buffer, int position) {
+		if (position + HEADER_SIZE > segmentSize) {
+			return 0;
+		}
+
+		int length = buffer.getInt(position);
+
+		if (length == 0) {
+			return 0;
+		}
+
+		if (length < 0 || position + HEADER_SIZE + length > segmentSize) {
+			return -1;
+		}
+
+		int expected = buffer.getInt(position + 4);
+		crc.reset();
+
+		for (int i = 0; i < length; i++) {
+			crc.update(buffer.get(position + HEADER_SIZE + i));
+		}
+		return (int) crc.getValue() == expected ? length : -1;
+	}
+
+	private void startFsyncTimer(int intervalMsec) {
+		if (!fsyncPolicy.equals(FsyncPolicy.INTERVAL)) {
+			return;
+		}
+
+		fsyncTimer = new Timer("EventJournalFsync", true);
+		fsyncTimer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				force();
+			}
+		}, intervalMsec, intervalMsec);
+	}
+
+	/**
+	 * Write any appended records to disk
+	 */
+	public synchronized void force() {
+		if (dirty && writeBuffer != null) {
+			writeBuffer.force();
+			dirty = false;
+		}
+	}
+
+	/**
+	 * Append a record to the journal
+	 *
+	 * @param payload Record bytes
+	 * @throws Exception if the journal is full or the record is too large
+	 */
+	public synchronized void append(byte[] payload) throws Exception {
+		int recordSize = HEADER_SIZE + payload.length;
+
+		if (payload.length == 0 || recordSize > segmentSize) {
+			throw new Exception("A journal record of " + payload.length + " bytes is not valid for segment size "
+					+ segmentSize);
+		}
+
+		if (writePosition + recordSize > segmentSize) {
+			if (segmentFiles.size() >= maxSegments) {
+				throw new Exception("The event journal in " + directory + " is full with " + getPendingBytes()
+						+ " bytes not yet saved to the database.");
+			}
+
+			// complete the current segment
+			writeBuffer.force();
+			writeChannel.close();
+			openWriteSegment(writeSequence + 1);
+		}
+
+		crc.reset();
+		crc.update(payload, 0, payload.length);
+
+		// length is written last so that a partial record is not valid
+		for (int i = 0; i < payload.length; i++) {
+			writeBuffer.put(writePosition + HEADER_SIZE + i, payload[i]);
+		}
+		writeBuffer.putInt(writePosition + 4, (int) crc.getValue());
+		writeBuffer.putInt(writePosition, payload.length);
+		writePosition += recordSize;
+
+		if (fsyncPolicy.equals(FsyncPolicy.ALWAYS)) {
+			writeBuffer.force();
+		} else {
+			dirty = true;
+		}
+
+		appendCount++;
+		appendBytes += payload.length;
+	}
+
+	/**
+	 * Read records starting at the checkpoint
+	 *
+	 * @param maxRecords Maximum number of records to read
+	 * @return List of {@link JournalRecord}
+	 * @throws Exception Exception
+	 */
+	public synchronized List<JournalRecord> read(int maxRecords) throws Exception {
+		List<JournalRecord> records = new ArrayList<>();
+
+		long sequence = checkpointSequence;
+		int position = checkpointPosition;
+
+		while (records.size() < maxRecords) {
+			MappedByteBuffer buffer = getReadBuffer(sequence);
+
+			if (buffer == null) {
+				break;
+			}
+
+			int length = sequence == writeSequence && position >= writePosition ? 0 : recordLength(buffer, position);
+
+			if (length <= 0) {
+				if (sequence == writeSequence) {
+					break;
+				}
+
+				if (length < 0) {
+					logger.error("Skipping the rest of corrupt journal segment " + sequence + " at position "
+							+ position);
+				}
+
+				// continue with the next segment
+				Long next = segmentFiles.higherKey(sequence);
+
+				if (next == null) {
+					break;
+				}
+				sequence = next;
+				position = 0;
+				continue;
+			}
+
+			byte[] payload = new byte[length];
+
+			for (int i = 0; i < length; i++) {
+				payload[i] = buffer.get(position + HEADER_SIZE + i);
+			}
+			position += HEADER_SIZE + length;
+
+			records.add(new JournalRecord(payload, sequence, position));
+		}
+		return records;
+	}
+
+	private MappedByteBuffer getReadBuffer(long sequence) throws IOException {
+		if (sequence == writeSequence) {
+			return writeBuffer;
+		}
+
+		if (sequence != readSequence) {
+			Path file = segmentFiles.get(sequence);
+
+			if (file == null) {
+				return null;
+			}
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				readBuffer = channel.map(MapMode.READ_ONLY, 0, Math.min(channel.size(), segmentSize));
+			}
+			readSequence = sequence;
+		}
+		return readBuffer;
+	}
+
+	/**
+	 * Advance the checkpoint past a record that has been saved to the database
+	 * and delete the segments before it
+	 *
+	 * @param record Last saved {@link JournalRecord}
+	 * @throws Exception Exception
+	 */
+	public synchronized void commit(JournalRecord record) throws Exception {
+		// the records must be on disk before a checkpoint that points past them
+		force();
+
+		checkpointSequence = record.getSequence();
+		checkpointPosition = record.getNextPosition();
+		writeCheckpoint();
+
+		while (segmentFiles.firstKey() < checkpointSequence) {
+			Map.Entry<Long, Path> entry = segmentFiles.pollFirstEntry();
+
+			if (entry.getKey() == readSequence) {
+				readSequence = -1;
+				readBuffer = null;
+			}
+
+			try {
+				Files.deleteIfExists(entry.getValue());
+			} catch (IOException e) {
+				logger.warn("Unable to delete journal segment " + entry.getValue() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	// bytes appended but not yet saved to the database
+	public synchronized long getPendingBytes() {
+		long pending = 0;
+
+		for (Long sequence : segmentFiles.keySet()) {
+			if (sequence < checkpointSequence) {
+				continue;
+			}
+
+			long end = sequence == writeSequence ? writePosition : segmentSize;
+			long start = sequence == checkpointSequence ? checkpointPosition : 0;
+			pending += Math.max(0, end - start);
+		}
+		return pending;
+	}
+
+	public synchronized boolean isEmpty() {
+		return checkpointSequence == writeSequence && checkpointPosition >= writePosition;
+	}
+
+	public synchronized long getAppendCount() {
+		return appendCount;
+	}
+
+	public synchronized long getAppendBytes() {
+		return appendBytes;
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	public FsyncPolicy getFsyncPolicy() {
+		return fsyncPolicy;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (fsyncTimer != null) {
+			fsyncTimer.cancel();
+			fsyncTimer = null;
+		}
+
+		if (writeBuffer != null) {
+			writeBuffer.force();
+			writeBuffer = null;
+		}
+
+		if (writeChannel != null) {
+			writeChannel.close();
+			writeChannel = null;
+		}
+		readBuffer = null;
+		readSequence = -1;
+	}
+
+	/**
+	 * A record read from the journal and the position following it
+	 */
+	public static class JournalRecord {
+		private final byte[] payload;
+		private final long sequence;
+		private final int nextPosition;
+
+		JournalRecord(byte[] payload, long sequence, int nextPosition) {
+			this.payload = payload;
+			this.sequence = sequence;
+			this.nextPosition = nextPosition;
+		}
+
+		public byte[] getPayload() {
+			return payload;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public int getNextPosition() {
+			return nextPosition;
+		}
+	}
+}
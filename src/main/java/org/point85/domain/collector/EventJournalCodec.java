@@ -0,0 +1,156 @@
+package org.point85.domain.collector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+import javax.persistence.EntityManager;
+
+import org.point85.domain.plant.Equipment;
+import org.point85.domain.plant.KeyedObject;
+import org.point85.domain.plant.Material;
+import org.point85.domain.plant.Reason;
+import org.point85.domain.schedule.Shift;
+import org.point85.domain.schedule.Team;
+import org.point85.domain.script.OeeEventType;
+import org.point85.domain.uom.UnitOfMeasure;
+
+/**
+ * Binary form of a resolved {@link OeeEvent} in the {@link EventJournal}.
+ * Referenced entities are written as primary keys and found again when the
+ * event is replayed.
+ *
+ */
+final class EventJournalCodec {
+	private static final byte VERSION = 1;
+
+	// no key
+	private static final long NULL_KEY = -1L;
+
+	private EventJournalCodec() {
+	}
+
+	static byte[] encode(OeeEvent event) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(VERSION);
+			writeKey(out, event.getEquipment());
+			out.writeUTF(event.getEventType().name());
+			writeString(out, event.getStartTime() != null ? event.getStartTime().toString() : null);
+			writeString(out, event.getEndTime() != null ? event.getEndTime().toString() : null);
+			writeKey(out, event.getShift());
+			writeKey(out, event.getTeam());
+			writeKey(out, event.getReason());
+			writeKey(out, event.getMaterial());
+			writeKey(out, event.getUOM());
+			writeString(out, event.getJob());
+			writeString(out, event.getSourceId());
+			writeString(out, event.getInputValue() != null ? event.getInputValue().toString() : null);
+
+			out.writeBoolean(event.getAmount() != null);
+			if (event.getAmount() != null) {
+				out.writeDouble(event.getAmount());
+			}
+
+			writeDuration(out, event.getDuration());
+			writeDuration(out, event.getLostTime());
+		}
+		return bytes.toByteArray();
+	}
+
+	static OeeEvent decode(byte[] payload, EntityManager em) throws Exception {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+			byte version = in.readByte();
+
+			if (version != VERSION) {
+				throw new Exception("Unsupported journal record version " + version);
+			}
+
+			OeeEvent event = new OeeEvent(find(em, Equipment.class, in.readLong()));
+
+			if (event.getEquipment() == null) {
+				throw new Exception("The equipment for a journaled event no longer exists.");
+			}
+
+			event.setEventType(OeeEventType.valueOf(in.readUTF()));
+
+			String time = readString(in);
+			event.setStartTime(time != null ? OffsetDateTime.parse(time) : null);
+			time = readString(in);
+			event.setEndTime(time != null ? OffsetDateTime.parse(time) : null);
+
+			event.setShift(find(em, Shift.class, in.readLong()));
+			event.setTeam(find(em, Team.class, in.readLong()));
+			event.setReason(find(em, Reason.class, in.readLong()));
+			event.setMaterial(find(em, Material.class, in.readLong()));
+			event.setUOM(find(em, UnitOfMeasure.class, in.readLong()));
+			event.setJob(readString(in));
+			event.setSourceId(readString(in));
+
+			String input = readString(in);
+			if (input != null) {
+				event.setInputValue(input);
+			}
+
+			if (in.readBoolean()) {
+				event.setAmount(in.readDouble());
+			}
+
+			event.setDuration(readDuration(in));
+			event.setLostTime(readDuration(in));
+
+			return event;
+		}
+	}
+
+	private static void writeKey(DataOutputStream out, KeyedObject keyed) throws Exception {
+		if (keyed == null) {
+			out.writeLong(NULL_KEY);
+		} else if (keyed.getKey() == null) {
+			throw new Exception("An unsaved " + keyed.getClass().getSimpleName() + " cannot be journaled.");
+		} else {
+			out.writeLong(keyed.getKey());
+		}
+	}
+
+	private static <T> T find(EntityManager em, Class<T> entityClass, long key) throws Exception {
+		if (key == NULL_KEY) {
+			return null;
+		}
+
+		T entity = em.find(entityClass, key);
+
+		if (entity == null) {
+			throw new Exception("The " + entityClass.getSimpleName() + " with key " + key + " no longer exists.");
+		}
+		return entity;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void writeDuration(DataOutputStream out, Duration duration) throws IOException {
+		out.writeBoolean(duration != null);
+		if (duration != null) {
+			out.writeLong(duration.getSeconds());
+			out.writeInt(duration.getNano());
+		}
+	}
+
+	private static Duration readDuration(DataInputStream in) throws IOException {
+		return in.readBoolean() ? Duration.ofSeconds(in.readLong(), in.readInt()) : null;
+	}
+}
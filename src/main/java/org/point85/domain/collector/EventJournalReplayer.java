@@ -0,0 +1,200 @@
+package org.point85.domain.collector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.point85.domain.collector.EventJournal.JournalRecord;
+import org.point85.domain.persistence.PersistenceService;
+import org.point85.domain.persistence.UnitOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Saves the events in an {@link EventJournal} to the database in the order they
+ * were appended. The checkpoint is advanced after each batch is committed. If
+ * the database is not available the batch is retried with an increasing delay.
+ * A record that fails while the database is reachable is logged and skipped.
+ *
+ */
+class EventJournalReplayer implements Runnable {
+	// logger
+	private static final Logger logger = LoggerFactory.getLogger(EventJournalReplayer.class);
+
+	// events saved in one transaction
+	private static final int BATCH_SIZE = 100;
+
+	// msec to wait for appended events when the journal is empty
+	private static final long IDLE_MSEC = 1000;
+
+	// retry delays in msec while the database is unavailable
+	private static final long MIN_RETRY_MSEC = 1000;
+	private static final long MAX_RETRY_MSEC = 60000;
+
+	// sec to wait for a connection check
+	private static final int VALID_TIMEOUT_SEC = 5;
+
+	private final EventJournal journal;
+
+	private final CollectorService collectorService;
+
+	private final Object signal = new Object();
+
+	private volatile boolean running = false;
+
+	private Thread thread;
+
+	private long replayedCount = 0;
+
+	EventJournalReplayer(EventJournal journal, CollectorService collectorService) {
+		this.journal = journal;
+		this.collectorService = collectorService;
+	}
+
+	synchronized void start() {
+		running = true;
+		thread = new Thread(this, "EventJournalReplayer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// stop after the current batch, waiting for the journal to drain
+	synchronized void stop(long waitMsec) {
+		if (thread == null) {
+			return;
+		}
+
+		long deadline = System.currentTimeMillis() + waitMsec;
+
+		while (!journal.isEmpty() && System.currentTimeMillis() < deadline) {
+			signal();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		running = false;
+		signal();
+
+		try {
+			thread.join(waitMsec);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	// wake up to save newly appended events
+	void signal() {
+		synchronized (signal) {
+			signal.notifyAll();
+		}
+	}
+
+	long getReplayedCount() {
+		return replayedCount;
+	}
+
+	@Override
+	public void run() {
+		long retryMsec = MIN_RETRY_MSEC;
+
+		while (running) {
+			try {
+				List<JournalRecord> records = journal.read(BATCH_SIZE);
+
+				if (records.isEmpty()) {
+					waitFor(IDLE_MSEC);
+					continue;
+				}
+
+				try {
+					replay(records);
+					retryMsec = MIN_RETRY_MSEC;
+				} catch (Exception e) {
+					if (isDatabaseAvailable()) {
+						// save one at a time to find and skip the record that failed
+						replayEach(records);
+					} else {
+						logger.warn("Database is not available to replay the event journal, retrying in "
+								+ retryMsec + " msec: " + e.getMessage());
+						backOff(retryMsec);
+						retryMsec = Math.min(retryMsec * 2, MAX_RETRY_MSEC);
+					}
+				}
+			} catch (Exception e) {
+				logger.error("Unable to read the event journal: " + e.getMessage());
+				backOff(MAX_RETRY_MSEC);
+			}
+		}
+	}
+
+	private void replay(List<JournalRecord> records) throws Exception {
+		try (UnitOfWork work = PersistenceService.instance().beginUnitOfWork()) {
+			List<OeeEvent> events = new ArrayList<>(records.size());
+
+			for (JournalRecord record : records) {
+				events.add(EventJournalCodec.decode(record.getPayload(), work.getEntityManager()));
+			}
+
+			collectorService.saveOeeEvents(events);
+			work.commit();
+		}
+
+		journal.commit(records.get(records.size() - 1));
+		replayedCount += records.size();
+	}
+
+	private void replayEach(List<JournalRecord> records) throws Exception {
+		for (JournalRecord record : records) {
+			List<JournalRecord> single = new ArrayList<>(1);
+			single.add(record);
+
+			try {
+				replay(single);
+			} catch (Exception e) {
+				if (!isDatabaseAvailable()) {
+					// retry the rest later
+					return;
+				}
+
+				logger.error("Skipping a journaled event that cannot be saved: " + e.getMessage());
+				journal.commit(record);
+			}
+		}
+	}
+
+	private boolean isDatabaseAvailable() {
+		try (UnitOfWork work = PersistenceService.instance().beginUnitOfWork()) {
+			Session session = work.getEntityManager().unwrap(Session.class);
+			return session.doReturningWork(connection -> connection.isValid(VALID_TIMEOUT_SEC));
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	// wait without being woken by appended events
+	private void backOff(long msec) {
+		long deadline = System.currentTimeMillis() + msec;
+		long remaining = msec;
+
+		while (running && remaining > 0) {
+			waitFor(remaining);
+			remaining = deadline - System.currentTimeMillis();
+		}
+	}
+
+	private void waitFor(long msec) {
+		synchronized (signal) {
+			try {
+				signal.wait(msec);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				running = false;
+			}
+		}
+	}
+}
@@ -9,6 +9,7 @@ import javax.persistence.Column;
 import javax.persistence.Convert;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
@@ -26,7 +27,10 @@ import org.point85.domain.uom.Quantity;
 import org.point85.domain.uom.UnitOfMeasure;
 
 @Entity
-@Table(name = "OEE_EVENT")
+@Table(name = "OEE_EVENT", indexes = {
+		@Index(name = "OEE_EVENT_TYPE_IDX", columnList = "ENT_KEY, EVENT_TYPE, START_TIME"),
+		@Index(name = "OEE_EVENT_MATL_IDX", columnList = "ENT_KEY, MATL_KEY, START_TIME"),
+		@Index(name = "OEE_EVENT_END_IDX", columnList = "ENT_KEY, EVENT_TYPE, END_TIME") })
 @AttributeOverride(name = "primaryKey", column = @Column(name = "EVENT_KEY"))
 
 public class OeeEvent extends KeyedObject {
@@ -8,6 +8,7 @@ import javax.persistence.Column;
 import javax.persistence.Convert;
 import javax.persistence.Embedded;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 import org.point85.domain.persistence.DatabaseEventStatusConverter;
@@ -15,7 +16,8 @@ import org.point85.domain.persistence.OffsetTimestamp;
 import org.point85.domain.plant.KeyedObject;
 
 @Entity
-@Table(name = "DB_EVENT")
+@Table(name = "DB_EVENT", indexes = {
+		@Index(name = "DB_EVENT_STATUS_IDX", columnList = "STATUS, SOURCE_ID, EVENT_TIME") })
 @AttributeOverride(name = "primaryKey", column = @Column(name = "EVENT_KEY"))
 
 public class DatabaseEvent extends KeyedObject {
@@ -0,0 +1,88 @@
+package org.point85.domain.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Number of records of a file in the processing folder that have already been
+ * resolved, and how many of them failed. A file recovered after a crash resumes
+ * after these records instead of resolving them again. Each update is one
+ * write, which survives a crash of the collector. It is forced to the device
+ * every {@link #FORCE_INTERVAL} records and on close, so after an operating
+ * system crash at most that many records are resolved again.
+ *
+ */
+public class FileCheckpoint implements Closeable {
+	// records between forced writes
+	public static final int FORCE_INTERVAL = 100;
+
+	// resolved record count and failure count
+	private static final int SIZE = 2 * Long.BYTES;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+
+	// resolved records
+	private long records;
+
+	// records that could not be resolved
+	private long failures;
+
+	// records since the last forced write
+	private int unforced = 0;
+
+	FileCheckpoint(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+		if (channel.size() >= SIZE) {
+			while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) != -1) {
+				// read both counts
+			}
+			buffer.flip();
+			records = buffer.getLong();
+			failures = buffer.getLong();
+		}
+	}
+
+	public long getRecords() {
+		return records;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+
+	public void setRecords(long records, long failures) throws IOException {
+		buffer.clear();
+		buffer.putLong(records).putLong(failures).flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, buffer.position());
+		}
+
+		this.records = records;
+		this.failures = failures;
+
+		if (++unforced >= FORCE_INTERVAL) {
+			channel.force(false);
+			unforced = 0;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (unforced > 0) {
+				channel.force(false);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -2,12 +2,30 @@ package org.point85.domain.file;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.point85.domain.collector.CollectorDataSource;
 import org.slf4j.Logger;
@@ -24,6 +42,25 @@ public class FileEventClient {
 
 	private static final String ERROR_EXT = ".error";
 
+	// resolved records of a file in the processing folder
+	private static final String CHECKPOINT_EXT = ".checkpoint";
+
+	// system property to enable event-driven (WatchService) mode
+	public static final String WATCH_MODE_PROPERTY = "file_watch_mode";
+
+	// system property to resolve each line of a file as its own event
+	public static final String STREAMING_MODE_PROPERTY = "file_streaming_mode";
+
+	// minimum period in msec of the reconciliation scan in watch mode
+	public static final int RECONCILE_PERIOD_MSEC = 60000;
+
+	// in watch mode a file is passed on once its size and modification time have
+	// not changed for this many msec, so that it is not read while being written
+	public static final int SETTLE_MSEC = 1000;
+
+	// msec between checks of the files waiting to settle
+	private static final int SETTLE_CHECK_MSEC = 250;
+
 	// polling interval in msec
 	private List<Integer> pollingPeriods;
 
@@ -46,7 +83,31 @@ public class FileEventClient {
 	private FileEventSource fileSource;
 
 	// files being worked on
-	private List<String> inProcessFiles = new ArrayList<>();
+	private final Set<String> inProcessFiles = new HashSet<>();
+
+	// true if new files are detected by the WatchService instead of polling
+	private boolean watchMode = false;
+
+	// true if each record of a file is resolved separately
+	private boolean streamingMode = false;
+
+	// file processors by source id
+	private final Map<String, FileProcessor> fileProcessors = new ConcurrentHashMap<>();
+
+	// number of threads for each file processor
+	private int processorThreads = FileProcessor.DEFAULT_THREADS;
+
+	// watcher of the ready folders
+	private WatchService watchService;
+
+	// thread taking watch keys
+	private Thread watchThread;
+
+	// source id by registered ready folder
+	private final Map<WatchKey, String> watchedSourceIds = new ConcurrentHashMap<>();
+
+	// watched files that may still be being written
+	private final Map<File, PendingFile> pendingFiles = new ConcurrentHashMap<>();
 
 	public FileEventClient(FileEventListener eventListener, FileEventSource fileSource, List<String> sourceIds,
 			List<Integer> pollingPeriods) {
@@ -67,15 +128,114 @@ public class FileEventClient {
 		return fileService.readFile(file);
 	}
 
+	public long readRecords(File file, FileRecordHandler handler) throws Exception {
+		return fileService.readRecords(file, handler);
+	}
+
+	public int getProcessorThreads() {
+		return processorThreads;
+	}
+
+	public void setProcessorThreads(int processorThreads) {
+		this.processorThreads = processorThreads;
+	}
+
+	public FileProcessor getFileProcessor(String sourceId) {
+		return fileProcessors.get(sourceId);
+	}
+
+	// create the ready, processing, pass and fail folders once for each source id
+	public void createFolders() throws IOException {
+		String[] folders = { READY_FOLDER, PROCESSING_FOLDER, PASS_FOLDER, FAIL_FOLDER };
+
+		for (String sourceId : sourceIds) {
+			for (String folder : folders) {
+				String path = fileSource.getNetworkPath(sourceId) + File.separator + folder;
+
+				if (!fileService.createDirectory(path)) {
+					throw new IOException("Cannot create directory " + path);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Move any files left in the processing folders (e.g. by a crash) back to the
+	 * ready folders so that they will be processed again. The checkpoint of a file
+	 * stays in the processing folder so that its resolved records are skipped.
+	 * 
+	 * @return Number of files recovered
+	 * @throws IOException IOException
+	 */
+	public int recoverFiles() throws IOException {
+		int count = 0;
+
+		for (String sourceId : sourceIds) {
+			String processingFolder = fileSource.getNetworkPath(sourceId) + File.separator + PROCESSING_FOLDER;
+
+			for (File file : fileService.getFiles(processingFolder)) {
+				if (!file.isFile() || file.getName().endsWith(CHECKPOINT_EXT)) {
+					continue;
+				}
+
+				String toPath = getReadyFolder(sourceId) + File.separator + file.getName();
+				fileService.moveFileAtomically(file.getPath(), toPath);
+				count++;
+			}
+		}
+
+		if (count > 0) {
+			logger.warn("Recovered " + count + " unfinished files on " + fileSource.getId());
+		}
+		return count;
+	}
+
+	public boolean isStreamingMode() {
+		return streamingMode;
+	}
+
+	public void setStreamingMode(boolean streamingMode) {
+		this.streamingMode = streamingMode;
+	}
+
+	public boolean isWatchMode() {
+		return watchMode;
+	}
+
+	public void setWatchMode(boolean watchMode) {
+		this.watchMode = watchMode;
+	}
+
 	public void startPolling() {
+		for (String sourceId : sourceIds) {
+			if (fileProcessors.get(sourceId) == null) {
+				fileProcessors.put(sourceId, new FileProcessor(sourceId, processorThreads));
+			}
+		}
+
+		if (watchMode) {
+			try {
+				startWatching();
+			} catch (IOException e) {
+				logger.error("Unable to watch for new files.  Reverting to polling.", e);
+				stopWatching();
+				watchMode = false;
+			}
+		}
+
 		for (int i = 0; i < sourceIds.size(); i++) {
 			if (pollingPeriods.get(i) == null) {
 				pollingPeriods.set(i, new Integer(CollectorDataSource.DEFAULT_UPDATE_PERIOD_MSEC));
 			}
 
+			if (watchMode && pollingPeriods.get(i) < RECONCILE_PERIOD_MSEC) {
+				// the timer is only a fallback for missed watch events
+				pollingPeriods.set(i, RECONCILE_PERIOD_MSEC);
+			}
+
 			if (logger.isInfoEnabled()) {
-				logger.info("Starting to poll for new files every " + pollingPeriods.get(i) + " msec. for sourceId "
-						+ sourceIds.get(i));
+				logger.info("Starting to " + (watchMode ? "reconcile" : "poll for") + " new files every "
+						+ pollingPeriods.get(i) + " msec. for sourceId " + sourceIds.get(i));
 			}
 
 			startPollingTimer(i);
@@ -83,6 +243,8 @@ public class FileEventClient {
 	}
 
 	public void stopPolling() {
+		stopWatching();
+
 		for (int i = 0; i < sourceIds.size(); i++) {
 			stopPollingTimer(i);
 
@@ -91,6 +253,163 @@ public class FileEventClient {
 			}
 		}
 		pollingTimers.clear();
+		pollingTasks.clear();
+
+		for (FileProcessor processor : fileProcessors.values()) {
+			// files not processed can be found again
+			for (File file : processor.shutdown()) {
+				stopProcessing(file);
+			}
+		}
+		fileProcessors.clear();
+	}
+
+	private String getReadyFolder(String sourceId) {
+		return fileSource.getNetworkPath(sourceId) + File.separator + READY_FOLDER;
+	}
+
+	private synchronized void startWatching() throws IOException {
+		if (watchService != null) {
+			return;
+		}
+
+		watchService = FileSystems.getDefault().newWatchService();
+
+		for (String sourceId : sourceIds) {
+			String readyFolder = getReadyFolder(sourceId);
+
+			if (!fileService.createDirectory(readyFolder)) {
+				throw new IOException("Cannot create directory " + readyFolder);
+			}
+
+			WatchKey key = Paths.get(readyFolder).register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+			watchedSourceIds.put(key, sourceId);
+
+			if (logger.isInfoEnabled()) {
+				logger.info("Watching for new files in " + readyFolder + " for sourceId " + sourceId);
+			}
+		}
+
+		watchThread = new Thread(new WatchTask(watchService), "FileWatcher-" + fileSource.getId());
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	private synchronized void stopWatching() {
+		if (watchService == null) {
+			return;
+		}
+
+		try {
+			// also releases the watch thread
+			watchService.close();
+		} catch (IOException e) {
+			logger.error("Unable to close the file watcher.", e);
+		}
+
+		watchService = null;
+		watchThread = null;
+		watchedSourceIds.clear();
+		pendingFiles.clear();
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Stopped watching for new files on " + fileSource.getId());
+		}
+	}
+
+	private void onWatchKey(WatchKey key) {
+		String sourceId = watchedSourceIds.get(key);
+
+		if (sourceId == null) {
+			key.cancel();
+			return;
+		}
+
+		Path dir = (Path) key.watchable();
+
+		// a file can be both created and modified in the same batch
+		Set<File> files = new LinkedHashSet<>();
+		boolean overflow = false;
+
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind().equals(StandardWatchEventKinds.OVERFLOW)) {
+				overflow = true;
+				continue;
+			}
+
+			File file = dir.resolve((Path) event.context()).toFile();
+
+			if (file.isFile()) {
+				files.add(file);
+			}
+		}
+
+		// created or modified, so wait for the writer to finish
+		for (File file : files) {
+			pendingFiles.put(file, new PendingFile(sourceId, file));
+		}
+
+		if (!key.reset()) {
+			logger.warn("Ready folder " + dir + " is no longer accessible for sourceId " + sourceId);
+			watchedSourceIds.remove(key);
+		}
+
+		if (overflow) {
+			// events were lost, so fall back to a full scan
+			logger.warn("File watch events overflowed for sourceId " + sourceId + ".  Rescanning " + dir);
+			onPoll(sourceId);
+		}
+	}
+
+	// pass on the watched files that have stopped changing
+	private void dispatchSettledFiles() {
+		long now = System.currentTimeMillis();
+		Map<String, List<File>> settledFiles = new HashMap<>();
+
+		Iterator<Map.Entry<File, PendingFile>> iter = pendingFiles.entrySet().iterator();
+
+		while (iter.hasNext()) {
+			Map.Entry<File, PendingFile> entry = iter.next();
+			File file = entry.getKey();
+			PendingFile pending = entry.getValue();
+
+			if (!file.isFile()) {
+				// moved or deleted
+				iter.remove();
+			} else if (pending.hasChanged(file, now)) {
+				continue;
+			} else if (now - pending.changedAt >= SETTLE_MSEC) {
+				iter.remove();
+				settledFiles.computeIfAbsent(pending.sourceId, id -> new ArrayList<>()).add(file);
+			}
+		}
+
+		for (Map.Entry<String, List<File>> entry : settledFiles.entrySet()) {
+			dispatchFiles(entry.getKey(), entry.getValue());
+		}
+	}
+
+	// pass on only those files that are not already being worked on, oldest first
+	private void dispatchFiles(String sourceId, List<File> files) {
+		List<File> newFiles = new ArrayList<>(files.size());
+
+		for (File file : files) {
+			if (!fileIsProcessing(file)) {
+				newFiles.add(file);
+			}
+		}
+
+		if (!newFiles.isEmpty()) {
+			// read each modification time once
+			Map<File, Long> modified = new HashMap<>();
+			for (File file : newFiles) {
+				modified.put(file, file.lastModified());
+			}
+			newFiles.sort(Comparator.comparing(modified::get));
+
+			eventListener.resolveFileEvents(this, sourceId, newFiles);
+		}
 	}
 
 	private void initializePollingTimer(int i) {
@@ -125,10 +444,18 @@ public class FileEventClient {
 		}
 
 		// query file server for new files
-		String filePath = fileSource.getNetworkPath(sourceId) + File.separator + READY_FOLDER;
-		List<File> files = fileService.getFiles(filePath);
-
-		eventListener.resolveFileEvents(this, sourceId, files);
+		List<File> files = fileService.getFiles(getReadyFolder(sourceId));
+
+		if (watchMode) {
+			// a missed file could still be being written
+			for (File file : files) {
+				if (file.isFile()) {
+					pendingFiles.putIfAbsent(file, new PendingFile(sourceId, file));
+				}
+			}
+		} else {
+			dispatchFiles(sourceId, files);
+		}
 	}
 
 	public FileEventSource getFileEventSource() {
@@ -148,6 +475,68 @@ public class FileEventClient {
 		}
 	}
 
+	private class WatchTask implements Runnable {
+		private final WatchService watcher;
+
+		private WatchTask(WatchService watcher) {
+			this.watcher = watcher;
+		}
+
+		@Override
+		public void run() {
+			long lastSettleCheck = 0;
+
+			try {
+				while (true) {
+					WatchKey key = watcher.poll(SETTLE_CHECK_MSEC, TimeUnit.MILLISECONDS);
+
+					if (key != null) {
+						onWatchKey(key);
+					}
+
+					long now = System.currentTimeMillis();
+
+					if (now - lastSettleCheck >= SETTLE_CHECK_MSEC) {
+						lastSettleCheck = now;
+						dispatchSettledFiles();
+					}
+				}
+			} catch (ClosedWatchServiceException | InterruptedException e) {
+				// stopped watching
+			} catch (Exception e) {
+				logger.error("File watcher failed.  New files will be found by the reconciliation scan.", e);
+			}
+		}
+	}
+
+	// size and modification time of a watched file when last seen to change
+	private static class PendingFile {
+		private final String sourceId;
+		private long size;
+		private long lastModified;
+		private long changedAt;
+
+		private PendingFile(String sourceId, File file) {
+			this.sourceId = sourceId;
+			this.size = file.length();
+			this.lastModified = file.lastModified();
+			this.changedAt = System.currentTimeMillis();
+		}
+
+		private boolean hasChanged(File file, long now) {
+			long currentSize = file.length();
+			long currentModified = file.lastModified();
+
+			if (currentSize == size && currentModified == lastModified) {
+				return false;
+			}
+			size = currentSize;
+			lastModified = currentModified;
+			changedAt = now;
+			return true;
+		}
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(fileSource.getId());
@@ -175,15 +564,22 @@ public class FileEventClient {
 		this.moveFile(file, fromFolder, toFolder, null);
 	}
 
+	// the ready folder file's location in another folder
+	public File getFileInFolder(File file, String folder) throws IOException {
+		return new File(file.getCanonicalPath().replace(READY_FOLDER, folder));
+	}
+
 	public void moveFile(File file, String fromFolder, String toFolder, Exception e) throws IOException {
-		// path in ready folder
-		String path = file.getCanonicalPath();
+		String source = getFileInFolder(file, fromFolder).getPath();
+		String destination = getFileInFolder(file, toFolder).getPath();
 
-		String source = path.replace(READY_FOLDER, fromFolder);
-		String destination = path.replace(READY_FOLDER, toFolder);
+		// rename the file into the destination folder
+		fileService.moveFileAtomically(source, destination);
 
-		// move the file to the destination folder
-		fileService.moveFile(source, destination);
+		if (fromFolder.equals(PROCESSING_FOLDER)) {
+			// finished with the file
+			Files.deleteIfExists(getCheckpointFile(file).toPath());
+		}
 
 		if (e != null) {
 			int idx = destination.lastIndexOf(File.separator);
@@ -195,6 +591,21 @@ public class FileEventClient {
 		}
 	}
 
+	/**
+	 * Open the checkpoint of a file moved to the processing folder
+	 * 
+	 * @param file File in the ready folder
+	 * @return {@link FileCheckpoint}
+	 * @throws IOException IOException
+	 */
+	public FileCheckpoint openCheckpoint(File file) throws IOException {
+		return new FileCheckpoint(getCheckpointFile(file));
+	}
+
+	private File getCheckpointFile(File file) throws IOException {
+		return new File(getFileInFolder(file, PROCESSING_FOLDER).getPath() + CHECKPOINT_EXT);
+	}
+
 	public void writeFile(FileEventSource source, String sourceId, String folder, String content) throws IOException {
 		String pathName = source.getHost() + File.separator + sourceId + File.separator + folder;
 		fileService.writeFile(pathName, UUID.randomUUID().toString(), content);
@@ -0,0 +1,173 @@
+package org.point85.domain.file;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of threads processing the files of one source id. When the
+ * queue is full a file is not accepted, so that the polling or watching thread
+ * is never blocked. It is found again by the next poll or reconciliation scan.
+ * The throughput of each burst of files is logged when the processor becomes
+ * idle.
+ *
+ */
+public class FileProcessor {
+	// logger
+	private static final Logger logger = LoggerFactory.getLogger(FileProcessor.class);
+
+	// system property for the number of processing threads per source id
+	public static final String THREADS_PROPERTY = "file_processor_threads";
+
+	// a single thread preserves the oldest-first order of the files
+	public static final int DEFAULT_THREADS = 1;
+
+	// maximum number of files waiting to be processed
+	private static final int QUEUE_CAPACITY = 1000;
+
+	// source id of the files
+	private final String sourceId;
+
+	// worker threads
+	private final ThreadPoolExecutor executor;
+
+	// files submitted but not yet processed
+	private final AtomicInteger pending = new AtomicInteger();
+
+	// files processed since creation
+	private final AtomicLong processedCount = new AtomicLong();
+
+	// files processed in the current burst
+	private final AtomicLong burstCount = new AtomicLong();
+
+	// start of the current burst
+	private volatile long burstStartNanos;
+
+	// rate of the last completed burst
+	private volatile double filesPerSecond;
+
+	public FileProcessor(String sourceId, int threads) {
+		this.sourceId = sourceId;
+
+		int poolSize = threads > 0 ? threads : DEFAULT_THREADS;
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+					Thread thread = new Thread(runnable,
+							"FileProcessor-" + sourceId + "-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	public static int getConfiguredThreads() {
+		return Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS);
+	}
+
+	public String getSourceId() {
+		return sourceId;
+	}
+
+	public int getThreadCount() {
+		return executor.getCorePoolSize();
+	}
+
+	public long getProcessedCount() {
+		return processedCount.get();
+	}
+
+	public double getFilesPerSecond() {
+		return filesPerSecond;
+	}
+
+	// false if the processor is shut down or its queue is full
+	public boolean submit(File file, Runnable fileTask) {
+		if (pending.getAndIncrement() == 0) {
+			burstStartNanos = System.nanoTime();
+			burstCount.set(0);
+		}
+
+		try {
+			executor.execute(new FileWork(file, fileTask));
+			return true;
+		} catch (RejectedExecutionException e) {
+			pending.decrementAndGet();
+			return false;
+		}
+	}
+
+	private void onProcessed() {
+		processedCount.incrementAndGet();
+		long count = burstCount.incrementAndGet();
+
+		if (pending.decrementAndGet() == 0) {
+			double seconds = (System.nanoTime() - burstStartNanos) / 1.0E+09;
+
+			if (seconds > 0.0d) {
+				filesPerSecond = count / seconds;
+			}
+
+			if (logger.isInfoEnabled()) {
+				logger.info(String.format("Processed %d files for source %s in %.3f sec. (%.1f files/s)", count,
+						sourceId, seconds, filesPerSecond));
+			}
+		}
+	}
+
+	/**
+	 * Stop processing, waiting briefly for the queued files
+	 * 
+	 * @return Files that were submitted but will not be processed
+	 */
+	public List<File> shutdown() {
+		executor.shutdown();
+
+		List<Runnable> dropped = Collections.emptyList();
+
+		try {
+			if (!executor.awaitTermination(1000, TimeUnit.MILLISECONDS)) {
+				dropped = executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			dropped = executor.shutdownNow();
+		}
+
+		List<File> files = new ArrayList<>(dropped.size());
+
+		for (Runnable runnable : dropped) {
+			files.add(((FileWork) runnable).file);
+		}
+		return files;
+	}
+
+	// a file task, kept with its file so that it can be released if not run
+	private class FileWork implements Runnable {
+		private final File file;
+		private final Runnable fileTask;
+
+		private FileWork(File file, Runnable fileTask) {
+			this.file = file;
+			this.fileTask = fileTask;
+		}
+
+		@Override
+		public void run() {
+			try {
+				fileTask.run();
+			} finally {
+				onProcessed();
+			}
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package org.point85.domain.file;
+
+/**
+ * Callback for each record read from a streamed file
+ *
+ */
+public interface FileRecordHandler {
+	void onRecord(String record, long recordNumber) throws Exception;
+}
@@ -4,10 +4,20 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.time.Instant;
@@ -24,6 +34,12 @@ import org.slf4j.LoggerFactory;
 public class FileService {
 	private static final Logger logger = LoggerFactory.getLogger(FileService.class);
 
+	// size of the read buffer for streamed files
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	// longest record allowed in a streamed file
+	public static final int MAX_RECORD_LENGTH = 1024 * 1024;
+
 	public List<File> getFiles(String directory) {
 		List<File> fileList = new ArrayList<>();
 
@@ -61,7 +77,85 @@ public class FileService {
 
 		Path fileLocation = Paths.get(file.getCanonicalPath());
 		byte[] bytes = Files.readAllBytes(fileLocation);
-		return new String(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Read a UTF-8 file one line at a time through a fixed size buffer so that
+	 * memory use is bounded by the longest record, not the file size. Blank lines
+	 * are skipped.
+	 * 
+	 * @param file    File to read
+	 * @param handler {@link FileRecordHandler} called for each record
+	 * @return Number of records read
+	 * @throws Exception Exception
+	 */
+	public long readRecords(File file, FileRecordHandler handler) throws Exception {
+		if (file == null) {
+			return 0;
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Streaming records from file " + file.getCanonicalPath());
+		}
+
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		ByteBuffer bytes = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		CharBuffer chars = CharBuffer.allocate(READ_BUFFER_SIZE);
+		StringBuilder record = new StringBuilder();
+		long count = 0;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			boolean eof = false;
+
+			while (!eof) {
+				eof = channel.read(bytes) == -1;
+				bytes.flip();
+
+				CoderResult result = decoder.decode(bytes, chars, eof);
+				if (result.isError()) {
+					result.throwException();
+				}
+
+				if (eof) {
+					decoder.flush(chars);
+				}
+				bytes.compact();
+				chars.flip();
+
+				while (chars.hasRemaining()) {
+					char c = chars.get();
+
+					if (c == '\n') {
+						count = emitRecord(record, count, handler);
+					} else if (c != '\r') {
+						if (record.length() >= MAX_RECORD_LENGTH) {
+							throw new IOException("Record " + (count + 1) + " in file " + file.getName()
+									+ " is longer than " + MAX_RECORD_LENGTH + " characters.");
+						}
+						record.append(c);
+					}
+				}
+				chars.clear();
+			}
+
+			// last record without a line terminator
+			count = emitRecord(record, count, handler);
+		}
+		return count;
+	}
+
+	private long emitRecord(StringBuilder record, long count, FileRecordHandler handler) throws Exception {
+		if (record.length() == 0) {
+			return count;
+		}
+
+		long recordNumber = count + 1;
+		handler.onRecord(record.toString(), recordNumber);
+		record.setLength(0);
+		return recordNumber;
 	}
 
 	public void writeFile(String filePath, String fileName, String content) throws IOException {
@@ -161,4 +255,43 @@ public class FileService {
 
 		Files.move(Paths.get(fromPath), Paths.get(toPath), StandardCopyOption.REPLACE_EXISTING);
 	}
+
+	/**
+	 * Rename the file in one step. The destination folder is expected to exist
+	 * (it is only created if the first attempt fails). Falls back to a plain
+	 * replacing move on file systems without atomic renames.
+	 * 
+	 * @param fromPath Source path
+	 * @param toPath   Destination path
+	 * @throws IOException IOException
+	 */
+	public void moveFileAtomically(String fromPath, String toPath) throws IOException {
+		if (logger.isInfoEnabled()) {
+			logger.info("Moving file from " + fromPath + " to " + toPath);
+		}
+
+		Path source = Paths.get(fromPath);
+		Path destination = Paths.get(toPath);
+
+		try {
+			renameFile(source, destination);
+		} catch (NoSuchFileException e) {
+			if (!Files.exists(source) || destination.getParent() == null) {
+				throw e;
+			}
+
+			// folder not created at startup
+			Files.createDirectories(destination.getParent());
+			renameFile(source, destination);
+		}
+	}
+
+	private void renameFile(Path source, Path destination) throws IOException {
+		try {
+			// replaces an existing file on POSIX and Windows
+			Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, destination, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
 }
@@ -0,0 +1,50 @@
+package org.point85.domain.http;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Transfer Object (DTO) for the response to a batch of equipment events.
+ * The results are in the same order as the events in the request.
+ *
+ */
+public class EquipmentEventBatchResponseDto {
+	private static final String OK_STATUS = "OK";
+	private static final String ERROR_STATUS = "ERROR";
+
+	private String status = OK_STATUS;
+	private int accepted;
+	private int rejected;
+	private List<EquipmentEventResponseDto> results = new ArrayList<>();
+
+	public EquipmentEventBatchResponseDto() {
+		// nothing to initialize
+	}
+
+	public void addResult(EquipmentEventResponseDto result) {
+		results.add(result);
+
+		if (result.isOK()) {
+			accepted++;
+		} else {
+			rejected++;
+			status = ERROR_STATUS;
+		}
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public int getAccepted() {
+		return accepted;
+	}
+
+	public int getRejected() {
+		return rejected;
+	}
+
+	public List<EquipmentEventResponseDto> getResults() {
+		return results;
+	}
+}
@@ -0,0 +1,190 @@
+package org.point85.domain.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fan-out of server-sent events to the clients of the push endpoint. Each
+ * event is encoded once and the same bytes are queued to every subscribed
+ * client. A client subscribes to all equipment or to a set of equipment names.
+ * Live OEE snapshots are published periodically for the equipment named by the
+ * subscribers.
+ *
+ */
+class EventPushBroker {
+	// logger
+	private static final Logger logger = LoggerFactory.getLogger(EventPushBroker.class);
+
+	// system property for the OEE snapshot period in seconds, 0 disables them
+	static final String OEE_PERIOD_PROPERTY = "http_push_oee_period_sec";
+
+	static final int DEFAULT_OEE_PERIOD_SEC = 60;
+
+	// event names
+	static final String RESOLVED_EVENT = "resolved";
+	static final String OEE_EVENT = "oee";
+
+	// keeps idle connections open and detects closed ones
+	private static final long HEARTBEAT_MSEC = 15000;
+
+	private static final byte[] HEARTBEAT = ": heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+
+	// client reconnection delay
+	private static final byte[] PREAMBLE = "retry: 5000\n\n".getBytes(StandardCharsets.UTF_8);
+
+	private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+	// calculates the OEE snapshot of equipment
+	private final SnapshotBuilder snapshotBuilder;
+
+	private Timer timer;
+
+	EventPushBroker(SnapshotBuilder snapshotBuilder) {
+		this.snapshotBuilder = snapshotBuilder;
+	}
+
+	synchronized void start() {
+		if (timer != null) {
+			return;
+		}
+		timer = new Timer("EventPush", true);
+
+		timer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				broadcast(HEARTBEAT);
+			}
+		}, HEARTBEAT_MSEC, HEARTBEAT_MSEC);
+
+		long oeePeriod = Integer.getInteger(OEE_PERIOD_PROPERTY, DEFAULT_OEE_PERIOD_SEC) * 1000L;
+
+		if (oeePeriod > 0) {
+			timer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					publishSnapshots();
+				}
+			}, oeePeriod, oeePeriod);
+		}
+	}
+
+	synchronized void stop() {
+		if (timer != null) {
+			timer.cancel();
+			timer = null;
+		}
+
+		for (Subscriber subscriber : subscribers) {
+			subscriber.stream.close();
+		}
+		subscribers.clear();
+	}
+
+	/**
+	 * Add a client
+	 * 
+	 * @param stream    Stream to the client
+	 * @param equipment Names of equipment, or null for all
+	 */
+	void subscribe(EventStream stream, Set<String> equipment) {
+		if (!stream.send(PREAMBLE)) {
+			return;
+		}
+		subscribers.add(new Subscriber(stream, equipment));
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Push client subscribed to " + (equipment != null ? equipment : "all equipment") + ", "
+					+ subscribers.size() + " clients");
+		}
+	}
+
+	boolean hasSubscribers() {
+		return !subscribers.isEmpty();
+	}
+
+	void publish(String equipmentName, String eventName, String json) {
+		if (subscribers.isEmpty()) {
+			return;
+		}
+
+		// encode once for all clients, one data line per JSON line
+		StringBuilder sb = new StringBuilder(json.length() + 32);
+		sb.append("event: ").append(eventName).append('\n');
+
+		for (String line : json.split("\n")) {
+			sb.append("data: ").append(line).append('\n');
+		}
+		sb.append('\n');
+
+		byte[] frame = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+		for (Subscriber subscriber : subscribers) {
+			if (subscriber.accepts(equipmentName) && !subscriber.stream.send(frame)) {
+				remove(subscriber);
+			}
+		}
+	}
+
+	private void broadcast(byte[] frame) {
+		for (Subscriber subscriber : subscribers) {
+			if (!subscriber.stream.send(frame)) {
+				remove(subscriber);
+			}
+		}
+	}
+
+	private void remove(Subscriber subscriber) {
+		if (subscribers.remove(subscriber)) {
+			subscriber.stream.close();
+
+			if (logger.isInfoEnabled()) {
+				logger.info("Push client removed, " + subscribers.size() + " clients");
+			}
+		}
+	}
+
+	private void publishSnapshots() {
+		// equipment named by at least one client
+		Set<String> equipmentNames = new HashSet<>();
+
+		for (Subscriber subscriber : subscribers) {
+			if (subscriber.equipment != null) {
+				equipmentNames.addAll(subscriber.equipment);
+			}
+		}
+
+		for (String equipmentName : equipmentNames) {
+			try {
+				publish(equipmentName, OEE_EVENT, snapshotBuilder.build(equipmentName));
+			} catch (Exception e) {
+				logger.warn("Unable to calculate the OEE of " + equipmentName + ": " + e.getMessage());
+			}
+		}
+	}
+
+	interface SnapshotBuilder {
+		String build(String equipmentName) throws Exception;
+	}
+
+	private static class Subscriber {
+		private final EventStream stream;
+		private final Set<String> equipment;
+
+		private Subscriber(EventStream stream, Set<String> equipment) {
+			this.stream = stream;
+			this.equipment = equipment;
+		}
+
+		private boolean accepts(String equipmentName) {
+			return equipment == null || equipment.contains(equipmentName);
+		}
+	}
+}
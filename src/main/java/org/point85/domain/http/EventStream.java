@@ -0,0 +1,18 @@
+package org.point85.domain.http;
+
+/**
+ * An open response stream to one client. Frames can be sent from any thread.
+ *
+ */
+public interface EventStream {
+	/**
+	 * Queue a frame for the client. The frame is not copied and must not be
+	 * modified afterwards.
+	 * 
+	 * @param frame Encoded bytes
+	 * @return false if the stream is closed or the client is too slow
+	 */
+	boolean send(byte[] frame);
+
+	void close();
+}
@@ -0,0 +1,82 @@
+package org.point85.domain.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Event stream for the blocking server. The connection thread reads the queued
+ * frames as the body of a chunked response and blocks while the queue is empty.
+ *
+ */
+class EventStreamInputStream extends InputStream implements EventStream {
+	// frames waiting to be read
+	private static final int QUEUE_CAPACITY = 1000;
+
+	// marks the end of the stream
+	private static final byte[] END = new byte[0];
+
+	private final BlockingQueue<byte[]> frames = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+	// frame being read
+	private byte[] current;
+	private int position;
+
+	private volatile boolean closed = false;
+
+	@Override
+	public boolean send(byte[] frame) {
+		if (closed) {
+			return false;
+		}
+
+		if (!frames.offer(frame)) {
+			// the client is not keeping up
+			close();
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+		return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		if (current == null || position == current.length) {
+			try {
+				current = frames.take();
+				position = 0;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				closed = true;
+			}
+
+			if (closed || current == END) {
+				return -1;
+			}
+		}
+
+		int count = Math.min(length, current.length - position);
+		System.arraycopy(current, position, buffer, offset, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			frames.clear();
+			frames.offer(END);
+		}
+	}
+}
@@ -1,5 +1,24 @@
 package org.point85.domain.http;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface HttpEventListener {
 	void onHttpEquipmentEvent(String sourceId, String dataValue, String timestamp, String reason);
+
+	/**
+	 * Handle a batch of equipment events
+	 * 
+	 * @param events List of events in arrival order
+	 * @return List of status responses in the same order as the events
+	 */
+	default List<EquipmentEventResponseDto> onHttpEquipmentEvents(List<EquipmentEventRequestDto> events) {
+		List<EquipmentEventResponseDto> responses = new ArrayList<>(events.size());
+
+		for (EquipmentEventRequestDto event : events) {
+			onHttpEquipmentEvent(event.getSourceId(), event.getValue(), event.getTimestamp(), event.getReason());
+			responses.add(new EquipmentEventResponseDto());
+		}
+		return responses;
+	}
 }
@@ -0,0 +1,176 @@
+package org.point85.domain.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator for the HTTP server. Each connection sends its requests one
+ * after the other over a keep-alive connection, and the latency of every
+ * request is reported as the median and 99th percentile. <br>
+ * Usage: HttpLoadGenerator &lt;URL&gt; [connections] [requests per connection]
+ *
+ */
+public class HttpLoadGenerator {
+	public static final int DEFAULT_CONNECTIONS = 16;
+	public static final int DEFAULT_REQUESTS = 1000;
+
+	private final URL url;
+	private final int connections;
+	private final int requests;
+
+	// requests that failed or were not answered with 200
+	private int errors = 0;
+
+	private long elapsedNanos = 0;
+
+	// sorted latencies of the answered requests
+	private long[] latencies = new long[0];
+
+	public HttpLoadGenerator(URL url, int connections, int requests) {
+		this.url = url;
+		this.connections = connections;
+		this.requests = requests;
+	}
+
+	/**
+	 * Send the requests and wait for all connections to finish
+	 *
+	 * @throws Exception Exception
+	 */
+	public void run() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(connections);
+		List<Future<long[]>> futures = new ArrayList<>(connections);
+
+		long start = System.nanoTime();
+
+		try {
+			for (int i = 0; i < connections; i++) {
+				futures.add(executor.submit(this::sendRequests));
+			}
+
+			List<long[]> results = new ArrayList<>(connections);
+			int count = 0;
+
+			for (Future<long[]> future : futures) {
+				long[] result = future.get();
+				results.add(result);
+				count += result.length;
+			}
+			elapsedNanos = System.nanoTime() - start;
+
+			latencies = new long[count];
+			int position = 0;
+
+			for (long[] result : results) {
+				System.arraycopy(result, 0, latencies, position, result.length);
+				position += result.length;
+			}
+			Arrays.sort(latencies);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// latencies of the successful requests on one connection
+	private long[] sendRequests() {
+		long[] result = new long[requests];
+		int count = 0;
+
+		for (int i = 0; i < requests; i++) {
+			long start = System.nanoTime();
+
+			if (sendRequest()) {
+				result[count++] = System.nanoTime() - start;
+			} else {
+				synchronized (this) {
+					errors++;
+				}
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	private boolean sendRequest() {
+		HttpURLConnection connection = null;
+
+		try {
+			connection = (HttpURLConnection) url.openConnection();
+			int status = connection.getResponseCode();
+
+			// read the whole body so that the connection is reused
+			try (InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream()
+					: connection.getErrorStream()) {
+				if (in != null) {
+					byte[] buffer = new byte[8192];
+					while (in.read(buffer) != -1) {
+						// discard
+					}
+				}
+			}
+			return status == HttpURLConnection.HTTP_OK;
+		} catch (IOException e) {
+			if (connection != null) {
+				connection.disconnect();
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Get the latency at this percentile of the answered requests
+	 *
+	 * @param percentile Percentile from 0 to 100
+	 * @return Latency in microseconds
+	 */
+	public long getLatencyMicros(double percentile) {
+		if (latencies.length == 0) {
+			return 0;
+		}
+
+		int index = (int) Math.ceil(percentile / 100.0d * latencies.length) - 1;
+		return TimeUnit.NANOSECONDS.toMicros(latencies[Math.max(0, Math.min(index, latencies.length - 1))]);
+	}
+
+	public synchronized int getErrors() {
+		return errors;
+	}
+
+	public double getRequestsPerSecond() {
+		return elapsedNanos > 0 ? latencies.length * 1.0e9d / elapsedNanos : 0.0d;
+	}
+
+	@Override
+	public String toString() {
+		return "Requests: " + latencies.length + ", errors: " + getErrors() + ", requests/sec: "
+				+ Math.round(getRequestsPerSecond()) + ", p50: " + getLatencyMicros(50) + " usec, p99: "
+				+ getLatencyMicros(99) + " usec";
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Usage: HttpLoadGenerator <URL> [connections] [requests per connection]");
+			return;
+		}
+
+		try {
+			int connections = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CONNECTIONS;
+			int requests = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_REQUESTS;
+
+			HttpLoadGenerator generator = new HttpLoadGenerator(new URL(args[0]), connections, requests);
+			generator.run();
+			System.out.println(generator);
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,952 @@
+package org.point85.domain.http;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Non-blocking HTTP/1.1 server. One selector thread reads and writes all
+ * connections and a bounded pool of worker threads executes the request
+ * handler. Connections are kept alive and pipelined requests are answered in
+ * order, one at a time per connection. Requests arriving when the worker queue
+ * is full are answered with 503 (Service Unavailable). A handler can also
+ * answer with a stream that stays open for server-sent events.
+ *
+ */
+public class NioHttpServer {
+	// logger
+	private static final Logger logger = LoggerFactory.getLogger(NioHttpServer.class);
+
+	// worker threads
+	public static final int DEFAULT_WORKERS = Runtime.getRuntime().availableProcessors() * 2;
+
+	// requests waiting for a worker
+	private static final int QUEUE_CAPACITY = 10000;
+
+	// limits on a request
+	private static final int MAX_HEADER_SIZE = 16 * 1024;
+	private static final int MAX_BODY_SIZE = 16 * 1024 * 1024;
+
+	// initial size of a connection's read buffer
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+	// limit on the read buffers of all connections
+	private static final long MAX_BUFFERED_SIZE = 128L * 1024 * 1024;
+
+	// longest chunk size line
+	private static final int MAX_CHUNK_LINE_SIZE = 1024;
+
+	// idle keep-alive connections are closed after this time
+	private static final long KEEP_ALIVE_MSEC = 30000;
+
+	// a stream client with more than this many bytes unwritten is closed
+	private static final int MAX_STREAM_BACKLOG = 1024 * 1024;
+
+	// status codes
+	public static final int OK = 200;
+	public static final int ACCEPTED = 202;
+	public static final int NOT_MODIFIED = 304;
+	public static final int BAD_REQUEST = 400;
+	public static final int NOT_FOUND = 404;
+	public static final int PAYLOAD_TOO_LARGE = 413;
+	public static final int INTERNAL_ERROR = 500;
+	public static final int SERVICE_UNAVAILABLE = 503;
+
+	public static final String MIME_PLAINTEXT = "text/plain";
+	public static final String MIME_JSON = "application/json";
+
+	private static final byte[] HEADER_END = { '\r', '\n', '\r', '\n' };
+
+	// listening port
+	private final int port;
+
+	// request handler
+	private final RequestHandler handler;
+
+	// number of worker threads
+	private final int workers;
+
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private Thread selectorThread;
+	private ThreadPoolExecutor workerPool;
+	private volatile boolean running = false;
+
+	// work for the selector thread posted by workers
+	private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+
+	// last check for idle connections
+	private long lastIdleCheck;
+
+	// bytes in the read buffers of all connections, used by the selector thread
+	private long bufferedSize;
+
+	public NioHttpServer(int port, int workers, RequestHandler handler) {
+		this.port = port;
+		this.workers = workers > 0 ? workers : DEFAULT_WORKERS;
+		this.handler = handler;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public synchronized void start() throws IOException {
+		if (running) {
+			return;
+		}
+
+		AtomicInteger threadNumber = new AtomicInteger();
+		workerPool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+					Thread thread = new Thread(runnable, "HttpWorker-" + port + "-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(new InetSocketAddress(port), 1024);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		running = true;
+		selectorThread = new Thread(this::runSelector, "HttpSelector-" + port);
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Started non-blocking HTTP server on port " + port + " with " + workers + " workers");
+		}
+	}
+
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		selector.wakeup();
+
+		try {
+			selectorThread.join(2000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		workerPool.shutdown();
+
+		try {
+			if (!workerPool.awaitTermination(1000, TimeUnit.MILLISECONDS)) {
+				workerPool.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			workerPool.shutdownNow();
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Stopped non-blocking HTTP server on port " + port);
+		}
+	}
+
+	private void runSelector() {
+		try {
+			while (running) {
+				selector.select(1000);
+
+				Runnable task = null;
+				while ((task = selectorTasks.poll()) != null) {
+					task.run();
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if (!key.isValid()) {
+						continue;
+					}
+
+					try {
+						if (key.isAcceptable()) {
+							onAccept();
+						} else {
+							Connection connection = (Connection) key.attachment();
+
+							if (key.isWritable()) {
+								connection.write();
+							}
+
+							if (key.isValid() && key.isReadable()) {
+								connection.read();
+							}
+						}
+					} catch (IOException e) {
+						if (key.attachment() != null) {
+							((Connection) key.attachment()).close();
+						}
+					}
+				}
+				closeIdleConnections();
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			logger.error("HTTP selector failed on port " + port, e);
+		} finally {
+			closeAll();
+		}
+	}
+
+	private void onAccept() throws IOException {
+		SocketChannel channel = null;
+
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+
+			Connection connection = new Connection(channel);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+		}
+	}
+
+	private void closeIdleConnections() {
+		long now = System.currentTimeMillis();
+
+		if (now - lastIdleCheck < 1000) {
+			return;
+		}
+		lastIdleCheck = now;
+
+		for (SelectionKey key : selector.keys()) {
+			Connection connection = (Connection) key.attachment();
+
+			if (connection != null && !connection.busy && now - connection.lastActivity > KEEP_ALIVE_MSEC) {
+				connection.close();
+			}
+		}
+	}
+
+	private void closeAll() {
+		try {
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() != null) {
+					((Connection) key.attachment()).close();
+				}
+			}
+			serverChannel.close();
+			selector.close();
+		} catch (IOException | ClosedSelectorException e) {
+			logger.error("Unable to close HTTP server on port " + port, e);
+		}
+	}
+
+	// run the handler on a worker thread then respond on the selector thread
+	private void dispatch(Connection connection, Request request) {
+		connection.busy = true;
+		connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_READ);
+
+		try {
+			workerPool.execute(() -> {
+				Response response = null;
+
+				try {
+					response = handler.handle(request);
+				} catch (Exception e) {
+					logger.error("HTTP request " + request.getUri() + " failed.", e);
+					response = new Response(INTERNAL_ERROR, MIME_PLAINTEXT, String.valueOf(e.getMessage()));
+				}
+
+				if (response.streamListener != null) {
+					Response streamResponse = response;
+					selectorTasks.add(() -> connection.openStream(streamResponse));
+				} else {
+					byte[] bytes = response.encode(request.isKeepAlive());
+					selectorTasks.add(() -> connection.respond(bytes, request.isKeepAlive()));
+				}
+				selector.wakeup();
+			});
+		} catch (RejectedExecutionException e) {
+			Response busy = new Response(SERVICE_UNAVAILABLE, MIME_PLAINTEXT, "The server is busy.");
+			connection.respond(busy.encode(false), false);
+		}
+	}
+
+	/**
+	 * Handler of a parsed request, called on a worker thread
+	 */
+	public interface RequestHandler {
+		Response handle(Request request) throws Exception;
+	}
+
+	/**
+	 * Called on the selector thread when a stream response has been opened
+	 */
+	public interface StreamListener {
+		void onOpen(EventStream stream);
+	}
+
+	/**
+	 * An HTTP request
+	 */
+	public static class Request {
+		private final String method;
+		private final String uri;
+		private final Map<String, String> parameters;
+		private final Map<String, String> headers;
+		private final byte[] body;
+		private final boolean keepAlive;
+
+		Request(String method, String uri, Map<String, String> parameters, Map<String, String> headers, byte[] body,
+				boolean keepAlive) {
+			this.method = method;
+			this.uri = uri;
+			this.parameters = parameters;
+			this.headers = headers;
+			this.body = body;
+			this.keepAlive = keepAlive;
+		}
+
+		public String getMethod() {
+			return method;
+		}
+
+		public String getUri() {
+			return uri;
+		}
+
+		// decoded query string parameters
+		public Map<String, String> getParameters() {
+			return parameters;
+		}
+
+		// header names are in lower case
+		public String getHeader(String name) {
+			return headers.get(name.toLowerCase());
+		}
+
+		public Map<String, String> getHeaders() {
+			return headers;
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+
+		public String getBodyAsString() {
+			return new String(body, StandardCharsets.UTF_8);
+		}
+
+		public boolean isKeepAlive() {
+			return keepAlive;
+		}
+	}
+
+	/**
+	 * An HTTP response
+	 */
+	public static class Response {
+		private final int status;
+		private final String contentType;
+		private final byte[] body;
+		private final Map<String, String> headers = new LinkedHashMap<>();
+
+		// set for a response that streams until the client disconnects
+		private StreamListener streamListener;
+
+		public Response(int status, String contentType, byte[] body) {
+			this.status = status;
+			this.contentType = contentType;
+			this.body = body != null ? body : new byte[0];
+		}
+
+		public Response(int status, String contentType, String body) {
+			this(status, contentType, body != null ? body.getBytes(StandardCharsets.UTF_8) : null);
+		}
+
+		// a response without a length, kept open for frames sent to the stream
+		public static Response stream(String contentType, StreamListener listener) {
+			Response response = new Response(OK, contentType, (byte[]) null);
+			response.streamListener = listener;
+			return response;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+
+		public Response addHeader(String name, String value) {
+			headers.put(name, value);
+			return this;
+		}
+
+		byte[] encode(boolean keepAlive) {
+			StringBuilder sb = new StringBuilder(128);
+			sb.append("HTTP/1.1 ").append(status).append(' ').append(getReasonPhrase(status)).append("\r\n");
+
+			if (contentType != null) {
+				sb.append("Content-Type: ").append(contentType).append("\r\n");
+			}
+			if (streamListener == null) {
+				sb.append("Content-Length: ").append(body.length).append("\r\n");
+			}
+			sb.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+				sb.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+			}
+			sb.append("\r\n");
+
+			byte[] head = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+			byte[] bytes = new byte[head.length + body.length];
+			System.arraycopy(head, 0, bytes, 0, head.length);
+			System.arraycopy(body, 0, bytes, head.length, body.length);
+			return bytes;
+		}
+
+		private static String getReasonPhrase(int status) {
+			switch (status) {
+			case OK:
+				return "OK";
+			case ACCEPTED:
+				return "Accepted";
+			case NOT_MODIFIED:
+				return "Not Modified";
+			case BAD_REQUEST:
+				return "Bad Request";
+			case NOT_FOUND:
+				return "Not Found";
+			case PAYLOAD_TOO_LARGE:
+				return "Payload Too Large";
+			case SERVICE_UNAVAILABLE:
+				return "Service Unavailable";
+			default:
+				return "Internal Server Error";
+			}
+		}
+	}
+
+	// frames sent from any thread are written by the selector thread
+	private class ConnectionStream implements EventStream {
+		private final Connection connection;
+
+		private ConnectionStream(Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public boolean send(byte[] frame) {
+			if (!running || !connection.channel.isOpen()) {
+				return false;
+			}
+
+			if (connection.backlog.addAndGet(frame.length) > MAX_STREAM_BACKLOG) {
+				// the client is not keeping up
+				close();
+				return false;
+			}
+
+			selectorTasks.add(() -> connection.push(frame));
+			selector.wakeup();
+			return true;
+		}
+
+		@Override
+		public void close() {
+			selectorTasks.add(connection::close);
+			selector.wakeup();
+		}
+	}
+
+	// an invalid request
+	private static class BadRequestException extends Exception {
+		private static final long serialVersionUID = 3049253226340719564L;
+
+		private final int status;
+
+		BadRequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	// state of a client connection
+	private class Connection {
+		private final SocketChannel channel;
+		private SelectionKey key;
+
+		// received bytes not yet parsed, in write mode
+		private ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+		// encoded responses not yet written
+		private final Queue<ByteBuffer> output = new ArrayDeque<>();
+
+		// a request is being handled
+		private boolean busy = false;
+
+		// close once the output is written
+		private boolean closing = false;
+
+		// interim response sent for the current request
+		private boolean continueSent = false;
+
+		// the response is a stream of events
+		private boolean streaming = false;
+
+		// stream bytes queued but not yet written
+		private final AtomicInteger backlog = new AtomicInteger();
+
+		private long lastActivity = System.currentTimeMillis();
+
+		// parse state of the current request kept between reads, so that the
+		// received bytes are scanned once
+		private int headerScanned = 0;
+		private String[] requestLine;
+		private Map<String, String> headers;
+		private int bodyStart;
+
+		// offset of the next chunk and length of the chunks decoded at bodyStart
+		private int chunkPosition;
+		private int chunkedLength;
+
+		private boolean closed = false;
+
+		private Connection(SocketChannel channel) {
+			this.channel = channel;
+			bufferedSize += input.capacity();
+		}
+
+		private void read() throws IOException {
+			if (!input.hasRemaining() && !growInput()) {
+				Response busy = new Response(SERVICE_UNAVAILABLE, MIME_PLAINTEXT, "The server is busy.");
+				respond(busy.encode(false), false);
+				return;
+			}
+
+			int count = channel.read(input);
+
+			if (count == -1) {
+				close();
+				return;
+			}
+			lastActivity = System.currentTimeMillis();
+
+			if (streaming) {
+				// nothing more is expected from a stream client
+				input.clear();
+				return;
+			}
+
+			processInput();
+		}
+
+		// false if the buffers of all connections are at their limit
+		private boolean growInput() throws IOException {
+			if (input.capacity() >= MAX_HEADER_SIZE + MAX_BODY_SIZE) {
+				throw new IOException("Request is too large");
+			}
+			int capacity = Math.min(input.capacity() * 2, MAX_HEADER_SIZE + MAX_BODY_SIZE);
+
+			if (bufferedSize + capacity - input.capacity() > MAX_BUFFERED_SIZE) {
+				return false;
+			}
+			resizeInput(capacity);
+			return true;
+		}
+
+		// release a grown buffer once the large request has been consumed
+		private void shrinkInput() {
+			if (input.capacity() > READ_BUFFER_SIZE && input.position() <= READ_BUFFER_SIZE) {
+				resizeInput(READ_BUFFER_SIZE);
+			}
+		}
+
+		private void resizeInput(int capacity) {
+			ByteBuffer resized = ByteBuffer.allocate(capacity);
+			input.flip();
+			resized.put(input);
+			bufferedSize += capacity - input.capacity();
+			input = resized;
+		}
+
+		// dispatch the next complete request, if any
+		private void processInput() {
+			if (busy || closing) {
+				return;
+			}
+
+			try {
+				Request request = parseRequest();
+
+				if (request != null) {
+					dispatch(this, request);
+				}
+			} catch (BadRequestException e) {
+				Response response = new Response(e.status, MIME_PLAINTEXT, e.getMessage());
+				respond(response.encode(false), false);
+			}
+		}
+
+		private void respond(byte[] bytes, boolean keepAlive) {
+			if (!channel.isOpen()) {
+				return;
+			}
+
+			busy = false;
+			closing = !keepAlive;
+			output.add(ByteBuffer.wrap(bytes));
+			lastActivity = System.currentTimeMillis();
+
+			try {
+				write();
+			} catch (IOException e) {
+				close();
+				return;
+			}
+
+			// a pipelined request could already be buffered
+			processInput();
+		}
+
+		private void write() throws IOException {
+			while (!output.isEmpty()) {
+				ByteBuffer buffer = output.peek();
+				channel.write(buffer);
+
+				if (buffer.hasRemaining()) {
+					// socket buffer is full
+					key.interestOps(SelectionKey.OP_WRITE);
+					return;
+				}
+				output.poll();
+
+				if (streaming) {
+					backlog.addAndGet(-buffer.limit());
+				}
+			}
+
+			if (closing) {
+				close();
+			} else if (key.isValid()) {
+				// a stream connection is read only to detect the client closing it
+				key.interestOps(busy && !streaming ? 0 : SelectionKey.OP_READ);
+			}
+		}
+
+		// send the stream headers then hand the stream to the listener
+		private void openStream(Response response) {
+			if (!channel.isOpen()) {
+				return;
+			}
+
+			// stays busy so that it is not closed as idle
+			streaming = true;
+			input.clear();
+
+			byte[] head = response.encode(false);
+			backlog.addAndGet(head.length);
+			push(head);
+
+			if (channel.isOpen()) {
+				response.streamListener.onOpen(new ConnectionStream(this));
+			}
+		}
+
+		// queue stream bytes on the selector thread, already counted in the backlog
+		private void push(byte[] bytes) {
+			if (!channel.isOpen()) {
+				return;
+			}
+
+			output.add(ByteBuffer.wrap(bytes));
+
+			try {
+				write();
+			} catch (IOException e) {
+				close();
+			}
+		}
+
+		private void close() {
+			if (!closed) {
+				closed = true;
+				bufferedSize -= input.capacity();
+			}
+
+			try {
+				key.cancel();
+				channel.close();
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+
+		private Request parseRequest() throws BadRequestException {
+			byte[] bytes = input.array();
+			int length = input.position();
+
+			if (requestLine == null && !parseHead(bytes, length)) {
+				return null;
+			}
+
+			// body
+			int consumed = 0;
+			byte[] body = null;
+
+			String transferEncoding = headers.get("transfer-encoding");
+			String contentLength = headers.get("content-length");
+
+			if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+				consumed = decodeChunks(bytes, length);
+
+				if (consumed == -1) {
+					return null;
+				}
+				body = Arrays.copyOfRange(bytes, bodyStart, bodyStart + chunkedLength);
+			} else if (contentLength != null) {
+				int bodyLength = 0;
+
+				try {
+					bodyLength = Integer.parseInt(contentLength);
+				} catch (NumberFormatException e) {
+					throw new BadRequestException(BAD_REQUEST, "Invalid Content-Length " + contentLength);
+				}
+
+				if (bodyLength < 0 || bodyLength > MAX_BODY_SIZE) {
+					throw new BadRequestException(PAYLOAD_TOO_LARGE, "The request body is too large.");
+				}
+
+				if (length - bodyStart < bodyLength) {
+					return null;
+				}
+				body = new byte[bodyLength];
+				System.arraycopy(bytes, bodyStart, body, 0, bodyLength);
+				consumed = bodyStart + bodyLength;
+			} else {
+				body = new byte[0];
+				consumed = bodyStart;
+			}
+
+			String[] line = requestLine;
+			Map<String, String> requestHeaders = headers;
+
+			// keep the bytes of any pipelined requests
+			continueSent = false;
+			requestLine = null;
+			headers = null;
+			headerScanned = 0;
+			input.flip();
+			input.position(consumed);
+			input.compact();
+			shrinkInput();
+
+			// keep-alive is the default for HTTP/1.1
+			String version = line[2];
+			String connectionHeader = requestHeaders.get("connection");
+			boolean keepAlive = version.equals("HTTP/1.1") ? !"close".equalsIgnoreCase(connectionHeader)
+					: "keep-alive".equalsIgnoreCase(connectionHeader);
+
+			// path and query string
+			String target = line[1];
+			String uri = target;
+			Map<String, String> parameters = new HashMap<>();
+			int query = target.indexOf('?');
+
+			if (query != -1) {
+				uri = target.substring(0, query);
+				decodeParameters(target.substring(query + 1), parameters);
+			}
+
+			return new Request(line[0], uri, parameters, requestHeaders, body, keepAlive);
+		}
+
+		// parse the header once it has been received, false if it is incomplete
+		private boolean parseHead(byte[] bytes, int length) throws BadRequestException {
+			// continue the search after the bytes already scanned
+			int from = Math.max(0, headerScanned - HEADER_END.length + 1);
+			int headerEnd = indexOf(bytes, from, length, HEADER_END);
+
+			if (headerEnd == -1) {
+				if (length > MAX_HEADER_SIZE) {
+					throw new BadRequestException(BAD_REQUEST, "The request header is too large.");
+				}
+				headerScanned = length;
+				return false;
+			}
+
+			String head = new String(bytes, 0, headerEnd, StandardCharsets.ISO_8859_1);
+			String[] lines = head.split("\r\n");
+			String[] line = lines[0].split(" ");
+
+			if (line.length != 3) {
+				throw new BadRequestException(BAD_REQUEST, "Invalid request line " + lines[0]);
+			}
+
+			Map<String, String> headerMap = new HashMap<>();
+			for (int i = 1; i < lines.length; i++) {
+				int colon = lines[i].indexOf(':');
+
+				if (colon > 0) {
+					headerMap.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon + 1).trim());
+				}
+			}
+
+			if (!continueSent && "100-continue".equalsIgnoreCase(headerMap.get("expect"))) {
+				// the client waits for this before sending the body
+				continueSent = true;
+				output.add(ByteBuffer.wrap("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)));
+				try {
+					write();
+				} catch (IOException e) {
+					close();
+					return false;
+				}
+			}
+
+			requestLine = line;
+			headers = headerMap;
+			bodyStart = headerEnd + HEADER_END.length;
+			chunkPosition = bodyStart;
+			chunkedLength = 0;
+			return true;
+		}
+
+		// decode the chunks received since the last read, moving their data down
+		// to follow the chunks already decoded at bodyStart. Returns the end offset
+		// or -1 if incomplete.
+		private int decodeChunks(byte[] bytes, int end) throws BadRequestException {
+			while (true) {
+				int position = chunkPosition;
+				int lineEnd = indexOf(bytes, position, end, HEADER_END, 2);
+
+				if (lineEnd == -1) {
+					if (end - position > MAX_CHUNK_LINE_SIZE) {
+						throw new BadRequestException(BAD_REQUEST, "The chunk size line is too long.");
+					}
+					return -1;
+				}
+
+				String sizeLine = new String(bytes, position, lineEnd - position, StandardCharsets.ISO_8859_1);
+				int extension = sizeLine.indexOf(';');
+				if (extension != -1) {
+					sizeLine = sizeLine.substring(0, extension);
+				}
+
+				int size = 0;
+				try {
+					size = Integer.parseInt(sizeLine.trim(), 16);
+				} catch (NumberFormatException e) {
+					throw new BadRequestException(BAD_REQUEST, "Invalid chunk size " + sizeLine);
+				}
+
+				if (size < 0 || chunkedLength + size > MAX_BODY_SIZE) {
+					throw new BadRequestException(PAYLOAD_TOO_LARGE, "The request body is too large.");
+				}
+				position = lineEnd + 2;
+
+				if (size == 0) {
+					// skip any trailers up to the empty line
+					while (true) {
+						int trailerEnd = indexOf(bytes, position, end, HEADER_END, 2);
+
+						if (trailerEnd == -1) {
+							if (end - chunkPosition > MAX_HEADER_SIZE) {
+								throw new BadRequestException(BAD_REQUEST, "The request trailer is too large.");
+							}
+							return -1;
+						}
+
+						boolean empty = trailerEnd == position;
+						position = trailerEnd + 2;
+
+						if (empty) {
+							return position;
+						}
+					}
+				}
+
+				if (end - position < size + 2) {
+					return -1;
+				}
+				System.arraycopy(bytes, position, bytes, bodyStart + chunkedLength, size);
+				chunkedLength += size;
+				chunkPosition = position + size + 2;
+			}
+		}
+	}
+
+	private static int indexOf(byte[] bytes, int from, int to, byte[] pattern) {
+		return indexOf(bytes, from, to, pattern, pattern.length);
+	}
+
+	// find the first patternLength bytes of the pattern
+	private static int indexOf(byte[] bytes, int from, int to, byte[] pattern, int patternLength) {
+		for (int i = from; i <= to - patternLength; i++) {
+			boolean match = true;
+
+			for (int j = 0; j < patternLength; j++) {
+				if (bytes[i + j] != pattern[j]) {
+					match = false;
+					break;
+				}
+			}
+
+			if (match) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void decodeParameters(String queryString, Map<String, String> parameters) {
+		for (String pair : queryString.split("&")) {
+			if (pair.isEmpty()) {
+				continue;
+			}
+
+			int equals = pair.indexOf('=');
+
+			try {
+				if (equals == -1) {
+					parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+				} else {
+					parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+							URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+				}
+			} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+				// skip a malformed parameter
+			}
+		}
+	}
+}
@@ -1,24 +1,45 @@
 package org.point85.domain.http;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
+import org.point85.domain.DomainUtils;
 import org.point85.domain.collector.CollectorDataSource;
 import org.point85.domain.collector.DataSourceType;
+import org.point85.domain.messaging.CollectorResolvedEventMessage;
+import org.point85.domain.oee.EquipmentLoss;
+import org.point85.domain.oee.EquipmentLossManager;
+import org.point85.domain.oee.ParetoItem;
 import org.point85.domain.oee.TimeLoss;
 import org.point85.domain.persistence.PersistenceService;
+import org.point85.domain.plant.Equipment;
+import org.point85.domain.plant.EquipmentMaterial;
 import org.point85.domain.plant.Material;
 import org.point85.domain.plant.PlantEntity;
 import org.point85.domain.plant.Reason;
+import org.point85.domain.uom.Unit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 import fi.iki.elonen.NanoHTTPD;
 
@@ -26,17 +47,35 @@ public class OeeHttpServer extends NanoHTTPD {
 	// default port
 	public static final int DEFAULT_PORT = 8182;
 
+	// system property to serve requests with the non-blocking server
+	public static final String NIO_MODE_PROPERTY = "http_nio_mode";
+
+	// system property for the number of non-blocking server worker threads
+	public static final String NIO_WORKERS_PROPERTY = "http_nio_workers";
+
 	// query string attributes
 	public static final String EQUIP_ATTRIB = "equipment";
 	public static final String DS_TYPE_ATTRIB = "sourceType";
+	public static final String MATERIAL_ATTRIB = "material";
+	public static final String FROM_ATTRIB = "from";
+	public static final String TO_ATTRIB = "to";
 
 	// endpoints
 	public static final String ENTITY_EP = "entity";
 	public static final String REASON_EP = "reason";
 	public static final String MATERIAL_EP = "material";
 	public static final String EVENT_EP = "event";
+	public static final String EVENTS_EP = "events";
 	public static final String SOURCE_ID_EP = "source_id";
 	public static final String DATA_SOURCE_EP = "data_source";
+	public static final String OEE_EP = "oee";
+	public static final String PUSH_EP = "push";
+
+	// server-sent events
+	public static final String MIME_EVENT_STREAM = "text/event-stream";
+
+	// default OEE time period if "from" is not specified
+	private static final Duration DEFAULT_OEE_PERIOD = Duration.ofDays(1);
 
 	// logger
 	private static final Logger logger = LoggerFactory.getLogger(OeeHttpServer.class);
@@ -47,6 +86,9 @@ public class OeeHttpServer extends NanoHTTPD {
 	// event listener
 	private HttpEventListener eventListener;
 
+	// maximum number of events in a batch request
+	public static final int MAX_BATCH_SIZE = 10000;
+
 	// JSON parser
 	private final Gson gson = new Gson();
 
@@ -57,16 +99,67 @@ public class OeeHttpServer extends NanoHTTPD {
 
 	private ServerState state = ServerState.STOPPED;
 
+	// listening port
+	private final int port;
+
+	// true to serve requests with the non-blocking server
+	private boolean nonBlocking = false;
+
+	// number of non-blocking worker threads
+	private int workerThreads = NioHttpServer.DEFAULT_WORKERS;
+
+	// non-blocking server
+	private NioHttpServer nioServer;
+
+	// serialized reference data
+	private final PayloadCache payloadCache = new PayloadCache();
+
+	// OEE query results
+	private final OeeQueryCache oeeCache = new OeeQueryCache();
+
+	// push clients, with OEE snapshots for the default material
+	private final EventPushBroker pushBroker = new EventPushBroker(
+			equipmentName -> buildOeePayload(Collections.singletonMap(EQUIP_ATTRIB, equipmentName)));
+
 	public OeeHttpServer(int port) {
 		super(port);
+		this.port = port;
 	}
 
 	public ServerState getState() {
 		return state;
 	}
 
+	public boolean isNonBlocking() {
+		return nonBlocking;
+	}
+
+	public void setNonBlocking(boolean nonBlocking) {
+		this.nonBlocking = nonBlocking;
+	}
+
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	public void setWorkerThreads(int workerThreads) {
+		this.workerThreads = workerThreads;
+	}
+
 	public void startup() throws Exception {
-		start(NanoHTTPD.SOCKET_READ_TIMEOUT, false);
+		// rebuild cached payloads when reference data changes
+		PersistenceService.instance().addPersistenceListener(payloadCache);
+		PersistenceService.instance().addPersistenceListener(oeeCache);
+		pushBroker.start();
+
+		if (nonBlocking) {
+			if (nioServer == null) {
+				nioServer = new NioHttpServer(port, workerThreads, this::serve);
+			}
+			nioServer.start();
+		} else {
+			start(NanoHTTPD.SOCKET_READ_TIMEOUT, false);
+		}
 		state = ServerState.STARTED;
 	}
 
@@ -75,10 +168,97 @@ public class OeeHttpServer extends NanoHTTPD {
 			logger.info("Shutting down HTTP server " + getHostname());
 		}
 
-		stop();
+		// releases the threads of blocking push clients
+		pushBroker.stop();
+
+		if (nioServer != null) {
+			nioServer.stop();
+			nioServer = null;
+		} else {
+			stop();
+		}
+
+		PersistenceService.instance().removePersistenceListener(payloadCache);
+		PersistenceService.instance().removePersistenceListener(oeeCache);
+		payloadCache.clear();
+		oeeCache.clear();
+
 		state = ServerState.STOPPED;
 	}
 
+	// serve a request from the non-blocking server
+	private NioHttpServer.Response serve(NioHttpServer.Request request) {
+		String uri = request.getUri();
+
+		if (logger.isDebugEnabled()) {
+			logger.debug(request.getMethod() + " '" + uri + "' " + ", parameters: " + request.getParameters());
+		}
+
+		String[] tokens = uri.split("/");
+
+		if (tokens.length < 2) {
+			return createNioErrorResponse("Invalid endpoint " + uri);
+		}
+
+		NioHttpServer.Response response = null;
+
+		try {
+			if (tokens[1].equalsIgnoreCase(ENTITY_EP)) {
+				response = serveCachedRequest(request, ENTITY_EP, this::buildPlantEntityPayload);
+
+			} else if (tokens[1].equalsIgnoreCase(REASON_EP)) {
+				response = serveCachedRequest(request, REASON_EP, this::buildReasonPayload);
+
+			} else if (tokens[1].equalsIgnoreCase(MATERIAL_EP)) {
+				response = serveCachedRequest(request, MATERIAL_EP, this::buildMaterialPayload);
+
+			} else if (tokens[1].equalsIgnoreCase(EVENT_EP)) {
+				EquipmentEventResponseDto responseDto = processEquipmentEvent(request.getBodyAsString());
+				response = new NioHttpServer.Response(NioHttpServer.ACCEPTED, MIME_PLAINTEXT, gson.toJson(responseDto));
+
+			} else if (tokens[1].equalsIgnoreCase(EVENTS_EP)) {
+				EquipmentEventBatchResponseDto responseDto = processEquipmentEvents(request.getBodyAsString());
+				response = new NioHttpServer.Response(NioHttpServer.ACCEPTED, MIME_PLAINTEXT, gson.toJson(responseDto));
+
+			} else if (tokens[1].equalsIgnoreCase(SOURCE_ID_EP) || tokens[1].equalsIgnoreCase(DATA_SOURCE_EP)
+					|| tokens[1].equalsIgnoreCase(OEE_EP)) {
+				try {
+					String payload = null;
+
+					if (tokens[1].equalsIgnoreCase(SOURCE_ID_EP)) {
+						payload = buildSourceIdPayload(request.getParameters());
+					} else if (tokens[1].equalsIgnoreCase(DATA_SOURCE_EP)) {
+						payload = buildDataSourcePayload(request.getParameters());
+					} else {
+						payload = buildOeePayload(request.getParameters());
+					}
+					response = new NioHttpServer.Response(NioHttpServer.OK, MIME_PLAINTEXT, payload);
+				} catch (Exception e) {
+					logger.error(tokens[1] + " request failed.", e);
+					response = new NioHttpServer.Response(NioHttpServer.BAD_REQUEST, MIME_PLAINTEXT, e.getMessage());
+				}
+
+			} else if (tokens[1].equalsIgnoreCase(PUSH_EP)) {
+				Set<String> equipment = parseEquipmentNames(request.getParameters().get(EQUIP_ATTRIB));
+				response = NioHttpServer.Response.stream(MIME_EVENT_STREAM,
+						stream -> pushBroker.subscribe(stream, equipment));
+				response.addHeader("Cache-Control", "no-cache");
+
+			} else {
+				response = createNioErrorResponse("Unrecognized endpoint " + uri);
+			}
+		} catch (Exception e) {
+			logger.error(uri + " request failed.", e);
+			response = createNioErrorResponse(e.getMessage());
+		}
+		return response;
+	}
+
+	private NioHttpServer.Response createNioErrorResponse(String message) {
+		EquipmentEventResponseDto responseDto = new EquipmentEventResponseDto(message);
+		return new NioHttpServer.Response(NioHttpServer.BAD_REQUEST, MIME_PLAINTEXT, gson.toJson(responseDto));
+	}
+
 	// serve the request
 	@SuppressWarnings("deprecation")
 	@Override
@@ -111,15 +291,15 @@ public class OeeHttpServer extends NanoHTTPD {
 			// entity
 			if (tokens[1].equalsIgnoreCase(ENTITY_EP)) {
 				// plant entities request
-				response = servePlantEntityRequest();
+				response = serveCachedRequest(session, ENTITY_EP, this::buildPlantEntityPayload);
 
 			} else if (tokens[1].equalsIgnoreCase(REASON_EP)) {
 				// reasons request
-				response = serveReasonRequest();
+				response = serveCachedRequest(session, REASON_EP, this::buildReasonPayload);
 
 			} else if (tokens[1].equalsIgnoreCase(MATERIAL_EP)) {
 				// material request
-				response = serveMaterialRequest();
+				response = serveCachedRequest(session, MATERIAL_EP, this::buildMaterialPayload);
 
 			} else if (tokens[1].equalsIgnoreCase(EVENT_EP)) {
 				// equipment event
@@ -127,6 +307,12 @@ public class OeeHttpServer extends NanoHTTPD {
 				String json = gson.toJson(responseDto);
 				response = newFixedLengthResponse(Response.Status.ACCEPTED, NanoHTTPD.MIME_PLAINTEXT, json);
 
+			} else if (tokens[1].equalsIgnoreCase(EVENTS_EP)) {
+				// batch of equipment events
+				EquipmentEventBatchResponseDto responseDto = serveEquipmentEvents(session);
+				String json = gson.toJson(responseDto);
+				response = newFixedLengthResponse(Response.Status.ACCEPTED, NanoHTTPD.MIME_PLAINTEXT, json);
+
 			} else if (tokens[1].equalsIgnoreCase(SOURCE_ID_EP)) {
 				// source id request
 				response = serveSourceIdRequest(session);
@@ -134,6 +320,14 @@ public class OeeHttpServer extends NanoHTTPD {
 				// data source request
 				response = serveDataSourceRequest(session);
 
+			} else if (tokens[1].equalsIgnoreCase(OEE_EP)) {
+				// OEE request
+				response = serveOeeRequest(session);
+
+			} else if (tokens[1].equalsIgnoreCase(PUSH_EP)) {
+				// server-sent events
+				response = servePushRequest(session);
+
 			} else {
 				response = createErrorResponse("Unrecognized endpoint " + uri);
 			}
@@ -152,20 +346,21 @@ public class OeeHttpServer extends NanoHTTPD {
 	}
 
 	private EquipmentEventResponseDto serveEquipmentEvent(IHTTPSession session) throws Exception {
-		EquipmentEventResponseDto responseDto = new EquipmentEventResponseDto();
-		EquipmentEventRequestDto dto = null;
-
 		// data expected as HTTP body
 		Map<String, String> bodyMap = new HashMap<String, String>();
 
 		try {
 			session.parseBody(bodyMap);
 		} catch (Exception e) {
-			responseDto.setErrorText(e.getMessage());
-			return responseDto;
+			return new EquipmentEventResponseDto(e.getMessage());
 		}
 
-		String body = bodyMap.get("postData");
+		return processEquipmentEvent(bodyMap.get("postData"));
+	}
+
+	private EquipmentEventResponseDto processEquipmentEvent(String body) throws Exception {
+		EquipmentEventResponseDto responseDto = new EquipmentEventResponseDto();
+		EquipmentEventRequestDto dto = null;
 
 		if (body != null && body.length() > 0) {
 			if (logger.isInfoEnabled()) {
@@ -179,36 +374,190 @@ public class OeeHttpServer extends NanoHTTPD {
 			return responseDto;
 		}
 
+		String errorText = validateEvent(dto);
+
+		if (errorText != null) {
+			responseDto.setErrorText(errorText);
+			return responseDto;
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Data change for source id: " + dto.getSourceId() + ", Value: " + dto.getValue()
+					+ ", Timestamp: " + dto.getTimestamp() + ", Reason: " + dto.getReason());
+		}
+
+		// call listener on same thread
+		eventListener.onHttpEquipmentEvent(dto.getSourceId(), dto.getValue(), dto.getTimestamp(), dto.getReason());
+
+		return responseDto;
+	}
+
+	private String validateEvent(EquipmentEventRequestDto dto) {
+		if (dto == null) {
+			return "Invalid event data.";
+		}
+
 		// entity data change event
 		if (dto.getValue() == null || dto.getValue().length() == 0) {
-			responseDto.setErrorText("The value must be specified.");
-			return responseDto;
+			return "The value must be specified.";
 		}
 
 		if (dto.getSourceId() == null || dto.getSourceId().length() == 0) {
-			responseDto.setErrorText("The source id must be specified.");
-			return responseDto;
+			return "The source id must be specified.";
 		}
 
 		if (!acceptingEventRequests) {
-			responseDto.setErrorText("The server is not accepting event requests.");
-			return responseDto;
+			return "The server is not accepting event requests.";
 		}
 
 		if (eventListener == null) {
-			responseDto.setErrorText("There is no listener for this event.");
-			return responseDto;
+			return "There is no listener for this event.";
+		}
+		return null;
+	}
+
+	private EquipmentEventBatchResponseDto serveEquipmentEvents(IHTTPSession session) throws Exception {
+		// data expected as HTTP body
+		Map<String, String> bodyMap = new HashMap<String, String>();
+		session.parseBody(bodyMap);
+
+		return processEquipmentEvents(bodyMap.get("postData"));
+	}
+
+	// the body is either a JSON array of events or one JSON event per line
+	private EquipmentEventBatchResponseDto processEquipmentEvents(String body) throws Exception {
+		if (body == null || body.trim().length() == 0) {
+			throw new Exception("Invalid event data.");
+		}
+
+		List<EquipmentEventRequestDto> dtos = new ArrayList<>();
+		List<String> parseErrors = new ArrayList<>();
+
+		String trimmed = body.trim();
+
+		if (trimmed.startsWith("[")) {
+			parseEventArray(trimmed, dtos, parseErrors);
+		} else {
+			parseEventLines(trimmed, dtos, parseErrors);
+		}
+
+		// validate each event, then hand the valid ones to the listener as one batch
+		EquipmentEventResponseDto[] results = new EquipmentEventResponseDto[dtos.size()];
+		List<EquipmentEventRequestDto> validEvents = new ArrayList<>(dtos.size());
+		List<Integer> validIndexes = new ArrayList<>(dtos.size());
+
+		for (int i = 0; i < dtos.size(); i++) {
+			EquipmentEventRequestDto dto = dtos.get(i);
+			String errorText = parseErrors.get(i);
+
+			if (errorText == null) {
+				errorText = validateEvent(dto);
+			}
+
+			if (errorText != null) {
+				results[i] = new EquipmentEventResponseDto();
+				results[i].setErrorText(errorText);
+			} else {
+				validEvents.add(dto);
+				validIndexes.add(i);
+			}
 		}
 
 		if (logger.isInfoEnabled()) {
-			logger.info("Data change for source id: " + dto.getSourceId() + ", Value: " + dto.getValue()
-					+ ", Timestamp: " + dto.getTimestamp() + ", Reason: " + dto.getReason());
+			logger.info("Event batch of " + dtos.size() + " events, " + validEvents.size() + " valid");
 		}
 
-		// call listener on same thread
-		eventListener.onHttpEquipmentEvent(dto.getSourceId(), dto.getValue(), dto.getTimestamp(), dto.getReason());
+		if (!validEvents.isEmpty()) {
+			List<EquipmentEventResponseDto> responses = eventListener.onHttpEquipmentEvents(validEvents);
 
-		return responseDto;
+			for (int i = 0; i < validIndexes.size(); i++) {
+				results[validIndexes.get(i)] = responses.get(i);
+			}
+		}
+
+		EquipmentEventBatchResponseDto batchDto = new EquipmentEventBatchResponseDto();
+
+		for (EquipmentEventResponseDto result : results) {
+			batchDto.addResult(result);
+		}
+		return batchDto;
+	}
+
+	// parse the array one element at a time so that each error is reported for
+	// its event
+	private void parseEventArray(String json, List<EquipmentEventRequestDto> dtos, List<String> parseErrors)
+			throws Exception {
+		JsonParser parser = new JsonParser();
+
+		try (JsonReader reader = new JsonReader(new StringReader(json))) {
+			reader.beginArray();
+
+			while (reader.hasNext()) {
+				checkBatchSize(dtos.size());
+
+				JsonElement element = null;
+				try {
+					element = parser.parse(reader);
+				} catch (JsonParseException e) {
+					// the rest of the array cannot be located
+					addParsedEvent(null, "Invalid event data: " + e.getMessage(), dtos, parseErrors);
+					return;
+				}
+
+				parseEvent(element, dtos, parseErrors);
+			}
+		} catch (IOException | IllegalStateException e) {
+			throw new Exception("Invalid event data: " + e.getMessage());
+		}
+	}
+
+	private void parseEventLines(String lines, List<EquipmentEventRequestDto> dtos, List<String> parseErrors)
+			throws Exception {
+		JsonParser parser = new JsonParser();
+
+		try (BufferedReader reader = new BufferedReader(new StringReader(lines))) {
+			String line = null;
+
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().length() == 0) {
+					continue;
+				}
+
+				checkBatchSize(dtos.size());
+
+				try {
+					parseEvent(parser.parse(line), dtos, parseErrors);
+				} catch (JsonParseException e) {
+					addParsedEvent(null, "Invalid event data: " + e.getMessage(), dtos, parseErrors);
+				}
+			}
+		}
+	}
+
+	private void parseEvent(JsonElement element, List<EquipmentEventRequestDto> dtos, List<String> parseErrors) {
+		if (element == null || element.isJsonNull()) {
+			addParsedEvent(null, "Invalid event data.", dtos, parseErrors);
+			return;
+		}
+
+		try {
+			addParsedEvent(gson.fromJson(element, EquipmentEventRequestDto.class), null, dtos, parseErrors);
+		} catch (JsonParseException e) {
+			addParsedEvent(null, "Invalid event data: " + e.getMessage(), dtos, parseErrors);
+		}
+	}
+
+	private void addParsedEvent(EquipmentEventRequestDto dto, String errorText, List<EquipmentEventRequestDto> dtos,
+			List<String> parseErrors) {
+		dtos.add(dto);
+		parseErrors.add(errorText);
+	}
+
+	// reject the batch before parsing more events than are allowed
+	private void checkBatchSize(int parsed) throws Exception {
+		if (parsed >= MAX_BATCH_SIZE) {
+			throw new Exception("The batch exceeds the maximum size of " + MAX_BATCH_SIZE + " events.");
+		}
 	}
 
 	protected Map<String, String> getBodyParameters(IHTTPSession session) throws Exception {
@@ -235,52 +584,184 @@ public class OeeHttpServer extends NanoHTTPD {
 	private Response serveSourceIdRequest(IHTTPSession session) throws Exception {
 		Response response = null;
 		try {
-			Map<String, String> queryParameters = getQueryStringParameters(session);
+			String payload = buildSourceIdPayload(getQueryStringParameters(session));
 
-			String equipmentName = queryParameters.get(OeeHttpServer.EQUIP_ATTRIB);
-			if (equipmentName == null || equipmentName.length() == 0) {
-				throw new Exception("The name of the equipment must be specified.");
-			}
+			response = newFixedLengthResponse(Response.Status.OK, NanoHTTPD.MIME_PLAINTEXT, payload);
+		} catch (Exception e) {
+			logger.error("Source Id request failed.", e);
+			response = newFixedLengthResponse(Response.Status.BAD_REQUEST, NanoHTTPD.MIME_PLAINTEXT, e.getMessage());
+		}
+
+		return response;
+	}
+
+	private String buildSourceIdPayload(Map<String, String> queryParameters) throws Exception {
+		String equipmentName = queryParameters.get(OeeHttpServer.EQUIP_ATTRIB);
+		if (equipmentName == null || equipmentName.length() == 0) {
+			throw new Exception("The name of the equipment must be specified.");
+		}
+
+		String sourceType = queryParameters.get(OeeHttpServer.DS_TYPE_ATTRIB);
+		if (sourceType == null || sourceType.length() == 0) {
+			throw new Exception("The data source type must be specified.");
+		}
+
+		List<String> sourceIds = PersistenceService.instance().fetchResolverSourceIds(equipmentName,
+				DataSourceType.valueOf(sourceType));
+
+		return gson.toJson(new SourceIdResponseDto(sourceIds));
+	}
+
+	// the connection thread streams events until the client disconnects
+	private Response servePushRequest(IHTTPSession session) {
+		Set<String> equipment = parseEquipmentNames(getQueryStringParameters(session).get(EQUIP_ATTRIB));
+
+		EventStreamInputStream stream = new EventStreamInputStream();
+		pushBroker.subscribe(stream, equipment);
+
+		Response response = newChunkedResponse(Response.Status.OK, MIME_EVENT_STREAM, stream);
+		response.addHeader("Cache-Control", "no-cache");
+		return response;
+	}
+
+	// comma-separated names, null for all equipment
+	private Set<String> parseEquipmentNames(String names) {
+		if (names == null || names.trim().length() == 0) {
+			return null;
+		}
+
+		Set<String> equipment = new HashSet<>();
 
-			String sourceType = queryParameters.get(OeeHttpServer.DS_TYPE_ATTRIB);
-			if (sourceType == null || sourceType.length() == 0) {
-				throw new Exception("The data source type must be specified.");
+		for (String name : names.split(",")) {
+			if (name.trim().length() > 0) {
+				equipment.add(name.trim());
 			}
+		}
+		return equipment;
+	}
 
-			List<String> sourceIds = PersistenceService.instance().fetchResolverSourceIds(equipmentName,
-					DataSourceType.valueOf(sourceType));
+	/**
+	 * Push a resolved event to the clients of the push endpoint
+	 * 
+	 * @param message Resolved event message
+	 */
+	public void publishResolvedEvent(CollectorResolvedEventMessage message) {
+		if (!pushBroker.hasSubscribers()) {
+			return;
+		}
+		pushBroker.publish(message.getEquipmentName(), EventPushBroker.RESOLVED_EVENT, gson.toJson(message));
+	}
 
-			String payload = gson.toJson(new SourceIdResponseDto(sourceIds));
+	public boolean hasPushClients() {
+		return pushBroker.hasSubscribers();
+	}
+
+	private Response serveOeeRequest(IHTTPSession session) throws Exception {
+		Response response = null;
+		try {
+			String payload = buildOeePayload(getQueryStringParameters(session));
 
 			response = newFixedLengthResponse(Response.Status.OK, NanoHTTPD.MIME_PLAINTEXT, payload);
 		} catch (Exception e) {
-			logger.error("Source Id request failed.", e);
+			logger.error("OEE request failed.", e);
 			response = newFixedLengthResponse(Response.Status.BAD_REQUEST, NanoHTTPD.MIME_PLAINTEXT, e.getMessage());
 		}
 
 		return response;
 	}
 
-	private Response serveDataSourceRequest(IHTTPSession session) throws Exception {
-		Response response = null;
-		try {
-			Map<String, String> queryParameters = getQueryStringParameters(session);
+	private String buildOeePayload(Map<String, String> queryParameters) throws Exception {
+		String equipmentName = queryParameters.get(OeeHttpServer.EQUIP_ATTRIB);
+		if (equipmentName == null || equipmentName.length() == 0) {
+			throw new Exception("The name of the equipment must be specified.");
+		}
+
+		PlantEntity entity = PersistenceService.instance().fetchPlantEntityByName(equipmentName);
+		if (!(entity instanceof Equipment)) {
+			throw new Exception("Equipment " + equipmentName + " does not exist.");
+		}
+		Equipment equipment = (Equipment) entity;
+
+		// material, else the default for the equipment
+		Material material = null;
+		String materialName = queryParameters.get(OeeHttpServer.MATERIAL_ATTRIB);
+
+		if (materialName != null && materialName.length() > 0) {
+			material = PersistenceService.instance().fetchMaterialByName(materialName);
+
+			if (material == null) {
+				throw new Exception("Material " + materialName + " does not exist.");
+			}
+		} else {
+			EquipmentMaterial eqm = equipment.getDefaultEquipmentMaterial();
 
-			String sourceType = queryParameters.get(OeeHttpServer.DS_TYPE_ATTRIB);
-			if (sourceType == null || sourceType.length() == 0) {
-				throw new Exception("The data source type must be specified.");
+			if (eqm == null) {
+				throw new Exception("The material must be specified for equipment " + equipmentName);
 			}
+			material = eqm.getMaterial();
+		}
+
+		// time period, rounded down to the cache bucket
+		String toValue = queryParameters.get(OeeHttpServer.TO_ATTRIB);
+		OffsetDateTime to = toValue != null && toValue.length() > 0
+				? DomainUtils.offsetDateTimeFromString(toValue, DomainUtils.OFFSET_DATE_TIME_8601)
+				: OffsetDateTime.now();
+
+		String fromValue = queryParameters.get(OeeHttpServer.FROM_ATTRIB);
+		OffsetDateTime from = fromValue != null && fromValue.length() > 0
+				? DomainUtils.offsetDateTimeFromString(fromValue, DomainUtils.OFFSET_DATE_TIME_8601)
+				: to.minus(DEFAULT_OEE_PERIOD);
 
-			List<CollectorDataSource> dataSources = PersistenceService.instance()
-					.fetchDataSources(DataSourceType.valueOf(sourceType));
+		OffsetDateTime bucketFrom = oeeCache.toBucket(from);
+		OffsetDateTime bucketTo = oeeCache.toBucket(to);
 
-			List<DataSourceDto> dataSourceDtos = new ArrayList<>();
-			for (CollectorDataSource dataSource : dataSources) {
-				DataSourceDto dataSourceDto = new DataSourceDto(dataSource);
-				dataSourceDtos.add(dataSourceDto);
+		if (!bucketFrom.isBefore(bucketTo)) {
+			throw new Exception("The starting time " + from + " must be before the ending time " + to);
+		}
+
+		Material oeeMaterial = material;
+
+		return oeeCache.getResult(equipment.getName(), material.getName(), bucketFrom, bucketTo,
+				() -> calculateOee(equipment, oeeMaterial, bucketFrom, bucketTo));
+	}
+
+	private String calculateOee(Equipment equipment, Material material, OffsetDateTime from, OffsetDateTime to)
+			throws Exception {
+		EquipmentLoss equipmentLoss = new EquipmentLoss(equipment);
+		equipmentLoss.setMaterial(material);
+
+		EquipmentLossManager.calculateEquipmentLoss(equipmentLoss, from, to);
+
+		OeeResponseDto dto = new OeeResponseDto(equipment.getName(), material.getName(),
+				DomainUtils.offsetDateTimeToString(from, DomainUtils.OFFSET_DATE_TIME_8601),
+				DomainUtils.offsetDateTimeToString(to, DomainUtils.OFFSET_DATE_TIME_8601));
+
+		dto.setOee(equipmentLoss.calculateOeePercentage());
+		dto.setAvailability(equipmentLoss.calculateAvailabilityPercentage());
+		dto.setPerformance(equipmentLoss.calculatePerformancePercentage());
+		dto.setQuality(equipmentLoss.calculateQualityPercentage());
+		dto.setLosses(equipmentLoss.getLossItems(Unit.MINUTE));
+
+		for (TimeLoss loss : TimeLoss.values()) {
+			if (!loss.isLoss()) {
+				continue;
 			}
 
-			String payload = gson.toJson(new DataSourceResponseDto(dataSourceDtos));
+			List<ParetoItem> items = EquipmentLossManager.getParetoData(equipmentLoss, loss);
+
+			if (!items.isEmpty()) {
+				// largest loss first
+				Collections.sort(items, Collections.reverseOrder());
+				dto.getPareto().put(loss.name(), items);
+			}
+		}
+		return gson.toJson(dto);
+	}
+
+	private Response serveDataSourceRequest(IHTTPSession session) throws Exception {
+		Response response = null;
+		try {
+			String payload = buildDataSourcePayload(getQueryStringParameters(session));
 
 			response = newFixedLengthResponse(Response.Status.OK, NanoHTTPD.MIME_PLAINTEXT, payload);
 		} catch (Exception e) {
@@ -291,7 +772,25 @@ public class OeeHttpServer extends NanoHTTPD {
 		return response;
 	}
 
-	private Response serveMaterialRequest() throws Exception {
+	private String buildDataSourcePayload(Map<String, String> queryParameters) throws Exception {
+		String sourceType = queryParameters.get(OeeHttpServer.DS_TYPE_ATTRIB);
+		if (sourceType == null || sourceType.length() == 0) {
+			throw new Exception("The data source type must be specified.");
+		}
+
+		List<CollectorDataSource> dataSources = PersistenceService.instance()
+				.fetchDataSources(DataSourceType.valueOf(sourceType));
+
+		List<DataSourceDto> dataSourceDtos = new ArrayList<>();
+		for (CollectorDataSource dataSource : dataSources) {
+			DataSourceDto dataSourceDto = new DataSourceDto(dataSource);
+			dataSourceDtos.add(dataSourceDto);
+		}
+
+		return gson.toJson(new DataSourceResponseDto(dataSourceDtos));
+	}
+
+	private String buildMaterialPayload() throws Exception {
 		List<MaterialDto> materialDtos = new ArrayList<>();
 
 		List<Material> allMaterial = PersistenceService.instance().fetchAllMaterials();
@@ -307,10 +806,10 @@ public class OeeHttpServer extends NanoHTTPD {
 			logger.info(payload);
 		}
 
-		return newFixedLengthResponse(Response.Status.OK, NanoHTTPD.MIME_PLAINTEXT, payload);
+		return payload;
 	}
 
-	private Response serveReasonRequest() throws Exception {
+	private String buildReasonPayload() throws Exception {
 		Map<String, ReasonDto> reasonMap = new HashMap<>();
 
 		List<ReasonDto> topDtos = new ArrayList<>();
@@ -355,10 +854,67 @@ public class OeeHttpServer extends NanoHTTPD {
 			logger.info(payload);
 		}
 
-		return newFixedLengthResponse(Response.Status.OK, NanoHTTPD.MIME_PLAINTEXT, payload);
+		return payload;
+	}
+
+	// serve a cached payload, or 304 if the client already has it
+	private Response serveCachedRequest(IHTTPSession session, String endpoint, PayloadCache.PayloadBuilder builder)
+			throws Exception {
+		PayloadCache.CachedPayload payload = payloadCache.getPayload(endpoint, builder);
+		Map<String, String> headers = session.getHeaders();
+
+		Response response = null;
+
+		if (payload.matches(headers.get("if-none-match"))) {
+			response = newFixedLengthResponse(Response.Status.NOT_MODIFIED, NanoHTTPD.MIME_PLAINTEXT, "");
+		} else {
+			boolean gzip = PayloadCache.CachedPayload.acceptsGzip(headers.get("accept-encoding"));
+			byte[] content = gzip ? payload.getGzipped() : payload.getContent();
+
+			response = newFixedLengthResponse(Response.Status.OK, NanoHTTPD.MIME_PLAINTEXT,
+					new ByteArrayInputStream(content), content.length);
+
+			if (gzip) {
+				response.addHeader("Content-Encoding", "gzip");
+			}
+		}
+		response.addHeader("ETag", payload.getETag());
+		response.addHeader("Cache-Control", "no-cache");
+		response.addHeader("Vary", "Accept-Encoding");
+
+		return response;
 	}
 
-	private Response servePlantEntityRequest() throws Exception {
+	private NioHttpServer.Response serveCachedRequest(NioHttpServer.Request request, String endpoint,
+			PayloadCache.PayloadBuilder builder) throws Exception {
+		PayloadCache.CachedPayload payload = payloadCache.getPayload(endpoint, builder);
+		Map<String, String> headers = request.getHeaders();
+
+		NioHttpServer.Response response = null;
+
+		if (payload.matches(headers.get("if-none-match"))) {
+			response = new NioHttpServer.Response(NioHttpServer.NOT_MODIFIED, MIME_PLAINTEXT, new byte[0]);
+		} else if (PayloadCache.CachedPayload.acceptsGzip(headers.get("accept-encoding"))) {
+			response = new NioHttpServer.Response(NioHttpServer.OK, MIME_PLAINTEXT, payload.getGzipped());
+			response.addHeader("Content-Encoding", "gzip");
+		} else {
+			response = new NioHttpServer.Response(NioHttpServer.OK, MIME_PLAINTEXT, payload.getContent());
+		}
+		response.addHeader("ETag", payload.getETag());
+		response.addHeader("Cache-Control", "no-cache");
+		response.addHeader("Vary", "Accept-Encoding");
+
+		return response;
+	}
+
+	// cached payloads are already compressed and events must not be buffered
+	@Override
+	protected boolean useGzipWhenAccepted(Response response) {
+		return response.getHeader("content-encoding") == null && !MIME_EVENT_STREAM.equals(response.getMimeType())
+				&& super.useGzipWhenAccepted(response);
+	}
+
+	private String buildPlantEntityPayload() throws Exception {
 		Map<String, PlantEntityDto> entityMap = new HashMap<>();
 
 		List<PlantEntityDto> topDtos = new ArrayList<>();
@@ -398,7 +954,7 @@ public class OeeHttpServer extends NanoHTTPD {
 			logger.info(payload);
 		}
 
-		return newFixedLengthResponse(Response.Status.OK, NanoHTTPD.MIME_PLAINTEXT, payload);
+		return payload;
 	}
 
 	public HttpEventListener getDataChangeListener() {
@@ -419,7 +975,7 @@ public class OeeHttpServer extends NanoHTTPD {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(getHost(), getListeningPort());
+		return Objects.hash(getHost(), getPort());
 	}
 
 	@Override
@@ -430,7 +986,11 @@ public class OeeHttpServer extends NanoHTTPD {
 		}
 		OeeHttpServer otherServer = (OeeHttpServer) other;
 
-		return getHost().equals(otherServer.getHost()) && getListeningPort() == otherServer.getListeningPort();
+		return getHost().equals(otherServer.getHost()) && getPort() == otherServer.getPort();
+	}
+
+	private int getPort() {
+		return nonBlocking ? port : getListeningPort();
 	}
 
 	private String getHost() {
@@ -449,6 +1009,6 @@ public class OeeHttpServer extends NanoHTTPD {
 	@Override
 	public String toString() {
 
-		return "Host: " + getHost() + ":" + getListeningPort();
+		return "Host: " + getHost() + ":" + getPort();
 	}
 }
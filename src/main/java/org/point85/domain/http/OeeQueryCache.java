@@ -0,0 +1,146 @@
+package org.point85.domain.http;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.point85.domain.collector.OeeEvent;
+import org.point85.domain.persistence.PersistenceListener;
+import org.point85.domain.plant.EquipmentMaterial;
+import org.point85.domain.plant.KeyedObject;
+import org.point85.domain.plant.Material;
+import org.point85.domain.plant.PlantEntity;
+import org.point85.domain.plant.Reason;
+import org.point85.domain.schedule.WorkSchedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Least recently used cache of OEE query results. The time range of a query
+ * is rounded down to a bucket so that repeated "up to now" queries share an
+ * entry. The entries for equipment are evicted when one of its events is
+ * saved, and all entries are evicted when the equipment, materials, reasons or
+ * work schedules change.
+ *
+ */
+class OeeQueryCache implements PersistenceListener {
+	// logger
+	private static final Logger logger = LoggerFactory.getLogger(OeeQueryCache.class);
+
+	// system property for the time bucket in seconds, 0 disables caching
+	static final String BUCKET_PROPERTY = "http_oee_bucket_sec";
+
+	static final int DEFAULT_BUCKET_SEC = 60;
+
+	// maximum number of cached results
+	private static final int MAX_ENTRIES = 1000;
+
+	// results by equipment|material|from|to
+	private final Map<String, String> results = new LinkedHashMap<String, String>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	// incremented on each eviction so that a result computed concurrently is not
+	// cached
+	private long generation = 0;
+
+	private final long bucketSeconds;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	OeeQueryCache() {
+		bucketSeconds = Integer.getInteger(BUCKET_PROPERTY, DEFAULT_BUCKET_SEC);
+	}
+
+	// round down to the start of the bucket
+	OffsetDateTime toBucket(OffsetDateTime dateTime) {
+		if (bucketSeconds <= 0) {
+			return dateTime;
+		}
+		long seconds = Math.floorDiv(dateTime.toEpochSecond(), bucketSeconds) * bucketSeconds;
+		return OffsetDateTime.ofInstant(Instant.ofEpochSecond(seconds), dateTime.getOffset());
+	}
+
+	String getResult(String equipment, String material, OffsetDateTime from, OffsetDateTime to,
+			ResultBuilder builder) throws Exception {
+		String key = equipment + '|' + material + '|' + from.toEpochSecond() + '|' + to.toEpochSecond();
+		long buildGeneration;
+
+		synchronized (this) {
+			String result = results.get(key);
+
+			if (result != null) {
+				hits++;
+				return result;
+			}
+			misses++;
+			buildGeneration = generation;
+		}
+
+		String result = builder.build();
+
+		synchronized (this) {
+			if (bucketSeconds > 0 && generation == buildGeneration) {
+				results.put(key, result);
+			}
+
+			if (logger.isInfoEnabled()) {
+				logger.info("Calculated OEE for " + key + ", hits: " + hits + ", misses: " + misses);
+			}
+		}
+		return result;
+	}
+
+	synchronized void evict(String equipment) {
+		generation++;
+
+		String prefix = equipment + '|';
+		Iterator<String> iter = results.keySet().iterator();
+
+		while (iter.hasNext()) {
+			if (iter.next().startsWith(prefix)) {
+				iter.remove();
+			}
+		}
+	}
+
+	synchronized void clear() {
+		generation++;
+		results.clear();
+	}
+
+	synchronized long getHits() {
+		return hits;
+	}
+
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	@Override
+	public void onPersistenceChange(KeyedObject keyed) {
+		if (keyed instanceof OeeEvent) {
+			OeeEvent event = (OeeEvent) keyed;
+
+			if (event.getEquipment() != null) {
+				evict(event.getEquipment().getName());
+			}
+		} else if (keyed instanceof PlantEntity || keyed instanceof EquipmentMaterial || keyed instanceof Material
+				|| keyed instanceof Reason || keyed instanceof WorkSchedule) {
+			// inputs to the calculation have changed
+			clear();
+		}
+	}
+
+	interface ResultBuilder {
+		String build() throws Exception;
+	}
+}
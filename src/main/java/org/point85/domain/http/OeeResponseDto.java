@@ -0,0 +1,102 @@
+package org.point85.domain.http;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.point85.domain.oee.ParetoItem;
+
+/**
+ * Data Transfer Object (DTO) for the OEE of equipment producing a material
+ * over a time period. Losses are in minutes, Pareto durations in seconds.
+ *
+ */
+public class OeeResponseDto {
+	private String equipment;
+	private String material;
+	private String from;
+	private String to;
+
+	private float oee;
+	private float availability;
+	private float performance;
+	private float quality;
+
+	// loss by category
+	private List<ParetoItem> losses = new ArrayList<>();
+
+	// loss by reason for each loss category
+	private Map<String, List<ParetoItem>> pareto = new HashMap<>();
+
+	public OeeResponseDto(String equipment, String material, String from, String to) {
+		this.equipment = equipment;
+		this.material = material;
+		this.from = from;
+		this.to = to;
+	}
+
+	public String getEquipment() {
+		return equipment;
+	}
+
+	public String getMaterial() {
+		return material;
+	}
+
+	public String getFrom() {
+		return from;
+	}
+
+	public String getTo() {
+		return to;
+	}
+
+	public float getOee() {
+		return oee;
+	}
+
+	public void setOee(float oee) {
+		this.oee = oee;
+	}
+
+	public float getAvailability() {
+		return availability;
+	}
+
+	public void setAvailability(float availability) {
+		this.availability = availability;
+	}
+
+	public float getPerformance() {
+		return performance;
+	}
+
+	public void setPerformance(float performance) {
+		this.performance = performance;
+	}
+
+	public float getQuality() {
+		return quality;
+	}
+
+	public void setQuality(float quality) {
+		this.quality = quality;
+	}
+
+	public List<ParetoItem> getLosses() {
+		return losses;
+	}
+
+	public void setLosses(List<ParetoItem> losses) {
+		this.losses = losses;
+	}
+
+	public Map<String, List<ParetoItem>> getPareto() {
+		return pareto;
+	}
+
+	public void setPareto(Map<String, List<ParetoItem>> pareto) {
+		this.pareto = pareto;
+	}
+}
@@ -0,0 +1,176 @@
+package org.point85.domain.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.point85.domain.persistence.PersistenceListener;
+import org.point85.domain.plant.KeyedObject;
+import org.point85.domain.plant.Material;
+import org.point85.domain.plant.PlantEntity;
+import org.point85.domain.plant.Reason;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the serialized reference data payloads served by the HTTP server.
+ * A payload is rebuilt after its entities are saved or deleted through the
+ * PersistenceService, or when it has expired. The expiry picks up changes made
+ * by other processes.
+ *
+ */
+class PayloadCache implements PersistenceListener {
+	// logger
+	private static final Logger logger = LoggerFactory.getLogger(PayloadCache.class);
+
+	// system property for the payload time to live in seconds, 0 disables caching
+	static final String TTL_PROPERTY = "http_cache_ttl_sec";
+
+	static final int DEFAULT_TTL_SEC = 300;
+
+	// payloads by endpoint
+	private final Map<String, CachedPayload> payloads = new ConcurrentHashMap<>();
+
+	// incremented on each invalidation so that a payload built concurrently is
+	// not cached
+	private final AtomicLong generation = new AtomicLong();
+
+	private final long ttlMillis;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	PayloadCache() {
+		ttlMillis = Integer.getInteger(TTL_PROPERTY, DEFAULT_TTL_SEC) * 1000L;
+	}
+
+	CachedPayload getPayload(String endpoint, PayloadBuilder builder) throws Exception {
+		CachedPayload payload = payloads.get(endpoint);
+
+		if (payload != null && !payload.isExpired(ttlMillis)) {
+			hits.incrementAndGet();
+			return payload;
+		}
+
+		misses.incrementAndGet();
+
+		long buildGeneration = generation.get();
+		payload = new CachedPayload(builder.build());
+
+		if (ttlMillis > 0 && generation.get() == buildGeneration) {
+			payloads.put(endpoint, payload);
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Built payload for " + endpoint + ", ETag " + payload.getETag() + ", hits: " + hits.get()
+					+ ", misses: " + misses.get());
+		}
+		return payload;
+	}
+
+	void invalidate(String endpoint) {
+		generation.incrementAndGet();
+		payloads.remove(endpoint);
+	}
+
+	void clear() {
+		generation.incrementAndGet();
+		payloads.clear();
+	}
+
+	long getHits() {
+		return hits.get();
+	}
+
+	long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public void onPersistenceChange(KeyedObject keyed) {
+		if (keyed instanceof PlantEntity) {
+			invalidate(OeeHttpServer.ENTITY_EP);
+		} else if (keyed instanceof Reason) {
+			invalidate(OeeHttpServer.REASON_EP);
+		} else if (keyed instanceof Material) {
+			invalidate(OeeHttpServer.MATERIAL_EP);
+		}
+	}
+
+	interface PayloadBuilder {
+		String build() throws Exception;
+	}
+
+	static class CachedPayload {
+		private final byte[] content;
+		private final String eTag;
+		private final long createdMillis;
+
+		// compressed on first request
+		private volatile byte[] gzipped;
+
+		CachedPayload(String json) throws Exception {
+			content = json.getBytes(StandardCharsets.UTF_8);
+			createdMillis = System.currentTimeMillis();
+
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			StringBuilder sb = new StringBuilder("\"");
+			for (byte b : digest.digest(content)) {
+				sb.append(String.format("%02x", b));
+			}
+			eTag = sb.append('"').toString();
+		}
+
+		byte[] getContent() {
+			return content;
+		}
+
+		byte[] getGzipped() throws Exception {
+			if (gzipped == null) {
+				ByteArrayOutputStream bos = new ByteArrayOutputStream(content.length / 4 + 64);
+
+				try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+					gzip.write(content);
+				}
+				gzipped = bos.toByteArray();
+			}
+			return gzipped;
+		}
+
+		String getETag() {
+			return eTag;
+		}
+
+		boolean isExpired(long ttlMillis) {
+			return System.currentTimeMillis() - createdMillis >= ttlMillis;
+		}
+
+		// check an If-None-Match header value
+		boolean matches(String ifNoneMatch) {
+			if (ifNoneMatch == null) {
+				return false;
+			}
+
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+
+				if (tag.startsWith("W/")) {
+					tag = tag.substring(2);
+				}
+
+				if (tag.equals("*") || tag.equals(eTag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		static boolean acceptsGzip(String acceptEncoding) {
+			return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -13,7 +14,9 @@ import org.point85.domain.plant.Equipment;
 import org.point85.domain.plant.EquipmentMaterial;
 import org.point85.domain.plant.Material;
 import org.point85.domain.plant.Reason;
+import org.point85.domain.uom.MeasurementSystem;
 import org.point85.domain.uom.Quantity;
+import org.point85.domain.uom.QuantityAccumulator;
 import org.point85.domain.uom.Unit;
 import org.point85.domain.uom.UnitOfMeasure;
 
@@ -36,14 +39,20 @@ public class EquipmentLoss {
 	// map of reasons
 	private final Map<TimeLoss, Map<Reason, Duration>> reasonMap = new HashMap<>();
 
-	// quantities produced
-	private Quantity goodQuantity;
-	private Quantity startupQuantity;
-	private Quantity rejectQuantity;
+	// quantities produced, summed in the unit of measure of the first one
+	private QuantityAccumulator goodAccumulator;
+	private QuantityAccumulator startupAccumulator;
+	private QuantityAccumulator rejectAccumulator;
 
 	// equipment design speed
 	private Quantity designSpeed;
 
+	// design speed quotient unit of measure by produced unit of measure
+	private final Map<UnitOfMeasure, UnitOfMeasure> lostTimeUOMs = new IdentityHashMap<>();
+
+	// converter of lost time to seconds
+	private QuantityAccumulator lostTimeConverter;
+
 	// history
 	private List<OeeEvent> eventRecords = new ArrayList<>();
 
@@ -87,11 +96,11 @@ public class EquipmentLoss {
 		startDateTime = null;
 		endDateTime = null;
 
-		goodQuantity = null;
-		startupQuantity = null;
-		rejectQuantity = null;
+		goodAccumulator = null;
+		startupAccumulator = null;
+		rejectAccumulator = null;
 
-		designSpeed = null;
+		setDesignSpeed(null);
 	}
 
 	public List<ParetoItem> getLossItems(Unit timeUnit) throws Exception {
@@ -212,6 +221,8 @@ public class EquipmentLoss {
 	}
 
 	public float calculateHighLevelOeePercentage() throws Exception {
+		Quantity goodQuantity = getGoodQuantity();
+
 		if (getAvailableTime() == null || goodQuantity == null) {
 			throw new Exception("No available time has been recorded.");
 		}
@@ -271,13 +282,13 @@ public class EquipmentLoss {
 	}
 
 	public void calculateReducedSpeedLoss() throws Exception {
-		Duration goodDur = convertToLostTime(goodQuantity);
+		Duration goodDur = convertToLostTime(goodAccumulator);
 		setLoss(TimeLoss.NO_LOSS, goodDur);
 
-		Duration rejectDur = convertToLostTime(rejectQuantity);
+		Duration rejectDur = convertToLostTime(rejectAccumulator);
 		setLoss(TimeLoss.REJECT_REWORK, rejectDur);
 
-		Duration startupDur = convertToLostTime(startupQuantity);
+		Duration startupDur = convertToLostTime(startupAccumulator);
 		setLoss(TimeLoss.STARTUP_YIELD, startupDur);
 
 		Duration npt = getNetProductionTime();
@@ -294,21 +305,21 @@ public class EquipmentLoss {
 	}
 
 	public Quantity getTotalQuantity(UnitOfMeasure uom) throws Exception {
-		Quantity total = new Quantity(0.0d, uom);
+		QuantityAccumulator total = new QuantityAccumulator(uom);
 
-		if (goodQuantity != null) {
-			total = total.add(goodQuantity);
+		if (goodAccumulator != null) {
+			total.add(goodAccumulator.getAmount(), goodAccumulator.getUOM());
 		}
 
-		if (rejectQuantity != null) {
-			total = total.add(rejectQuantity.convert(uom));
+		if (rejectAccumulator != null) {
+			total.add(rejectAccumulator.getAmount(), rejectAccumulator.getUOM());
 		}
 
-		if (startupQuantity != null) {
-			total = total.add(startupQuantity.convert(uom));
+		if (startupAccumulator != null) {
+			total.add(startupAccumulator.getAmount(), startupAccumulator.getUOM());
 		}
 
-		return total;
+		return total.toQuantity();
 	}
 
 	public Quantity calculateActualSpeed(Quantity designSpeed) throws Exception {
@@ -349,22 +360,22 @@ public class EquipmentLoss {
 
 		// quantities
 		sb.append("\nGood: ");
-		if (goodQuantity != null) {
-			sb.append(goodQuantity.getAmount()).append(' ').append(goodQuantity.getUOM().getSymbol());
+		if (goodAccumulator != null) {
+			sb.append(goodAccumulator.getAmount()).append(' ').append(goodAccumulator.getUOM().getSymbol());
 		} else {
 			sb.append('0');
 		}
 
 		sb.append("\nReject: ");
-		if (rejectQuantity != null) {
-			sb.append(rejectQuantity.getAmount()).append(' ').append(rejectQuantity.getUOM().getSymbol());
+		if (rejectAccumulator != null) {
+			sb.append(rejectAccumulator.getAmount()).append(' ').append(rejectAccumulator.getUOM().getSymbol());
 		} else {
 			sb.append('0');
 		}
 
 		sb.append("\nStartup: ");
-		if (startupQuantity != null) {
-			sb.append(startupQuantity.getAmount()).append(' ').append(startupQuantity.getUOM().getSymbol());
+		if (startupAccumulator != null) {
+			sb.append(startupAccumulator.getAmount()).append(' ').append(startupAccumulator.getUOM().getSymbol());
 		} else {
 			sb.append('0');
 		}
@@ -394,13 +405,38 @@ public class EquipmentLoss {
 		if (quantity == null) {
 			return Duration.ZERO;
 		}
+		return convertToLostTime(quantity.getAmount(), quantity.getUOM());
+	}
+
+	private Duration convertToLostTime(QuantityAccumulator accumulator) throws Exception {
+		if (accumulator == null) {
+			return Duration.ZERO;
+		}
+		return convertToLostTime(accumulator.getAmount(), accumulator.getUOM());
+	}
 
+	Duration convertToLostTime(double amount, UnitOfMeasure uom) throws Exception {
 		Quantity irr = getDesignSpeedQuantity();
 
-		Quantity timeQty = quantity.divide(irr).convert(Unit.SECOND);
-		long seconds = Double.valueOf(timeQty.getAmount()).longValue();
+		if (irr.getAmount() == 0.0d) {
+			throw new Exception("The design speed for equipment " + equipment.getName() + " cannot be zero.");
+		}
+
+		// the quotient unit of measure is resolved once per produced unit
+		UnitOfMeasure timeUOM = lostTimeUOMs.get(uom);
+
+		if (timeUOM == null) {
+			timeUOM = uom.divide(irr.getUOM());
+			lostTimeUOMs.put(uom, timeUOM);
+		}
+
+		if (lostTimeConverter == null) {
+			lostTimeConverter = new QuantityAccumulator(MeasurementSystem.instance().getUOM(Unit.SECOND));
+		}
+
+		double seconds = lostTimeConverter.convert(amount / irr.getAmount(), timeUOM);
 
-		return Duration.ofSeconds(seconds);
+		return Duration.ofSeconds(Double.valueOf(seconds).longValue());
 	}
 
 	public Quantity getDesignSpeedQuantity() {
@@ -409,69 +445,70 @@ public class EquipmentLoss {
 
 	public void setDesignSpeed(Quantity designSpeedQuantity) {
 		this.designSpeed = designSpeedQuantity;
+		lostTimeUOMs.clear();
 	}
 
 	public Quantity getGoodQuantity() {
-		return goodQuantity;
+		return goodAccumulator != null ? goodAccumulator.toQuantity() : null;
 	}
 
 	public void setGoodQuantity(Quantity goodQuantity) {
-		this.goodQuantity = goodQuantity;
+		// later increments are converted to this quantity's unit of measure
+		goodAccumulator = goodQuantity != null ? new QuantityAccumulator(goodQuantity) : null;
 	}
 
 	public Quantity getStartupQuantity() {
-		return startupQuantity;
+		return startupAccumulator != null ? startupAccumulator.toQuantity() : null;
 	}
 
 	public void setStartupQuantity(Quantity startupQuantity) {
-		this.startupQuantity = startupQuantity;
+		// later increments are converted to this quantity's unit of measure
+		startupAccumulator = startupQuantity != null ? new QuantityAccumulator(startupQuantity) : null;
 	}
 
 	public Quantity getRejectQuantity() {
-		return rejectQuantity;
+		return rejectAccumulator != null ? rejectAccumulator.toQuantity() : null;
 	}
 
 	public void setRejectQuantity(Quantity rejectQuantity) {
-		this.rejectQuantity = rejectQuantity;
+		// later increments are converted to this quantity's unit of measure
+		rejectAccumulator = rejectQuantity != null ? new QuantityAccumulator(rejectQuantity) : null;
 	}
 
 	public Quantity incrementGoodQuantity(Quantity quantity) throws Exception {
-		Quantity total = goodQuantity;
+		incrementGoodQuantity(quantity.getAmount(), quantity.getUOM());
+		return getGoodQuantity();
+	}
 
-		if (total != null) {
-			total = total.add(quantity);
-		} else {
-			total = quantity;
+	public void incrementGoodQuantity(double amount, UnitOfMeasure uom) throws Exception {
+		if (goodAccumulator == null) {
+			goodAccumulator = new QuantityAccumulator(uom);
 		}
-		setGoodQuantity(total);
-
-		return total;
+		goodAccumulator.add(amount, uom);
 	}
 
 	public Quantity incrementStartupQuantity(Quantity quantity) throws Exception {
-		Quantity total = startupQuantity;
+		incrementStartupQuantity(quantity.getAmount(), quantity.getUOM());
+		return getStartupQuantity();
+	}
 
-		if (total != null) {
-			total = total.add(quantity);
-		} else {
-			total = quantity;
+	public void incrementStartupQuantity(double amount, UnitOfMeasure uom) throws Exception {
+		if (startupAccumulator == null) {
+			startupAccumulator = new QuantityAccumulator(uom);
 		}
-		setStartupQuantity(total);
-
-		return total;
+		startupAccumulator.add(amount, uom);
 	}
 
 	public Quantity incrementRejectQuantity(Quantity quantity) throws Exception {
-		Quantity total = rejectQuantity;
+		incrementRejectQuantity(quantity.getAmount(), quantity.getUOM());
+		return getRejectQuantity();
+	}
 
-		if (total != null) {
-			total = total.add(quantity);
-		} else {
-			total = quantity;
+	public void incrementRejectQuantity(double amount, UnitOfMeasure uom) throws Exception {
+		if (rejectAccumulator == null) {
+			rejectAccumulator = new QuantityAccumulator(uom);
 		}
-		setRejectQuantity(total);
-
-		return total;
+		rejectAccumulator.add(amount, uom);
 	}
 
 	public Equipment getEquipment() {
@@ -15,6 +15,7 @@ import org.point85.domain.plant.Material;
 import org.point85.domain.plant.Reason;
 import org.point85.domain.schedule.WorkSchedule;
 import org.point85.domain.uom.Quantity;
+import org.point85.domain.uom.UnitOfMeasure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,33 +52,35 @@ public final class EquipmentLossManager {
 			checkTimePeriod(record, equipmentLoss, from, to);
 
 			Quantity quantity = record.getQuantity();
+			double amount = quantity.getAmount();
+			UnitOfMeasure uom = quantity.getUOM();
 
-			if (quantity.getUOM() == null) {
-				throw new Exception("Production of " + quantity.getAmount() + " for source " + record.getSourceId()
+			if (uom == null) {
+				throw new Exception("Production of " + amount + " for source " + record.getSourceId()
 						+ " at time " + record.getOffsetStartTime() + " does not have a unit of measure.");
 			}
 			Duration lostTime = null;
 
 			switch (record.getEventType()) {
 			case PROD_GOOD: {
-				equipmentLoss.incrementGoodQuantity(quantity);
+				equipmentLoss.incrementGoodQuantity(amount, uom);
 				break;
 			}
 
 			case PROD_REJECT: {
-				equipmentLoss.incrementRejectQuantity(quantity);
+				equipmentLoss.incrementRejectQuantity(amount, uom);
 
 				// convert to a time loss
-				lostTime = equipmentLoss.convertToLostTime(quantity);
+				lostTime = equipmentLoss.convertToLostTime(amount, uom);
 				record.setLostTime(lostTime);
 				break;
 			}
 
 			case PROD_STARTUP: {
-				equipmentLoss.incrementStartupQuantity(quantity);
+				equipmentLoss.incrementStartupQuantity(amount, uom);
 
 				// convert to a time loss
-				lostTime = equipmentLoss.convertToLostTime(quantity);
+				lostTime = equipmentLoss.convertToLostTime(amount, uom);
 				record.setLostTime(lostTime);
 				break;
 			}
@@ -0,0 +1,908 @@
+package org.point85.domain.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+
+import org.point85.domain.collector.OeeEvent;
+import org.point85.domain.plant.Equipment;
+import org.point85.domain.plant.KeyedObject;
+import org.point85.domain.plant.Material;
+import org.point85.domain.plant.Reason;
+import org.point85.domain.schedule.Shift;
+import org.point85.domain.schedule.Team;
+import org.point85.domain.script.OeeEventType;
+import org.point85.domain.uom.UnitOfMeasure;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local {@link EventStore} for single line deployments. Events are appended to
+ * one file per column in a directory for each month of event start time. Range
+ * queries read only the equipment, type and time columns through read-only
+ * memory mappings and then build the matching events, finding their reasons,
+ * materials and other reference entities in the database. <br>
+ * An update to a saved event appends a new version of the row that supersedes
+ * the earlier one. A purge rewrites the affected months without the purged
+ * and superseded rows.
+ *
+ */
+public class ColumnarEventStore implements EventStore {
+	// logger
+	private static final Logger logger = LoggerFactory.getLogger(ColumnarEventStore.class);
+
+	// system property for the store directory, events are saved in the database if
+	// not set
+	public static final String DIRECTORY_PROPERTY = "event_store_dir";
+
+	// file format of the type column, independent of the enum order
+	private static final OeeEventType[] TYPES = { OeeEventType.AVAILABILITY, OeeEventType.PROD_GOOD,
+			OeeEventType.PROD_REJECT, OeeEventType.PROD_STARTUP, OeeEventType.MATL_CHANGE, OeeEventType.JOB_CHANGE,
+			OeeEventType.CUSTOM };
+
+	// null values
+	private static final long NULL_LONG = Long.MIN_VALUE;
+	private static final long NULL_KEY = -1L;
+
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	private static final String TEXT_FILE = "text.dat";
+	private static final String COMPACT_SUFFIX = ".compact";
+
+	// fixed width columns
+	private enum Column {
+		KEY(8), TYPE(1), EQUIPMENT(8), START(8), START_OFFSET(4), END(8), END_OFFSET(4), DURATION(8), AMOUNT(8),
+		REASON(8), MATERIAL(8), UOM(8), SHIFT(8), TEAM(8), TEXT(8);
+
+		private final int width;
+
+		Column(int width) {
+			this.width = width;
+		}
+
+		String getFileName() {
+			return name().toLowerCase() + ".col";
+		}
+	}
+
+	private final Path directory;
+
+	// partitions by month of local start time
+	private final TreeMap<YearMonth, Partition> partitions = new TreeMap<>();
+
+	// most recent row by equipment key and event type
+	private final Map<Long, Map<OeeEventType, RowRef>> lastRows = new HashMap<>();
+
+	private long nextKey = 1;
+
+	public ColumnarEventStore(Path directory) throws Exception {
+		this.directory = directory;
+		Files.createDirectories(directory);
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+			for (Path dir : stream) {
+				String name = dir.getFileName().toString();
+
+				if (name.endsWith(COMPACT_SUFFIX)) {
+					// interrupted purge
+					deleteDirectory(dir);
+					continue;
+				}
+
+				try {
+					YearMonth month = YearMonth.parse(name);
+					partitions.put(month, new Partition(month, dir));
+				} catch (DateTimeParseException e) {
+					logger.warn("Ignoring directory " + dir + " in the event store.");
+				}
+			}
+		}
+
+		buildIndex();
+
+		if (logger.isInfoEnabled()) {
+			logger.info("Opened event store " + directory + " with " + partitions.size() + " partition(s)");
+		}
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	// find the last row of each equipment and type, and the next key
+	private void buildIndex() {
+		lastRows.clear();
+
+		for (Partition partition : partitions.values()) {
+			partition.map();
+
+			for (int row = 0; row < partition.rowCount; row++) {
+				nextKey = Math.max(nextKey, partition.getLong(Column.KEY, row) + 1);
+
+				if (!partition.superseded.get(row)) {
+					updateLastRow(partition, row);
+				}
+			}
+		}
+	}
+
+	private void updateLastRow(Partition partition, int row) {
+		Map<OeeEventType, RowRef> typeRows = lastRows.computeIfAbsent(partition.getLong(Column.EQUIPMENT, row),
+				k -> new EnumMap<>(OeeEventType.class));
+
+		OeeEventType type = partition.getType(row);
+		RowRef last = typeRows.get(type);
+
+		if (last == null || partition.getLong(Column.START, row) >= last.partition.getLong(Column.START, last.row)) {
+			typeRows.put(type, new RowRef(partition, row));
+		}
+	}
+
+	@Override
+	public synchronized List<OeeEvent> saveEvents(List<OeeEvent> events) throws Exception {
+		// rows to append by partition
+		Map<Partition, List<OeeEvent>> appends = new TreeMap<>(Comparator.comparing((Partition p) -> p.month));
+
+		for (OeeEvent event : events) {
+			if (event.getEquipment() == null || event.getEquipment().getKey() == null || event.getStartTime() == null
+					|| event.getEventType() == null) {
+				throw new Exception("An event must have saved equipment, a type and a start time to be stored.");
+			}
+
+			LocalDateTime start = event.getOffsetStartTime().getLocalDateTime();
+			Partition partition = partitions.get(YearMonth.from(start));
+
+			if (partition == null) {
+				YearMonth month = YearMonth.from(start);
+				partition = new Partition(month, directory.resolve(month.toString()));
+				partitions.put(month, partition);
+			}
+
+			if (event.getKey() == null) {
+				event.setKey(nextKey++);
+			} else {
+				supersede(event.getKey(), partition);
+			}
+			appends.computeIfAbsent(partition, p -> new ArrayList<>()).add(event);
+		}
+
+		for (Map.Entry<Partition, List<OeeEvent>> entry : appends.entrySet()) {
+			Partition partition = entry.getKey();
+			int firstRow = partition.rowCount;
+
+			partition.append(entry.getValue());
+			partition.map();
+
+			for (int row = firstRow; row < partition.rowCount; row++) {
+				updateLastRow(partition, row);
+			}
+		}
+		return events;
+	}
+
+	// mark the current row of a saved event as replaced
+	private void supersede(long key, Partition likely) {
+		if (likely.supersede(key)) {
+			return;
+		}
+
+		for (Partition partition : partitions.descendingMap().values()) {
+			if (partition != likely && partition.supersede(key)) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public OeeEvent fetchLastEvent(Equipment equipment, OeeEventType type) {
+		ViewRow last = findLastRow(equipment, type);
+		if (last == null) {
+			return null;
+		}
+
+		try (RowReader reader = new RowReader(equipment)) {
+			return reader.read(last.view, last.row);
+		}
+	}
+
+	private synchronized ViewRow findLastRow(Equipment equipment, OeeEventType type) {
+		Map<OeeEventType, RowRef> typeRows = lastRows.get(equipment.getKey());
+		RowRef last = typeRows != null ? typeRows.get(type) : null;
+
+		if (last == null) {
+			return null;
+		}
+
+		if (last.partition.superseded.get(last.row)) {
+			// the start time of the last event was changed
+			buildIndex();
+			return findLastRow(equipment, type);
+		}
+		return new ViewRow(last.partition.snapshot(), last.row);
+	}
+
+	@Override
+	public List<OeeEvent> fetchEvents(Equipment equipment, OeeEventType type, OffsetDateTime from,
+			OffsetDateTime to) {
+		List<OeeEvent> events = new ArrayList<>();
+		streamEvents(equipment, type, from, to, events::add);
+		return events;
+	}
+
+	@Override
+	public List<OeeEvent> fetchAvailability(Equipment equipment, OffsetDateTime from, OffsetDateTime to) {
+		return fetchEvents(equipment, OeeEventType.AVAILABILITY, from, to);
+	}
+
+	@Override
+	public List<OeeEvent> fetchProduction(Equipment equipment, Material material, OffsetDateTime from,
+			OffsetDateTime to) {
+		long fromNanos = toNanos(from);
+		long toNanos = toNanos(to);
+		long materialKey = material != null && material.getKey() != null ? material.getKey() : NULL_KEY;
+
+		List<ViewRow> rows = scan(equipment, fromNanos, toNanos,
+				(view, row) -> view.getType(row).isProduction() && view.getLong(Column.START, row) >= fromNanos
+						&& view.getLong(Column.START, row) < toNanos
+						&& view.getLong(Column.MATERIAL, row) == materialKey);
+
+		List<OeeEvent> events = new ArrayList<>(rows.size());
+		read(equipment, rows, events::add);
+		return events;
+	}
+
+	@Override
+	public List<OeeEvent> fetchSetups(Equipment equipment, Material material, OffsetDateTime from,
+			OffsetDateTime to) {
+		long fromNanos = toNanos(from);
+		long toNanos = toNanos(to);
+		Long materialKey = material != null ? material.getKey() : null;
+
+		// a material change can start in any earlier partition
+		List<ViewRow> rows = scan(equipment, NULL_LONG, toNanos, (view, row) -> {
+			if (!view.getType(row).equals(OeeEventType.MATL_CHANGE) || view.getLong(Column.START, row) > toNanos) {
+				return false;
+			}
+
+			long end = view.getLong(Column.END, row);
+
+			if (end != NULL_LONG && end < fromNanos) {
+				return false;
+			}
+			return materialKey == null || view.getLong(Column.MATERIAL, row) == materialKey;
+		});
+
+		List<OeeEvent> events = new ArrayList<>(rows.size());
+		read(equipment, rows, events::add);
+		return events;
+	}
+
+	@Override
+	public long streamEvents(Equipment equipment, OeeEventType type, OffsetDateTime from, OffsetDateTime to,
+			Consumer<OeeEvent> consumer) {
+		long fromNanos = from != null ? toNanos(from) : NULL_LONG;
+		long toNanos = to != null ? toNanos(to) : Long.MAX_VALUE;
+
+		List<ViewRow> rows = scan(equipment, fromNanos, toNanos,
+				(view, row) -> view.getType(row).equals(type) && view.getLong(Column.START, row) >= fromNanos
+						&& view.getLong(Column.START, row) < toNanos);
+
+		// the consumer is called without holding the store lock
+		read(equipment, rows, consumer);
+		return rows.size();
+	}
+
+	// snapshots of the partitions overlapping the period
+	private synchronized List<View> snapshot(long fromNanos, long toNanos) {
+		List<View> views = new ArrayList<>();
+
+		for (Partition partition : partitions.values()) {
+			if (partition.getEndNanos() > fromNanos && partition.getStartNanos() < toNanos) {
+				views.add(partition.snapshot());
+			}
+		}
+		return views;
+	}
+
+	// current rows of the equipment in partitions overlapping the period that
+	// match the filter, in start time order. Only taking the snapshots holds the
+	// store lock.
+	private List<ViewRow> scan(Equipment equipment, long fromNanos, long toNanos, RowFilter filter) {
+		List<ViewRow> rows = new ArrayList<>();
+
+		if (equipment.getKey() == null) {
+			return rows;
+		}
+		long equipmentKey = equipment.getKey();
+
+		for (View view : snapshot(fromNanos, toNanos)) {
+			for (int row = 0; row < view.rowCount; row++) {
+				if (view.getLong(Column.EQUIPMENT, row) == equipmentKey && !view.superseded.get(row)
+						&& filter.accept(view, row)) {
+					rows.add(new ViewRow(view, row));
+				}
+			}
+		}
+
+		rows.sort(Comparator.comparingLong(ref -> ref.view.getLong(Column.START, ref.row)));
+		return rows;
+	}
+
+	private void read(Equipment equipment, List<ViewRow> rows, Consumer<OeeEvent> consumer) {
+		try (RowReader reader = new RowReader(equipment)) {
+			for (ViewRow ref : rows) {
+				consumer.accept(reader.read(ref.view, ref.row));
+			}
+		}
+	}
+
+	@Override
+	public synchronized int purge(Equipment equipment, OffsetDateTime cutoff) throws Exception {
+		if (equipment.getKey() == null) {
+			return 0;
+		}
+
+		long equipmentKey = equipment.getKey();
+		long cutoffNanos = toNanos(cutoff);
+		int purged = 0;
+		boolean compacted = false;
+
+		for (Partition partition : new ArrayList<>(partitions.headMap(YearMonth.from(cutoff.toLocalDateTime()), true)
+				.values())) {
+			partition.map();
+			BitSet removed = new BitSet();
+
+			for (int row = 0; row < partition.rowCount; row++) {
+				if (partition.superseded.get(row) || partition.getLong(Column.EQUIPMENT, row) != equipmentKey
+						|| partition.getLong(Column.START, row) >= cutoffNanos) {
+					continue;
+				}
+
+				// preserve active material changes
+				if (partition.getType(row).equals(OeeEventType.MATL_CHANGE)) {
+					long end = partition.getLong(Column.END, row);
+
+					if (end == NULL_LONG || end >= cutoffNanos) {
+						continue;
+					}
+				}
+				removed.set(row);
+			}
+
+			if (!removed.isEmpty()) {
+				// count as the database purge does, without material changes
+				for (int row = removed.nextSetBit(0); row >= 0; row = removed.nextSetBit(row + 1)) {
+					if (!partition.getType(row).equals(OeeEventType.MATL_CHANGE)) {
+						purged++;
+					}
+				}
+				compacted = true;
+				compact(partition, removed);
+			}
+		}
+
+		if (compacted) {
+			buildIndex();
+		}
+		return purged;
+	}
+
+	// rewrite the partition without the removed and superseded rows
+	private void compact(Partition partition, BitSet removed) throws Exception {
+		removed.or(partition.superseded);
+
+		if (removed.cardinality() == partition.rowCount) {
+			partition.close();
+			deleteDirectory(partition.directory);
+			partitions.remove(partition.month);
+			return;
+		}
+
+		Path compactDir = directory.resolve(partition.month.toString() + COMPACT_SUFFIX);
+		deleteDirectory(compactDir);
+		Files.createDirectories(compactDir);
+
+		try (FileChannel text = FileChannel.open(compactDir.resolve(TEXT_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE)) {
+			for (Column column : Column.values()) {
+				ByteBuffer buffer = ByteBuffer.allocate((partition.rowCount - removed.cardinality()) * column.width);
+
+				for (int row = 0; row < partition.rowCount; row++) {
+					if (removed.get(row)) {
+						continue;
+					}
+
+					if (column.equals(Column.TEXT)) {
+						// copy the text to the new file
+						long offset = partition.getLong(Column.TEXT, row);
+
+						if (offset == NULL_LONG) {
+							buffer.putLong(NULL_LONG);
+						} else {
+							buffer.putLong(text.position());
+							text.write(ByteBuffer.wrap(partition.view.getTextBytes(offset)));
+						}
+					} else {
+						for (int i = 0; i < column.width; i++) {
+							buffer.put(partition.view.buffers[column.ordinal()].get(row * column.width + i));
+						}
+					}
+				}
+				buffer.flip();
+
+				try (FileChannel channel = FileChannel.open(compactDir.resolve(column.getFileName()),
+						StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+					channel.write(buffer);
+					channel.force(false);
+				}
+			}
+			text.force(false);
+		}
+
+		// replace the partition
+		partition.close();
+		deleteDirectory(partition.directory);
+		Files.move(compactDir, partition.directory, StandardCopyOption.ATOMIC_MOVE);
+		partitions.put(partition.month, new Partition(partition.month, partition.directory));
+	}
+
+	@Override
+	public synchronized void close() {
+		for (Partition partition : partitions.values()) {
+			partition.close();
+		}
+		partitions.clear();
+		lastRows.clear();
+	}
+
+	private static long toNanos(OffsetDateTime dateTime) {
+		return toNanos(dateTime.toLocalDateTime());
+	}
+
+	private static long toNanos(LocalDateTime dateTime) {
+		return dateTime.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SECOND + dateTime.getNano();
+	}
+
+	private static LocalDateTime fromNanos(long nanos) {
+		return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND),
+				(int) Math.floorMod(nanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+	}
+
+	private static long getKey(KeyedObject keyed) throws Exception {
+		if (keyed == null) {
+			return NULL_KEY;
+		}
+
+		if (keyed.getKey() == null) {
+			throw new Exception("An unsaved " + keyed.getClass().getSimpleName() + " cannot be stored with an event.");
+		}
+		return keyed.getKey();
+	}
+
+	private static byte getTypeCode(OeeEventType type) {
+		for (byte i = 0; i < TYPES.length; i++) {
+			if (TYPES[i].equals(type)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Unknown event type " + type);
+	}
+
+	private static void deleteDirectory(Path dir) throws IOException {
+		if (!Files.exists(dir)) {
+			return;
+		}
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Path file : stream) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(dir);
+	}
+
+	// job, source id and input value
+	private static byte[] encodeText(OeeEvent event) {
+		String[] values = { event.getJob(), event.getSourceId(),
+				event.getInputValue() != null ? event.getInputValue().toString() : null };
+
+		if (values[0] == null && values[1] == null && values[2] == null) {
+			return null;
+		}
+
+		byte[][] bytes = new byte[values.length][];
+		int size = 4;
+
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] != null) {
+				bytes[i] = values[i].getBytes(StandardCharsets.UTF_8);
+				size += bytes[i].length;
+			}
+			size += 4;
+		}
+
+		// total size, then length and bytes of each value
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(size);
+
+		for (byte[] value : bytes) {
+			buffer.putInt(value != null ? value.length : -1);
+
+			if (value != null) {
+				buffer.put(value);
+			}
+		}
+		return buffer.array();
+	}
+
+	@FunctionalInterface
+	private interface RowFilter {
+		boolean accept(View view, int row);
+	}
+
+	private static class RowRef {
+		private final Partition partition;
+		private final int row;
+
+		private RowRef(Partition partition, int row) {
+			this.partition = partition;
+			this.row = row;
+		}
+	}
+
+	private static class ViewRow {
+		private final View view;
+		private final int row;
+
+		private ViewRow(View view, int row) {
+			this.view = view;
+			this.row = row;
+		}
+	}
+
+	// builds events from rows, finding each reference entity once
+	private static class RowReader implements AutoCloseable {
+		private final Equipment equipment;
+		private final Map<Class<?>, Map<Long, Object>> entities = new HashMap<>();
+		private EntityManager em;
+
+		// closed by this reader if not shared by a unit of work
+		private boolean ownsEntityManager = false;
+
+		private RowReader(Equipment equipment) {
+			this.equipment = equipment;
+		}
+
+		private OeeEvent read(View view, int row) {
+			OeeEvent event = new OeeEvent(equipment);
+			event.setKey(view.getLong(Column.KEY, row));
+			event.setEventType(view.getType(row));
+			event.setStartTime(toOffsetDateTime(view.getLong(Column.START, row),
+					view.getInt(Column.START_OFFSET, row)));
+
+			long end = view.getLong(Column.END, row);
+			if (end != NULL_LONG) {
+				event.setEndTime(toOffsetDateTime(end, view.getInt(Column.END_OFFSET, row)));
+			}
+
+			long duration = view.getLong(Column.DURATION, row);
+			if (duration != NULL_LONG) {
+				event.setDuration(Duration.ofNanos(duration));
+			}
+
+			double amount = view.getDouble(Column.AMOUNT, row);
+			if (!Double.isNaN(amount)) {
+				event.setAmount(amount);
+			}
+
+			event.setReason(find(Reason.class, view.getLong(Column.REASON, row)));
+			event.setMaterial(find(Material.class, view.getLong(Column.MATERIAL, row)));
+			event.setUOM(find(UnitOfMeasure.class, view.getLong(Column.UOM, row)));
+			event.setShift(find(Shift.class, view.getLong(Column.SHIFT, row)));
+			event.setTeam(find(Team.class, view.getLong(Column.TEAM, row)));
+
+			long text = view.getLong(Column.TEXT, row);
+			if (text != NULL_LONG) {
+				String[] values = view.getText(text);
+				event.setJob(values[0]);
+				event.setSourceId(values[1]);
+
+				if (values[2] != null) {
+					event.setInputValue(values[2]);
+				}
+			}
+			return event;
+		}
+
+		private static OffsetDateTime toOffsetDateTime(long nanos, int offsetSeconds) {
+			return OffsetDateTime.of(fromNanos(nanos), ZoneOffset.ofTotalSeconds(offsetSeconds));
+		}
+
+		private <T> T find(Class<T> entityClass, long key) {
+			if (key == NULL_KEY) {
+				return null;
+			}
+
+			if (em == null) {
+				ownsEntityManager = PersistenceService.instance().getUnitOfWork() == null;
+				em = PersistenceService.instance().getEntityManager();
+			}
+
+			return entityClass.cast(entities.computeIfAbsent(entityClass, k -> new HashMap<>())
+					.computeIfAbsent(key, k -> em.find(entityClass, k)));
+		}
+
+		@Override
+		public void close() {
+			if (em != null && ownsEntityManager) {
+				em.close();
+			}
+			em = null;
+		}
+	}
+
+	// read-only mapping of the rows of a partition
+	private static class View {
+		private final MappedByteBuffer[] buffers;
+		private final MappedByteBuffer textBuffer;
+		private final int rowCount;
+		private final BitSet superseded;
+
+		private View(MappedByteBuffer[] buffers, MappedByteBuffer textBuffer, int rowCount, BitSet superseded) {
+			this.buffers = buffers;
+			this.textBuffer = textBuffer;
+			this.rowCount = rowCount;
+			this.superseded = superseded;
+		}
+
+		private long getLong(Column column, int row) {
+			return buffers[column.ordinal()].getLong(row * column.width);
+		}
+
+		private int getInt(Column column, int row) {
+			return buffers[column.ordinal()].getInt(row * column.width);
+		}
+
+		private double getDouble(Column column, int row) {
+			return buffers[column.ordinal()].getDouble(row * column.width);
+		}
+
+		private OeeEventType getType(int row) {
+			return TYPES[buffers[Column.TYPE.ordinal()].get(row)];
+		}
+
+		private byte[] getTextBytes(long offset) {
+			int size = textBuffer.getInt((int) offset);
+			byte[] bytes = new byte[size];
+
+			for (int i = 0; i < size; i++) {
+				bytes[i] = textBuffer.get((int) offset + i);
+			}
+			return bytes;
+		}
+
+		private String[] getText(long offset) {
+			ByteBuffer buffer = ByteBuffer.wrap(getTextBytes(offset));
+			buffer.getInt();
+
+			String[] values = new String[3];
+
+			for (int i = 0; i < values.length; i++) {
+				int length = buffer.getInt();
+
+				if (length >= 0) {
+					values[i] = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+					buffer.position(buffer.position() + length);
+				}
+			}
+			return values;
+		}
+	}
+
+	// events with a start time in one month
+	private static class Partition {
+		private final YearMonth month;
+		private final Path directory;
+		private final FileChannel[] channels = new FileChannel[Column.values().length];
+		private FileChannel textChannel;
+		private int rowCount;
+		private int mappedRows = -1;
+		private long textSize;
+
+		// rows replaced by a later version
+		private final BitSet superseded = new BitSet();
+
+		// mapping of the rows written so far
+		private View view;
+
+		private Partition(YearMonth month, Path directory) throws IOException {
+			this.month = month;
+			this.directory = directory;
+			Files.createDirectories(directory);
+
+			long rows = Long.MAX_VALUE;
+
+			for (Column column : Column.values()) {
+				FileChannel channel = FileChannel.open(directory.resolve(column.getFileName()),
+						StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				channels[column.ordinal()] = channel;
+				rows = Math.min(rows, channel.size() / column.width);
+			}
+			rowCount = (int) rows;
+
+			// drop a partly written row
+			for (Column column : Column.values()) {
+				channels[column.ordinal()].truncate((long) rowCount * column.width);
+			}
+
+			textChannel = FileChannel.open(directory.resolve(TEXT_FILE), StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			textSize = textChannel.size();
+
+			// earlier versions of updated events
+			map();
+			Map<Long, Integer> rowsByKey = new HashMap<>();
+
+			for (int row = 0; row < rowCount; row++) {
+				Integer previous = rowsByKey.put(getLong(Column.KEY, row), row);
+
+				if (previous != null) {
+					superseded.set(previous);
+				}
+			}
+		}
+
+		private long getStartNanos() {
+			return toNanos(month.atDay(1).atStartOfDay());
+		}
+
+		private long getEndNanos() {
+			return toNanos(month.plusMonths(1).atDay(1).atStartOfDay());
+		}
+
+		// map the rows written since the last mapping
+		private void map() {
+			if (mappedRows == rowCount) {
+				return;
+			}
+
+			// new buffers so that snapshots of the previous mapping stay valid
+			MappedByteBuffer[] buffers = new MappedByteBuffer[Column.values().length];
+
+			try {
+				for (Column column : Column.values()) {
+					buffers[column.ordinal()] = channels[column.ordinal()].map(MapMode.READ_ONLY, 0,
+							(long) rowCount * column.width);
+				}
+				view = new View(buffers, textChannel.map(MapMode.READ_ONLY, 0, textSize), rowCount, superseded);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			mappedRows = rowCount;
+		}
+
+		// rows written so far, unchanged by later appends and updates
+		private View snapshot() {
+			map();
+			return new View(view.buffers, view.textBuffer, rowCount, (BitSet) superseded.clone());
+		}
+
+		private long getLong(Column column, int row) {
+			return view.getLong(column, row);
+		}
+
+		private OeeEventType getType(int row) {
+			return view.getType(row);
+		}
+		// find the current row of the key from the end and mark it superseded
+		private boolean supersede(long key) {
+			map();
+
+			for (int row = rowCount - 1; row >= 0; row--) {
+				if (getLong(Column.KEY, row) == key && !superseded.get(row)) {
+					superseded.set(row);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void append(List<OeeEvent> events) throws Exception {
+			int count = events.size();
+			ByteBuffer[] columns = new ByteBuffer[Column.values().length];
+
+			for (Column column : Column.values()) {
+				columns[column.ordinal()] = ByteBuffer.allocate(count * column.width);
+			}
+
+			// text is written first so that a complete row never points past it
+			long textPosition = textSize;
+
+			for (OeeEvent event : events) {
+				OffsetTimestamp start = event.getOffsetStartTime();
+				OffsetTimestamp end = event.getOffsetEndTime();
+				byte[] text = encodeText(event);
+
+				columns[Column.KEY.ordinal()].putLong(event.getKey());
+				columns[Column.TYPE.ordinal()].put(getTypeCode(event.getEventType()));
+				columns[Column.EQUIPMENT.ordinal()].putLong(getKey(event.getEquipment()));
+				columns[Column.START.ordinal()].putLong(toNanos(start.getLocalDateTime()));
+				columns[Column.START_OFFSET.ordinal()].putInt(start.getOffset());
+				columns[Column.END.ordinal()].putLong(end != null ? toNanos(end.getLocalDateTime()) : NULL_LONG);
+				columns[Column.END_OFFSET.ordinal()].putInt(end != null ? end.getOffset() : 0);
+				columns[Column.DURATION.ordinal()]
+						.putLong(event.getDuration() != null ? event.getDuration().toNanos() : NULL_LONG);
+				columns[Column.AMOUNT.ordinal()].putDouble(event.getAmount() != null ? event.getAmount() : Double.NaN);
+				columns[Column.REASON.ordinal()].putLong(getKey(event.getReason()));
+				columns[Column.MATERIAL.ordinal()].putLong(getKey(event.getMaterial()));
+				columns[Column.UOM.ordinal()].putLong(getKey(event.getUOM()));
+				columns[Column.SHIFT.ordinal()].putLong(getKey(event.getShift()));
+				columns[Column.TEAM.ordinal()].putLong(getKey(event.getTeam()));
+
+				if (text != null) {
+					textChannel.write(ByteBuffer.wrap(text), textPosition);
+					columns[Column.TEXT.ordinal()].putLong(textPosition);
+					textPosition += text.length;
+				} else {
+					columns[Column.TEXT.ordinal()].putLong(NULL_LONG);
+				}
+			}
+			textChannel.force(false);
+			textSize = textPosition;
+
+			for (Column column : Column.values()) {
+				ByteBuffer buffer = columns[column.ordinal()];
+				buffer.flip();
+				FileChannel channel = channels[column.ordinal()];
+				channel.write(buffer, (long) rowCount * column.width);
+				channel.force(false);
+			}
+			rowCount += count;
+		}
+
+		private void close() {
+			try {
+				for (FileChannel channel : channels) {
+					if (channel != null) {
+						channel.close();
+					}
+				}
+
+				if (textChannel != null) {
+					textChannel.close();
+				}
+			} catch (IOException e) {
+				logger.warn("Unable to close event store partition " + directory + ": " + e.getMessage());
+			}
+
+			// open snapshots keep their mappings
+			mappedRows = -1;
+		}
+	}
+}
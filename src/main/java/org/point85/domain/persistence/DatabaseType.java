@@ -2,4 +2,23 @@ package org.point85.domain.persistence;
 
 public enum DatabaseType {
 	MSSQL, ORACLE, HSQL, MYSQL, POSTGRES;
+
+	public static DatabaseType fromJdbcUrl(String jdbcUrl) throws Exception {
+		DatabaseType databaseType = null;
+
+		if (jdbcUrl.contains("sqlserver")) {
+			databaseType = DatabaseType.MSSQL;
+		} else if (jdbcUrl.contains("oracle")) {
+			databaseType = DatabaseType.ORACLE;
+		} else if (jdbcUrl.contains("hsqldb")) {
+			databaseType = DatabaseType.HSQL;
+		} else if (jdbcUrl.contains("mysql")) {
+			databaseType = DatabaseType.MYSQL;
+		} else if (jdbcUrl.contains("postgresql")) {
+			databaseType = DatabaseType.POSTGRES;
+		} else {
+			throw new Exception("Unrecognized JDBC URL: " + jdbcUrl);
+		}
+		return databaseType;
+	}
 }
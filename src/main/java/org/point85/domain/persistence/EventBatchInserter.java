@@ -0,0 +1,126 @@
+package org.point85.domain.persistence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+import org.point85.domain.collector.OeeEvent;
+import org.point85.domain.plant.KeyedObject;
+
+/**
+ * JDBC batched inserts of new OEE events. Hibernate cannot batch the inserts
+ * of entities with IDENTITY keys because it reads each key back after its own
+ * insert. These drivers return the keys of a whole batch, so the events are
+ * inserted with addBatch and given their keys afterwards. The columns are
+ * those mapped by {@link OeeEvent}.
+ *
+ */
+class EventBatchInserter {
+	private static final String KEY_COLUMN = "EVENT_KEY";
+
+	private static final String INSERT_SQL = "INSERT INTO " + SchemaIndex.OEE_EVENT_TABLE
+			+ " (EVENT_TYPE, ENT_KEY, START_TIME, START_TIME_OFFSET, END_TIME, END_TIME_OFFSET, SHIFT_KEY, TEAM_KEY,"
+			+ " DURATION, REASON_KEY, AMOUNT, UOM_KEY, MATL_KEY, JOB, IN_VALUE, SOURCE_ID)"
+			+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+	private final EventTypeConverter typeConverter = new EventTypeConverter();
+
+	// SQL Server and Oracle only return the key of the last row of a batch
+	static boolean isSupported(DatabaseType databaseType) {
+		return databaseType != null && (databaseType.equals(DatabaseType.HSQL)
+				|| databaseType.equals(DatabaseType.MYSQL) || databaseType.equals(DatabaseType.POSTGRES));
+	}
+
+	void insert(Connection connection, List<OeeEvent> events, int batchSize) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL,
+				Statement.RETURN_GENERATED_KEYS)) {
+			int from = 0;
+
+			while (from < events.size()) {
+				int to = Math.min(from + batchSize, events.size());
+
+				for (OeeEvent event : events.subList(from, to)) {
+					setParameters(statement, event);
+					statement.addBatch();
+				}
+				statement.executeBatch();
+				setKeys(statement, events.subList(from, to));
+
+				from = to;
+			}
+		}
+	}
+
+	private void setParameters(PreparedStatement statement, OeeEvent event) throws SQLException {
+		statement.setString(1, typeConverter.convertToDatabaseColumn(event.getEventType()));
+		setKey(statement, 2, event.getEquipment());
+		setTimestamp(statement, 3, event.getOffsetStartTime());
+		setTimestamp(statement, 5, event.getOffsetEndTime());
+		setKey(statement, 7, event.getShift());
+		setKey(statement, 8, event.getTeam());
+
+		// stored as nanoseconds like Hibernate's Duration type
+		if (event.getDuration() != null) {
+			statement.setLong(9, event.getDuration().toNanos());
+		} else {
+			statement.setNull(9, Types.BIGINT);
+		}
+
+		setKey(statement, 10, event.getReason());
+
+		if (event.getAmount() != null) {
+			statement.setDouble(11, event.getAmount());
+		} else {
+			statement.setNull(11, Types.DOUBLE);
+		}
+
+		setKey(statement, 12, event.getUOM());
+		setKey(statement, 13, event.getMaterial());
+		statement.setString(14, event.getJob());
+		statement.setString(15, (String) event.getInputValue());
+		statement.setString(16, event.getSourceId());
+	}
+
+	// the time and its offset
+	private void setTimestamp(PreparedStatement statement, int index, OffsetTimestamp timestamp)
+			throws SQLException {
+		if (timestamp != null && timestamp.getLocalDateTime() != null) {
+			statement.setTimestamp(index, Timestamp.valueOf(timestamp.getLocalDateTime()));
+			statement.setInt(index + 1, timestamp.getOffset());
+		} else {
+			statement.setNull(index, Types.TIMESTAMP);
+			statement.setNull(index + 1, Types.INTEGER);
+		}
+	}
+
+	private void setKey(PreparedStatement statement, int index, KeyedObject keyed) throws SQLException {
+		if (keyed != null && keyed.getKey() != null) {
+			statement.setLong(index, keyed.getKey());
+		} else {
+			statement.setNull(index, Types.BIGINT);
+		}
+	}
+
+	private void setKeys(PreparedStatement statement, List<OeeEvent> events) throws SQLException {
+		int count = 0;
+
+		try (ResultSet rs = statement.getGeneratedKeys()) {
+			// some drivers return every column, others only the key
+			boolean keyOnly = rs.getMetaData().getColumnCount() == 1;
+
+			while (rs.next() && count < events.size()) {
+				events.get(count++).setKey(keyOnly ? rs.getLong(1) : rs.getLong(KEY_COLUMN));
+			}
+		}
+
+		if (count != events.size()) {
+			throw new SQLException(
+					"The database returned " + count + " generated keys for a batch of " + events.size() + " events.");
+		}
+	}
+}
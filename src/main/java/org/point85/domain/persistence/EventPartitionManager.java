@@ -0,0 +1,535 @@
+package org.point85.domain.persistence;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.point85.domain.plant.Equipment;
+import org.point85.domain.script.OeeEventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Range partitioning of the OEE_EVENT table on START_TIME for PostgreSQL
+ * (declarative partitions) and SQL Server (partition function and scheme).
+ * Retention drops or truncates whole partitions instead of deleting rows.
+ * Active material setup events are preserved in the same way as
+ * {@link PersistenceService#purge}. Once the table is partitioned the collector
+ * no longer deletes rows by the retention period of each equipment, and
+ * {@link #maintain} applies one retention period to all equipment. It should
+ * be the longest retention period of the equipment, since rows are kept until
+ * their whole partition is older than it. <br>
+ * Usage: EventPartitionManager &lt;JDBC URL&gt; &lt;user name&gt;
+ * &lt;password&gt; &lt;weekly|monthly&gt; &lt;partition|maintain&gt; [retention
+ * days]
+ *
+ */
+public class EventPartitionManager {
+	// logger
+	private static final Logger logger = LoggerFactory.getLogger(EventPartitionManager.class);
+
+	// number of future partitions to create ahead of time
+	public static final int DEFAULT_PARTITIONS_AHEAD = 3;
+
+	// the original table is kept under this name after partitioning
+	public static final String UNPARTITIONED_TABLE = "OEE_EVENT_UNPARTITIONED";
+
+	private static final String TABLE = SchemaIndex.OEE_EVENT_TABLE;
+	private static final String PARTITION_PREFIX = "OEE_EVENT_P";
+	private static final String DEFAULT_PARTITION = "OEE_EVENT_DEFAULT";
+	private static final String PARTITION_FUNCTION = "OEE_EVENT_PF";
+	private static final String PARTITION_SCHEME = "OEE_EVENT_PS";
+
+	// setup events that purging must keep
+	private static final String RETAINED_SETUP = "EVENT_TYPE = '" + OeeEventType.MATERIAL_VALUE
+			+ "' AND (END_TIME IS NULL OR END_TIME >= ?)";
+
+	private static final DateTimeFormatter NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+	private static final DateTimeFormatter LITERAL_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	public enum PartitionInterval {
+		WEEKLY, MONTHLY;
+	}
+
+	private final String jdbcUrl;
+	private final String userName;
+	private final String password;
+	private final DatabaseType databaseType;
+	private final PartitionInterval interval;
+
+	public EventPartitionManager(String jdbcUrl, String userName, String password, PartitionInterval interval)
+			throws Exception {
+		this.jdbcUrl = jdbcUrl;
+		this.userName = userName;
+		this.password = password;
+		this.databaseType = DatabaseType.fromJdbcUrl(jdbcUrl);
+		this.interval = interval;
+
+		if (!databaseType.equals(DatabaseType.POSTGRES) && !databaseType.equals(DatabaseType.MSSQL)) {
+			throw new Exception("Partitioning of " + TABLE + " is not supported for database type " + databaseType);
+		}
+	}
+
+	public DatabaseType getDatabaseType() {
+		return databaseType;
+	}
+
+	public PartitionInterval getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Get the start of the partition containing this time
+	 *
+	 * @param time {@link LocalDateTime}
+	 * @return Partition start
+	 */
+	public LocalDateTime getPartitionStart(LocalDateTime time) {
+		LocalDateTime start = time.toLocalDate().atStartOfDay();
+
+		if (interval.equals(PartitionInterval.WEEKLY)) {
+			start = start.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+		} else {
+			start = start.withDayOfMonth(1);
+		}
+		return start;
+	}
+
+	/**
+	 * Get the start of the partition following the one starting at this time
+	 *
+	 * @param start Partition start
+	 * @return Next partition start
+	 */
+	public LocalDateTime getNextPartitionStart(LocalDateTime start) {
+		return interval.equals(PartitionInterval.WEEKLY) ? start.plusWeeks(1) : start.plusMonths(1);
+	}
+
+	public String getPartitionName(LocalDateTime start) {
+		return PARTITION_PREFIX + NAME_FORMATTER.format(start);
+	}
+
+	/**
+	 * Convert the existing OEE_EVENT table to a partitioned table
+	 *
+	 * @throws Exception Exception
+	 */
+	public void partitionTable() throws Exception {
+		try (Connection connection = getConnection()) {
+			connection.setAutoCommit(false);
+
+			try {
+				if (databaseType.equals(DatabaseType.POSTGRES)) {
+					partitionPostgresTable(connection);
+				} else {
+					partitionSqlServerTable(connection);
+				}
+				connection.commit();
+			} catch (Exception e) {
+				connection.rollback();
+				throw e;
+			}
+		}
+	}
+
+	// move the rows to a new partitioned table and keep the original table
+	private void partitionPostgresTable(Connection connection) throws Exception {
+		if (SchemaMigration.findTable(connection, UNPARTITIONED_TABLE) != null) {
+			throw new Exception("Table " + TABLE + " has already been partitioned.");
+		}
+
+		// serial sequence owned by the key column
+		String sequence = queryString(connection,
+				"SELECT pg_get_serial_sequence('" + TABLE.toLowerCase() + "', 'event_key')");
+
+		execute(connection, "ALTER TABLE " + TABLE + " RENAME TO " + UNPARTITIONED_TABLE);
+
+		// index names are unique in the schema
+		for (SchemaIndex index : getEventIndexes()) {
+			execute(connection, "DROP INDEX IF EXISTS " + index.name());
+		}
+
+		execute(connection, "CREATE TABLE " + TABLE + " (LIKE " + UNPARTITIONED_TABLE
+				+ " INCLUDING DEFAULTS INCLUDING IDENTITY) PARTITION BY RANGE (START_TIME)");
+
+		// the partition key must be part of the primary key
+		execute(connection, "ALTER TABLE " + TABLE + " ADD PRIMARY KEY (EVENT_KEY, START_TIME)");
+		execute(connection, "CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+
+		createPartitions(connection, getFirstStartTime(connection, UNPARTITIONED_TABLE), getLastPartitionStart());
+
+		execute(connection, "INSERT INTO " + TABLE + " SELECT * FROM " + UNPARTITIONED_TABLE);
+
+		if (sequence != null) {
+			execute(connection, "ALTER SEQUENCE " + sequence + " OWNED BY " + TABLE + ".EVENT_KEY");
+		} else {
+			// new identity sequence
+			execute(connection, "SELECT setval(pg_get_serial_sequence('" + TABLE.toLowerCase()
+					+ "', 'event_key'), (SELECT COALESCE(MAX(EVENT_KEY), 0) + 1 FROM " + TABLE + "), false)");
+		}
+
+		// indexes are created on each partition
+		for (SchemaIndex index : getEventIndexes()) {
+			execute(connection, index.getCreateDdl(databaseType));
+		}
+	}
+
+	// rebuild the clustered primary key and the indexes on the partition scheme
+	private void partitionSqlServerTable(Connection connection) throws Exception {
+		if (queryString(connection,
+				"SELECT name FROM sys.partition_functions WHERE name = '" + PARTITION_FUNCTION + "'") != null) {
+			throw new Exception("Table " + TABLE + " has already been partitioned.");
+		}
+
+		// partition 1 before the first boundary is kept empty
+		StringBuilder boundaries = new StringBuilder();
+		LocalDateTime start = getFirstStartTime(connection, TABLE);
+		LocalDateTime last = getLastPartitionStart();
+
+		while (!start.isAfter(last)) {
+			if (boundaries.length() > 0) {
+				boundaries.append(", ");
+			}
+			boundaries.append(toLiteral(start));
+			start = getNextPartitionStart(start);
+		}
+
+		execute(connection, "CREATE PARTITION FUNCTION " + PARTITION_FUNCTION
+				+ " (datetime2) AS RANGE RIGHT FOR VALUES (" + boundaries + ")");
+		execute(connection,
+				"CREATE PARTITION SCHEME " + PARTITION_SCHEME + " AS PARTITION " + PARTITION_FUNCTION + " ALL TO ([PRIMARY])");
+
+		String primaryKey = queryString(connection,
+				"SELECT name FROM sys.key_constraints WHERE type = 'PK' AND parent_object_id = OBJECT_ID('" + TABLE
+						+ "')");
+
+		if (primaryKey != null) {
+			execute(connection, "ALTER TABLE " + TABLE + " DROP CONSTRAINT " + primaryKey);
+		}
+
+		// START_TIME cannot be altered while indexes depend on it
+		Set<String> indexNames = SchemaMigration.getIndexNames(connection, TABLE);
+
+		for (SchemaIndex index : getEventIndexes()) {
+			if (indexNames.contains(index.name())) {
+				execute(connection, index.getDropDdl(databaseType));
+			}
+		}
+
+		execute(connection, "ALTER TABLE " + TABLE + " ALTER COLUMN START_TIME datetime2 NOT NULL");
+		execute(connection, "ALTER TABLE " + TABLE + " ADD CONSTRAINT " + TABLE
+				+ "_PK PRIMARY KEY CLUSTERED (EVENT_KEY, START_TIME) ON " + PARTITION_SCHEME + " (START_TIME)");
+
+		// partition truncation requires aligned indexes
+		for (SchemaIndex index : getEventIndexes()) {
+			execute(connection, index.getCreateDdl(databaseType) + " ON " + PARTITION_SCHEME + " (START_TIME)");
+		}
+	}
+
+	/**
+	 * Check whether the OEE_EVENT table has been partitioned
+	 *
+	 * @param connection   JDBC {@link Connection}
+	 * @param databaseType {@link DatabaseType}
+	 * @return True if partitioned
+	 * @throws SQLException SQLException
+	 */
+	public static boolean isPartitioned(Connection connection, DatabaseType databaseType) throws SQLException {
+		String sql = null;
+
+		if (DatabaseType.POSTGRES.equals(databaseType)) {
+			sql = "SELECT COUNT(*) FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid "
+					+ "WHERE c.relname = '" + TABLE.toLowerCase() + "'";
+		} else if (DatabaseType.MSSQL.equals(databaseType)) {
+			sql = "SELECT COUNT(*) FROM sys.partition_functions WHERE name = '" + PARTITION_FUNCTION + "'";
+		} else {
+			return false;
+		}
+
+		try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+			return rs.next() && rs.getInt(1) > 0;
+		}
+	}
+
+	/**
+	 * Get the starting times of the existing partitions in ascending order
+	 *
+	 * @return List of partition starts
+	 * @throws Exception Exception
+	 */
+	public List<LocalDateTime> getPartitionStarts() throws Exception {
+		try (Connection connection = getConnection()) {
+			return getPartitionStarts(connection);
+		}
+	}
+
+	private List<LocalDateTime> getPartitionStarts(Connection connection) throws Exception {
+		List<LocalDateTime> starts = new ArrayList<>();
+
+		if (databaseType.equals(DatabaseType.POSTGRES)) {
+			String sql = "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+					+ "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = '" + TABLE.toLowerCase() + "'";
+
+			try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+				while (rs.next()) {
+					String name = rs.getString(1).toUpperCase();
+
+					if (name.startsWith(PARTITION_PREFIX)) {
+						starts.add(LocalDate.parse(name.substring(PARTITION_PREFIX.length()), NAME_FORMATTER)
+								.atStartOfDay());
+					}
+				}
+			}
+		} else {
+			String sql = "SELECT CAST(rv.value AS datetime2) FROM sys.partition_range_values rv "
+					+ "JOIN sys.partition_functions pf ON pf.function_id = rv.function_id WHERE pf.name = '"
+					+ PARTITION_FUNCTION + "'";
+
+			try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+				while (rs.next()) {
+					starts.add(rs.getTimestamp(1).toLocalDateTime());
+				}
+			}
+		}
+		Collections.sort(starts);
+		return starts;
+	}
+
+	/**
+	 * Create partitions ahead of time and drop the partitions that are older than
+	 * the retention period. The period applies to all equipment, unlike the
+	 * per-equipment retention of the collector's row purge.
+	 *
+	 * @param retention Retention period
+	 * @throws Exception Exception
+	 */
+	public void maintain(Duration retention) throws Exception {
+		try (Connection connection = getConnection()) {
+			List<LocalDateTime> starts = getPartitionStarts(connection);
+
+			if (starts.isEmpty()) {
+				throw new Exception("Table " + TABLE + " is not partitioned.");
+			}
+
+			LocalDateTime next = getNextPartitionStart(starts.get(starts.size() - 1));
+			int created = createPartitions(connection, next, getLastPartitionStart());
+			int dropped = dropPartitions(connection, LocalDateTime.now().minus(retention));
+
+			if (logger.isInfoEnabled()) {
+				logger.info("Created " + created + " and dropped " + dropped + " partitions of " + TABLE);
+			}
+		}
+	}
+
+	// start of the last partition to create ahead of time
+	private LocalDateTime getLastPartitionStart() {
+		LocalDateTime start = getPartitionStart(LocalDateTime.now());
+
+		for (int i = 0; i < DEFAULT_PARTITIONS_AHEAD; i++) {
+			start = getNextPartitionStart(start);
+		}
+		return start;
+	}
+
+	// create the partitions with starts from first through last
+	private int createPartitions(Connection connection, LocalDateTime first, LocalDateTime last) throws Exception {
+		int count = 0;
+		LocalDateTime start = getPartitionStart(first);
+
+		while (!start.isAfter(last)) {
+			LocalDateTime end = getNextPartitionStart(start);
+
+			if (databaseType.equals(DatabaseType.POSTGRES)) {
+				execute(connection, "CREATE TABLE " + getPartitionName(start) + " PARTITION OF " + TABLE
+						+ " FOR VALUES FROM (" + toLiteral(start) + ") TO (" + toLiteral(end) + ")");
+			} else {
+				// splitting the empty last partition only changes metadata
+				execute(connection, "ALTER PARTITION SCHEME " + PARTITION_SCHEME + " NEXT USED [PRIMARY]");
+				execute(connection,
+						"ALTER PARTITION FUNCTION " + PARTITION_FUNCTION + "() SPLIT RANGE (" + toLiteral(start) + ")");
+			}
+			count++;
+			start = end;
+		}
+		return count;
+	}
+
+	/**
+	 * Drop the partitions whose events all started before the cutoff. A partition
+	 * holding active setup events is purged by row instead.
+	 *
+	 * @param cutoff Cutoff time
+	 * @return Number of partitions dropped or purged
+	 * @throws Exception Exception
+	 */
+	public int dropPartitions(LocalDateTime cutoff) throws Exception {
+		try (Connection connection = getConnection()) {
+			return dropPartitions(connection, cutoff);
+		}
+	}
+
+	private int dropPartitions(Connection connection, LocalDateTime cutoff) throws Exception {
+		List<LocalDateTime> starts = getPartitionStarts(connection);
+		int count = 0;
+
+		if (databaseType.equals(DatabaseType.POSTGRES)) {
+			for (LocalDateTime start : starts) {
+				if (getNextPartitionStart(start).isAfter(cutoff)) {
+					break;
+				}
+
+				String partition = getPartitionName(start);
+
+				if (countRetained(connection, partition, null, null, cutoff) == 0) {
+					execute(connection, "DROP TABLE " + partition);
+				} else {
+					deleteUnretained(connection, partition, null, null, cutoff);
+				}
+				count++;
+			}
+		} else {
+			// partition 2 holds the rows between the first two boundaries
+			for (int i = 0; i + 1 < starts.size(); i++) {
+				LocalDateTime start = starts.get(i);
+				LocalDateTime end = starts.get(i + 1);
+
+				if (end.isAfter(cutoff)) {
+					break;
+				}
+
+				if (countRetained(connection, TABLE, start, end, cutoff) == 0) {
+					execute(connection, "TRUNCATE TABLE " + TABLE + " WITH (PARTITIONS (2))");
+				} else {
+					deleteUnretained(connection, TABLE, start, end, cutoff);
+				}
+
+				// merge the emptied partition into partition 1
+				execute(connection,
+						"ALTER PARTITION FUNCTION " + PARTITION_FUNCTION + "() MERGE RANGE (" + toLiteral(start) + ")");
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private int countRetained(Connection connection, String table, LocalDateTime from, LocalDateTime to,
+			LocalDateTime cutoff) throws Exception {
+		String sql = "SELECT COUNT(*) FROM " + table + " WHERE " + RETAINED_SETUP + getRangePredicate(from);
+
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			setParameters(statement, cutoff, from, to);
+
+			try (ResultSet rs = statement.executeQuery()) {
+				rs.next();
+				return rs.getInt(1);
+			}
+		}
+	}
+
+	private void deleteUnretained(Connection connection, String table, LocalDateTime from, LocalDateTime to,
+			LocalDateTime cutoff) throws Exception {
+		String sql = "DELETE FROM " + table + " WHERE NOT (" + RETAINED_SETUP + ")" + getRangePredicate(from);
+
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			setParameters(statement, cutoff, from, to);
+			statement.executeUpdate();
+		}
+	}
+
+	// bounds on START_TIME let the planner prune partitions
+	private String getRangePredicate(LocalDateTime from) {
+		return from != null ? " AND START_TIME >= ? AND START_TIME < ?" : "";
+	}
+
+	private void setParameters(PreparedStatement statement, LocalDateTime cutoff, LocalDateTime from,
+			LocalDateTime to) throws Exception {
+		statement.setTimestamp(1, Timestamp.valueOf(cutoff));
+
+		if (from != null) {
+			statement.setTimestamp(2, Timestamp.valueOf(from));
+			statement.setTimestamp(3, Timestamp.valueOf(to));
+		}
+	}
+
+	private LocalDateTime getFirstStartTime(Connection connection, String table) throws Exception {
+		try (Statement statement = connection.createStatement();
+				ResultSet rs = statement.executeQuery("SELECT MIN(START_TIME) FROM " + table)) {
+			Timestamp first = rs.next() ? rs.getTimestamp(1) : null;
+			return getPartitionStart(first != null ? first.toLocalDateTime() : LocalDateTime.now());
+		}
+	}
+
+	private List<SchemaIndex> getEventIndexes() {
+		List<SchemaIndex> indexes = new ArrayList<>();
+
+		for (SchemaIndex index : SchemaIndex.values()) {
+			if (index.getTableName().equals(TABLE)) {
+				indexes.add(index);
+			}
+		}
+		return indexes;
+	}
+
+	private String toLiteral(LocalDateTime time) {
+		return "'" + LITERAL_FORMATTER.format(time) + "'";
+	}
+
+	private String queryString(Connection connection, String sql) throws Exception {
+		try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+			return rs.next() ? rs.getString(1) : null;
+		}
+	}
+
+	private void execute(Connection connection, String sql) throws Exception {
+		if (logger.isInfoEnabled()) {
+			logger.info("Executing: " + sql);
+		}
+
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+	}
+
+	private Connection getConnection() throws Exception {
+		return DriverManager.getConnection(jdbcUrl, userName, password);
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 5) {
+			System.out.println("Usage: EventPartitionManager <JDBC URL> <user name> <password> <weekly|monthly> "
+					+ "<partition|maintain> [retention days]");
+			return;
+		}
+
+		try {
+			EventPartitionManager manager = new EventPartitionManager(args[0], args[1], args[2],
+					PartitionInterval.valueOf(args[3].toUpperCase()));
+
+			if (args[4].equalsIgnoreCase("partition")) {
+				manager.partitionTable();
+			} else {
+				Duration retention = args.length > 5 ? Duration.ofDays(Long.parseLong(args[5]))
+						: Equipment.DEFAULT_RETENTION_PERIOD;
+				manager.maintain(retention);
+			}
+			System.out.println("Partitions: " + manager.getPartitionStarts());
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package org.point85.domain.persistence;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.point85.domain.collector.OeeEvent;
+import org.point85.domain.plant.Equipment;
+import org.point85.domain.plant.Material;
+import org.point85.domain.script.OeeEventType;
+
+/**
+ * Storage for OEE events used by the {@link PersistenceService} event methods
+ * in place of the OEE_EVENT table. Reference data stays in the database.
+ *
+ */
+public interface EventStore {
+	// insert new events and update saved ones
+	List<OeeEvent> saveEvents(List<OeeEvent> events) throws Exception;
+
+	// most recent event of this type by start time, or null
+	OeeEvent fetchLastEvent(Equipment equipment, OeeEventType type);
+
+	// events of this type starting in the period, null for an open end
+	List<OeeEvent> fetchEvents(Equipment equipment, OeeEventType type, OffsetDateTime from, OffsetDateTime to);
+
+	// availability events starting in the period
+	List<OeeEvent> fetchAvailability(Equipment equipment, OffsetDateTime from, OffsetDateTime to);
+
+	// production events of the material starting in the period
+	List<OeeEvent> fetchProduction(Equipment equipment, Material material, OffsetDateTime from, OffsetDateTime to);
+
+	// material changes active in the period, for any material if null
+	List<OeeEvent> fetchSetups(Equipment equipment, Material material, OffsetDateTime from, OffsetDateTime to);
+
+	// stream events of this type starting in the period
+	long streamEvents(Equipment equipment, OeeEventType type, OffsetDateTime from, OffsetDateTime to,
+			Consumer<OeeEvent> consumer);
+
+	// delete events older than the cutoff, keeping active material changes
+	int purge(Equipment equipment, OffsetDateTime cutoff) throws Exception;
+
+	void close();
+}
@@ -0,0 +1,8 @@
+package org.point85.domain.persistence;
+
+import org.point85.domain.plant.KeyedObject;
+
+public interface PersistenceListener {
+	// called after the transaction saving or deleting the object has committed
+	void onPersistenceChange(KeyedObject keyed);
+}
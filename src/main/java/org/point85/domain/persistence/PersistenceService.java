@@ -1,16 +1,28 @@
 package org.point85.domain.persistence;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
@@ -20,9 +32,14 @@ import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.spi.PersistenceUnitInfo;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.hibernate.integrator.spi.Integrator;
 import org.hibernate.jpa.HibernatePersistenceProvider;
 import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.stat.Statistics;
 import org.point85.domain.collector.CollectorDataSource;
 import org.point85.domain.collector.CollectorState;
 import org.point85.domain.collector.DataCollector;
@@ -44,6 +61,7 @@ import org.point85.domain.plant.Equipment;
 import org.point85.domain.plant.EquipmentMaterial;
 import org.point85.domain.plant.KeyedObject;
 import org.point85.domain.plant.Material;
+import org.point85.domain.plant.NamedObject;
 import org.point85.domain.plant.PlantEntity;
 import org.point85.domain.plant.ProductionLine;
 import org.point85.domain.plant.Reason;
@@ -80,9 +98,87 @@ public final class PersistenceService {
 	// time in sec to wait for EntityManagerFactory creation to complete
 	private static final int EMF_CREATION_TO_SEC = 30;
 
+	// system property for the number of statements in a JDBC batch
+	public static final String JDBC_BATCH_SIZE_PROPERTY = "jdbc_batch_size";
+
+	// default JDBC batch size
+	public static final int DEFAULT_JDBC_BATCH_SIZE = 50;
+
+	// system property for the number of rows fetched per round trip when
+	// streaming
+	public static final String JDBC_FETCH_SIZE_PROPERTY = "jdbc_fetch_size";
+
+	// default JDBC fetch size
+	public static final int DEFAULT_JDBC_FETCH_SIZE = 500;
+
+	// system properties for the connection pool sizes of the primary and read
+	// replica databases
+	public static final String PRIMARY_POOL_SIZE_PROPERTY = "primary_pool_size";
+	public static final String REPLICA_POOL_SIZE_PROPERTY = "replica_pool_size";
+
+	// default maximum connection pool size
+	public static final int DEFAULT_POOL_SIZE = 20;
+
+	// system property for the JDBC URL of a read replica for reporting queries
+	public static final String REPLICA_URL_PROPERTY = "replica_jdbc_url";
+
+	// persistence unit name for the read replica
+	private static final String REPLICA_PU_NAME = "OEE_REPLICA";
+
+	// named queries on the event resolution and OEE calculation paths,
+	// registered by warmUp()
+	private static final String ENTITY_BY_NAME = "ENTITY.ByName";
+	private static final String ENTITY_BY_NAME_JPQL = "SELECT ent FROM PlantEntity ent WHERE ent.name = :name";
+	private static final String RESOLVER_ALL = "RESOLVER.All";
+	private static final String RESOLVER_ALL_JPQL = "SELECT er FROM EventResolver er";
+	private static final String RESOLVER_BY_HOST = "RESOLVER.ByHost";
+	private static final String RESOLVER_BY_HOST_JPQL = "SELECT er FROM EventResolver er JOIN FETCH er.collector "
+			+ "LEFT JOIN FETCH er.dataSource WHERE er.collector.host IN :names AND er.collector.state IN :states";
+	private static final String MATL_ALL = "MATL.All";
+	private static final String MATL_ALL_JPQL = "SELECT matl FROM Material matl";
+	private static final String MATL_BY_NAME = "MATL.ByName";
+	private static final String MATL_BY_NAME_JPQL = "SELECT matl FROM Material matl WHERE matl.name = :name";
+	private static final String REASON_ALL = "REASON.All";
+	private static final String REASON_ALL_JPQL = "SELECT reason FROM Reason reason";
+	private static final String REASON_BY_NAME = "REASON.ByName";
+	private static final String REASON_BY_NAME_JPQL = "SELECT reason FROM Reason reason WHERE reason.name = :name";
+	private static final String UOM_BY_SYMBOL = "UOM.BySymbol";
+	private static final String UOM_BY_SYMBOL_JPQL = "SELECT uom FROM UnitOfMeasure uom WHERE uom.symbol = :symbol";
+	private static final String LAST_EVENT = "Event.Last";
+	private static final String LAST_EVENT_JPQL = "SELECT e FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType = :type ORDER BY e.startTime.localDateTime DESC";
+	private static final String PURGE_OEE = "Oee.Purge";
+	private static final String PURGE_OEE_JPQL = "DELETE FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType != :type AND e.startTime.localDateTime < :cutoff";
+	private static final String PURGE_MATL = "Matl.Purge";
+	private static final String PURGE_MATL_JPQL = "DELETE FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType = :type AND e.startTime.localDateTime < :cutoff "
+			+ "AND e.endTime.localDateTime IS NOT NULL AND e.endTime.localDateTime < :cutoff";
+	private static final String AVAIL_RECORDS = "Availability.FromTo";
+	private static final String AVAIL_RECORDS_JPQL = "SELECT e FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType = :type "
+			+ "AND (e.startTime.localDateTime >= :from AND e.startTime.localDateTime < :to) ORDER BY e.startTime.localDateTime ASC";
+	private static final String PROD_RECORDS = "Production.FromTo";
+	private static final String PROD_RECORDS_JPQL = "SELECT e FROM OeeEvent e WHERE e.equipment = :equipment "
+			+ "AND e.eventType IN :types AND (e.startTime.localDateTime >= :from AND e.startTime.localDateTime < :to) AND e.material = :material ORDER BY e.startTime.localDateTime ASC";
+
+	private static final String[][] WARM_UP_QUERIES = {
+			{ ENTITY_BY_NAME, ENTITY_BY_NAME_JPQL },
+			{ RESOLVER_ALL, RESOLVER_ALL_JPQL },
+			{ RESOLVER_BY_HOST, RESOLVER_BY_HOST_JPQL },
+			{ MATL_ALL, MATL_ALL_JPQL },
+			{ MATL_BY_NAME, MATL_BY_NAME_JPQL },
+			{ REASON_ALL, REASON_ALL_JPQL },
+			{ REASON_BY_NAME, REASON_BY_NAME_JPQL },
+			{ UOM_BY_SYMBOL, UOM_BY_SYMBOL_JPQL },
+			{ LAST_EVENT, LAST_EVENT_JPQL },
+			{ PURGE_OEE, PURGE_OEE_JPQL },
+			{ PURGE_MATL, PURGE_MATL_JPQL },
+			{ AVAIL_RECORDS, AVAIL_RECORDS_JPQL },
+			{ PROD_RECORDS, PROD_RECORDS_JPQL } };
+
 	// entity manager factory
 	private EntityManagerFactory emf;
 
+	// entity manager factory for reporting queries on a read replica
+	private volatile EntityManagerFactory replicaEmf;
+
 	// singleton service
 	private static PersistenceService persistenceService;
 
@@ -92,6 +188,30 @@ public final class PersistenceService {
 	// map of named queries
 	private final Map<String, Boolean> namedQueryMap;
 
+	// map of named queries on the read replica
+	private final Map<String, Boolean> replicaNamedQueryMap = new ConcurrentHashMap<>();
+
+	// listeners for saved and deleted objects
+	private final List<PersistenceListener> persistenceListeners = new CopyOnWriteArrayList<>();
+
+	// cache of reference entities and queries
+	private final ReferenceCache referenceCache = new ReferenceCache(this);
+
+	// unit of work in progress on each thread
+	private final ThreadLocal<UnitOfWork> currentUnitOfWork = new ThreadLocal<>();
+
+	// optional store for OEE events in place of the OEE_EVENT table
+	private volatile EventStore eventStore;
+
+	// JDBC batched inserts of new OEE events
+	private final EventBatchInserter eventInserter = new EventBatchInserter();
+
+	// type of the primary database
+	private volatile DatabaseType databaseType;
+
+	// whether the OEE_EVENT table is partitioned, checked once
+	private volatile Boolean eventTablePartitioned;
+
 	// cached JDBC connection info
 	private static String jdbcConnection;
 	private static String jdbcUserName;
@@ -99,6 +219,7 @@ public final class PersistenceService {
 
 	private PersistenceService() {
 		namedQueryMap = new ConcurrentHashMap<>();
+		addPersistenceListener(referenceCache);
 	}
 
 	public synchronized static PersistenceService instance() {
@@ -112,6 +233,38 @@ public final class PersistenceService {
 		return new PersistenceService();
 	}
 
+	public void addPersistenceListener(PersistenceListener listener) {
+		if (!persistenceListeners.contains(listener)) {
+			persistenceListeners.add(listener);
+		}
+	}
+
+	public void removePersistenceListener(PersistenceListener listener) {
+		persistenceListeners.remove(listener);
+	}
+
+	public ReferenceCache getReferenceCache() {
+		return referenceCache;
+	}
+
+	void notifyPersistenceListeners(KeyedObject keyed) {
+		UnitOfWork work = currentUnitOfWork.get();
+
+		if (work != null) {
+			// notify after the unit of work commits
+			work.addChange(keyed);
+			return;
+		}
+
+		for (PersistenceListener listener : persistenceListeners) {
+			try {
+				listener.onPersistenceChange(keyed);
+			} catch (Exception e) {
+				getLogger().error("Persistence listener failed: " + e.getMessage());
+			}
+		}
+	}
+
 	private Logger getLogger() {
 		if (logger == null) {
 			logger = LoggerFactory.getLogger(PersistenceService.class);
@@ -125,6 +278,24 @@ public final class PersistenceService {
 		jdbcUserName = userName;
 		jdbcPassword = password;
 
+		try {
+			databaseType = DatabaseType.fromJdbcUrl(jdbcUrl);
+		} catch (Exception e) {
+			// events are then inserted by Hibernate
+			databaseType = null;
+		}
+
+		// optional local event store
+		String storeDir = System.getProperty(ColumnarEventStore.DIRECTORY_PROPERTY);
+
+		if (storeDir != null && eventStore == null) {
+			try {
+				eventStore = new ColumnarEventStore(Paths.get(storeDir));
+			} catch (Exception e) {
+				getLogger().error("Unable to open the event store in " + storeDir + ": " + e.getMessage());
+			}
+		}
+
 		// create EM on a a background thread
 		emfFuture = CompletableFuture.supplyAsync(() -> {
 			try {
@@ -133,6 +304,13 @@ public final class PersistenceService {
 
 				// cache base UOMs
 				primeUomCache();
+
+				// optional read replica with the same credentials
+				String replicaUrl = System.getProperty(REPLICA_URL_PROPERTY);
+
+				if (replicaUrl != null) {
+					initializeReplica(replicaUrl, userName, password);
+				}
 			} catch (Exception e) {
 				getLogger().error(e.getMessage());
 			}
@@ -147,10 +325,110 @@ public final class PersistenceService {
 		fetchUomByUnit(Unit.CELSIUS);
 	}
 
+	/**
+	 * Connect to a read-only replica of the OEE database. Reporting queries are
+	 * executed on the replica while collector writes stay on the primary database.
+	 * 
+	 * @param jdbcUrl  JDBC URL of the replica
+	 * @param userName User name
+	 * @param password Password
+	 * @throws Exception Exception
+	 */
+	public void initializeReplica(String jdbcUrl, String userName, String password) throws Exception {
+		Properties properties = createProperties(jdbcUrl, userName, password,
+				Integer.getInteger(REPLICA_POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE));
+
+		// read-only connections
+		properties.put("hibernate.hikari.readOnly", "true");
+		properties.put("hibernate.hikari.poolName", REPLICA_PU_NAME);
+
+		PersistenceUnitInfo persistenceUnitInfo = new PersistenceUnitInfoImpl(REPLICA_PU_NAME, getEntityClassNames(),
+				properties);
+
+		EntityManagerFactory factory = new HibernatePersistenceProvider()
+				.createContainerEntityManagerFactory(persistenceUnitInfo, new HashMap<>());
+
+		replicaNamedQueryMap.clear();
+		replicaEmf = factory;
+
+		if (getLogger().isInfoEnabled()) {
+			getLogger().info("Reporting queries are routed to replica " + jdbcUrl);
+		}
+	}
+
+	/**
+	 * Warm up the persistence layer on a background thread. This waits for the
+	 * EntityManagerFactory and its connection pool, registers the named queries on
+	 * the event resolution and OEE calculation paths, and loads the event
+	 * resolvers, reasons and materials into the reference cache.
+	 * 
+	 * @return Future with the warm-up time in milliseconds
+	 */
+	public CompletableFuture<Long> warmUp() {
+		return CompletableFuture.supplyAsync(() -> {
+			long start = System.currentTimeMillis();
+
+			try {
+				if (getEntityManagerFactory() == null) {
+					throw new Exception("The EntityManagerFactory has not been created.");
+				}
+
+				// compile the JPQL
+				for (String[] namedQuery : WARM_UP_QUERIES) {
+					if (namedQueryMap.get(namedQuery[0]) == null) {
+						createNamedQuery(namedQuery[0], namedQuery[1]);
+					}
+				}
+
+				// load the reference cache
+				fetchEventResolvers();
+
+				for (Reason reason : referenceCache.fetchLoaded(() -> fetchAllReasons())) {
+					referenceCache.put(Reason.class, REASON_BY_NAME, reason.getName(), reason);
+				}
+
+				for (Material material : referenceCache.fetchLoaded(() -> fetchAllMaterials())) {
+					referenceCache.put(Material.class, MATL_BY_NAME, material.getName(), material);
+				}
+			} catch (Exception e) {
+				getLogger().error("Unable to warm up the persistence service: " + e.getMessage());
+			}
+
+			long millis = System.currentTimeMillis() - start;
+
+			if (getLogger().isInfoEnabled()) {
+				getLogger().info("Persistence warm-up finished in " + millis + " msec.  Reference cache: " + referenceCache);
+			}
+			return millis;
+		});
+	}
+
+	public boolean isReplicaConnected() {
+		return replicaEmf != null;
+	}
+
+	public EventStore getEventStore() {
+		return eventStore;
+	}
+
+	// save and fetch OEE events in this store instead of the database
+	public void setEventStore(EventStore store) {
+		this.eventStore = store;
+	}
+
 	public void close() {
+		if (eventStore != null) {
+			eventStore.close();
+			eventStore = null;
+		}
+
 		if (emf != null && emf.isOpen()) {
 			emf.close();
 		}
+
+		if (replicaEmf != null && replicaEmf.isOpen()) {
+			replicaEmf.close();
+		}
 	}
 
 	private EntityManagerFactory getEntityManagerFactory() {
@@ -173,9 +451,123 @@ public final class PersistenceService {
 		return emf;
 	}
 
-	// get the EntityManager
+	// get the EntityManager, shared by the unit of work on this thread if any
 	public EntityManager getEntityManager() {
-		return getEntityManagerFactory().createEntityManager();
+		UnitOfWork work = currentUnitOfWork.get();
+		return work != null ? work.getEntityManager() : getEntityManagerFactory().createEntityManager();
+	}
+
+	// get the EntityManager for reporting queries, on the replica if connected
+	public EntityManager getReportingEntityManager() {
+		EntityManagerFactory factory = replicaEmf;
+		return factory != null ? factory.createEntityManager() : getEntityManagerFactory().createEntityManager();
+	}
+
+	/**
+	 * Begin a unit of work on the calling thread, or join the one in progress. All
+	 * reads and writes on this thread share its EntityManager and transaction
+	 * until it is closed.
+	 * 
+	 * @return {@link UnitOfWork}
+	 */
+	public UnitOfWork beginUnitOfWork() {
+		UnitOfWork work = currentUnitOfWork.get();
+
+		if (work != null) {
+			return work.join();
+		}
+
+		work = new UnitOfWork(this, getEntityManagerFactory().createEntityManager());
+		currentUnitOfWork.set(work);
+		return work;
+	}
+
+	// fetch in a unit of work of its own, closed afterwards even if one is in
+	// progress on this thread, so that the fetched entities are detached
+	<T, E extends Exception> T fetchDetached(ReferenceCache.Fetcher<T, E> fetcher) throws E {
+		UnitOfWork suspended = currentUnitOfWork.get();
+		currentUnitOfWork.remove();
+
+		try (UnitOfWork work = beginUnitOfWork()) {
+			T value = fetcher.fetch();
+			work.commit();
+			return value;
+		} finally {
+			if (suspended != null) {
+				currentUnitOfWork.set(suspended);
+			}
+		}
+	}
+
+	// the unit of work in progress on the calling thread, or null
+	public UnitOfWork getUnitOfWork() {
+		return currentUnitOfWork.get();
+	}
+
+	void endUnitOfWork(UnitOfWork work) {
+		if (currentUnitOfWork.get() == work) {
+			currentUnitOfWork.remove();
+		}
+	}
+
+	/**
+	 * Get the number of EntityManagers that have been opened but not closed. The
+	 * hibernate.generate_statistics property must be set to true.
+	 * 
+	 * @return Open session count, or -1 if statistics are not enabled
+	 */
+	public long getOpenSessionCount() {
+		Statistics statistics = getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+		if (!statistics.isStatisticsEnabled()) {
+			return -1;
+		}
+		return statistics.getSessionOpenCount() - statistics.getSessionCloseCount();
+	}
+
+	// execute the work in the unit of work on this thread, or else in its own
+	// transaction
+	private <T, E extends Exception> T executeInTransaction(TransactionWork<T, E> work) throws E {
+		UnitOfWork unitOfWork = currentUnitOfWork.get();
+
+		if (unitOfWork != null) {
+			try {
+				return work.execute(unitOfWork.getEntityManager());
+			} catch (Exception e) {
+				unitOfWork.setRollbackOnly();
+				throw e;
+			}
+		}
+
+		EntityManager em = getEntityManagerFactory().createEntityManager();
+		EntityTransaction txn = null;
+
+		try {
+			// start transaction
+			txn = em.getTransaction();
+			txn.begin();
+
+			T result = work.execute(em);
+
+			// commit transaction
+			txn.commit();
+
+			return result;
+		} catch (Exception e) {
+			// roll back transaction
+			if (txn != null && txn.isActive()) {
+				txn.rollback();
+			}
+			throw e;
+		} finally {
+			em.close();
+		}
+	}
+
+	// database work in a transaction
+	@FunctionalInterface
+	private interface TransactionWork<T, E extends Exception> {
+		T execute(EntityManager em) throws E;
 	}
 
 	public List<String> fetchPlantEntityNames() {
@@ -190,10 +582,12 @@ public final class PersistenceService {
 	}
 
 	public PlantEntity fetchPlantEntityByName(String name) {
-		final String ENTITY_BY_NAME = "ENTITY.Names";
+		return referenceCache.get(PlantEntity.class, ENTITY_BY_NAME, name, () -> queryPlantEntityByName(name));
+	}
 
+	private PlantEntity queryPlantEntityByName(String name) {
 		if (namedQueryMap.get(ENTITY_BY_NAME) == null) {
-			createNamedQuery(ENTITY_BY_NAME, "SELECT ent FROM PlantEntity ent WHERE ent.name = :name");
+			createNamedQuery(ENTITY_BY_NAME, ENTITY_BY_NAME_JPQL);
 		}
 
 		PlantEntity entity = null;
@@ -209,10 +603,12 @@ public final class PersistenceService {
 	}
 
 	public List<EventResolver> fetchEventResolvers() {
-		final String RESOLVER_ALL = "RESOLVER.All";
+		return referenceCache.get(EventResolver.class, RESOLVER_ALL, null, () -> queryEventResolvers());
+	}
 
+	private List<EventResolver> queryEventResolvers() {
 		if (namedQueryMap.get(RESOLVER_ALL) == null) {
-			createNamedQuery(RESOLVER_ALL, "SELECT er FROM EventResolver er");
+			createNamedQuery(RESOLVER_ALL, RESOLVER_ALL_JPQL);
 		}
 
 		TypedQuery<EventResolver> query = getEntityManager().createNamedQuery(RESOLVER_ALL, EventResolver.class);
@@ -220,6 +616,11 @@ public final class PersistenceService {
 	}
 
 	public List<String> fetchResolverSourceIds(String equipmentName, DataSourceType sourceType) {
+		return referenceCache.get(EventResolver.class, "EQUIP.SourceIds", equipmentName + "|" + sourceType,
+				() -> queryResolverSourceIds(equipmentName, sourceType));
+	}
+
+	private List<String> queryResolverSourceIds(String equipmentName, DataSourceType sourceType) {
 		final String EQUIPMENT_SOURCE_IDS = "EQUIP.SourceIds";
 
 		if (namedQueryMap.get(EQUIPMENT_SOURCE_IDS) == null) {
@@ -256,60 +657,108 @@ public final class PersistenceService {
 
 	// save the Persistent Object to the database
 	public KeyedObject save(KeyedObject keyed) throws Exception {
-		EntityManager em = getEntityManager();
-		EntityTransaction txn = null;
+		// merge this entity into the PU and save
+		KeyedObject merged = executeInTransaction(em -> em.merge(keyed));
 
-		try {
-			txn = em.getTransaction();
-			txn.begin();
+		notifyPersistenceListeners(merged);
 
-			// merge this entity into the PU and save
-			KeyedObject merged = em.merge(keyed);
+		return merged;
+	}
 
-			// commit transaction
-			txn.commit();
+	// save the Persistent Object to the database
+	public List<KeyedObject> save(List<KeyedObject> objects) throws Exception {
+		List<KeyedObject> mergedObjects = executeInTransaction(em -> {
+			List<KeyedObject> merged = new ArrayList<>();
 
-			return merged;
-		} catch (Exception e) {
-			// roll back transaction
-			if (txn != null && txn.isActive()) {
-				txn.rollback();
+			// merge this entity into the PU and save
+			for (KeyedObject object : objects) {
+				merged.add(em.merge(object));
 			}
-			throw e;
-		} finally {
-			em.close();
+			return merged;
+		});
+
+		for (KeyedObject merged : mergedObjects) {
+			notifyPersistenceListeners(merged);
 		}
+
+		return mergedObjects;
 	}
 
-	// save the Persistent Object to the database
-	public List<KeyedObject> save(List<KeyedObject> objects) throws Exception {
-		EntityManager em = getEntityManager();
-		EntityTransaction txn = null;
-		List<KeyedObject> mergedObjects = new ArrayList<>();
+	// save OEE events, inserting new ones without first selecting them. Hibernate
+	// does not batch inserts with IDENTITY keys, so new events are inserted in
+	// JDBC batches where the driver returns the keys of a batch.
+	public List<OeeEvent> saveEvents(List<OeeEvent> events) throws Exception {
+		if (eventStore != null) {
+			List<OeeEvent> storedEvents = eventStore.saveEvents(events);
 
-		try {
-			txn = em.getTransaction();
-			txn.begin();
+			for (OeeEvent stored : storedEvents) {
+				notifyPersistenceListeners(stored);
+			}
+			return storedEvents;
+		}
 
-			// merge this entity into the PU and save
-			for (KeyedObject object : objects) {
-				KeyedObject merged = em.merge(object);
-				mergedObjects.add(merged);
+		List<OeeEvent> savedEvents = new ArrayList<>(events.size());
+		int batchSize = getJdbcBatchSize();
+
+		executeInTransaction(em -> {
+			// clearing would detach the entities of a shared unit of work
+			boolean clear = getUnitOfWork() == null;
+
+			// new events inserted in JDBC batches
+			Set<OeeEvent> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+
+			if (EventBatchInserter.isSupported(databaseType)) {
+				List<OeeEvent> newEvents = new ArrayList<>();
+
+				for (OeeEvent event : events) {
+					if (event.getKey() == null) {
+						newEvents.add(event);
+					}
+				}
+
+				if (!newEvents.isEmpty()) {
+					// pending changes of the unit of work go first
+					em.flush();
+					em.unwrap(Session.class).doWork(
+							connection -> eventInserter.insert(connection, newEvents, batchSize));
+					savedEvents.addAll(newEvents);
+					inserted.addAll(newEvents);
+				}
 			}
 
-			// commit transaction
-			txn.commit();
+			int count = 0;
+			for (OeeEvent event : events) {
+				if (inserted.contains(event)) {
+					continue;
+				} else if (event.getKey() == null) {
+					em.persist(event);
+					savedEvents.add(event);
+				} else {
+					savedEvents.add(em.merge(event));
+				}
 
-			return mergedObjects;
-		} catch (Exception e) {
-			// roll back transaction
-			if (txn != null && txn.isActive()) {
-				txn.rollback();
+				// flush each JDBC batch and keep the context small
+				if (++count % batchSize == 0) {
+					em.flush();
+
+					if (clear) {
+						em.clear();
+					}
+				}
 			}
-			throw e;
-		} finally {
-			em.close();
+			return count;
+		});
+
+		for (OeeEvent saved : savedEvents) {
+			notifyPersistenceListeners(saved);
 		}
+
+		return savedEvents;
+	}
+
+	private static int getJdbcBatchSize() {
+		int size = Integer.getInteger(JDBC_BATCH_SIZE_PROPERTY, DEFAULT_JDBC_BATCH_SIZE);
+		return size > 0 ? size : DEFAULT_JDBC_BATCH_SIZE;
 	}
 
 	public void checkReferences(KeyedObject keyed) throws Exception {
@@ -411,29 +860,14 @@ public final class PersistenceService {
 	public void delete(KeyedObject keyed) throws Exception {
 		checkReferences(keyed);
 
-		EntityManager em = getEntityManager();
-		EntityTransaction txn = null;
-
-		try {
-			// start transaction
-			txn = em.getTransaction();
-			txn.begin();
-
+		executeInTransaction(em -> {
 			// delete
 			Object po = em.find(keyed.getClass(), keyed.getKey());
 			em.remove(po);
+			return po;
+		});
 
-			// commit transaction
-			txn.commit();
-		} catch (Exception e) {
-			// roll back transaction
-			if (txn != null && txn.isActive()) {
-				txn.rollback();
-			}
-			throw e;
-		} finally {
-			em.close();
-		}
+		notifyPersistenceListeners(keyed);
 	}
 
 	// all entities
@@ -449,9 +883,44 @@ public final class PersistenceService {
 	}
 
 	private void createNamedQuery(String name, String jsql) {
-		Query query = getEntityManager().createQuery(jsql);
-		getEntityManagerFactory().addNamedQuery(name, query);
-		namedQueryMap.put(name, true);
+		EntityManager em = getEntityManagerFactory().createEntityManager();
+
+		try {
+			Query query = em.createQuery(jsql);
+			getEntityManagerFactory().addNamedQuery(name, query);
+			namedQueryMap.put(name, true);
+		} finally {
+			em.close();
+		}
+	}
+
+	// run a reporting query in its own EntityManager, closed when it completes
+	private <T> T executeReportingQuery(Function<EntityManager, T> query) {
+		EntityManager em = getReportingEntityManager();
+
+		try {
+			return query.apply(em);
+		} finally {
+			em.close();
+		}
+	}
+
+	// named query for reporting, on the replica if connected
+	private <T> TypedQuery<T> createReportingQuery(EntityManager em, String name, String jsql, Class<T> resultClass) {
+		EntityManagerFactory factory = replicaEmf;
+
+		if (factory == null) {
+			if (namedQueryMap.get(name) == null) {
+				createNamedQuery(name, jsql);
+			}
+			return em.createNamedQuery(name, resultClass);
+		}
+
+		if (replicaNamedQueryMap.get(name) == null) {
+			factory.addNamedQuery(name, em.createQuery(jsql));
+			replicaNamedQueryMap.put(name, true);
+		}
+		return em.createNamedQuery(name, resultClass);
 	}
 
 	// top-level plant entities
@@ -496,11 +965,14 @@ public final class PersistenceService {
 
 	public List<EventResolver> fetchEventResolversByHost(List<String> hostNames, List<CollectorState> states)
 			throws Exception {
-		final String RESOLVER_BY_HOST = "RESOLVER.ByHost";
+		return referenceCache.get(EventResolver.class, RESOLVER_BY_HOST, hostNames + "|" + states,
+				() -> queryEventResolversByHost(hostNames, states));
+	}
 
+	private List<EventResolver> queryEventResolversByHost(List<String> hostNames, List<CollectorState> states)
+			throws Exception {
 		if (namedQueryMap.get(RESOLVER_BY_HOST) == null) {
-			createNamedQuery(RESOLVER_BY_HOST,
-					"SELECT er FROM EventResolver er WHERE er.collector.host IN :names AND er.collector.state IN :states");
+			createNamedQuery(RESOLVER_BY_HOST, RESOLVER_BY_HOST_JPQL);
 		}
 
 		TypedQuery<EventResolver> query = getEntityManager().createNamedQuery(RESOLVER_BY_HOST, EventResolver.class);
@@ -510,6 +982,11 @@ public final class PersistenceService {
 	}
 
 	public List<EventResolver> fetchEventResolversByCollector(List<String> definitionNames) throws Exception {
+		return referenceCache.get(EventResolver.class, "RESOLVER.ByCollector", definitionNames,
+				() -> queryEventResolversByCollector(definitionNames));
+	}
+
+	private List<EventResolver> queryEventResolversByCollector(List<String> definitionNames) throws Exception {
 		final String RESOLVER_BY_COLLECTOR = "RESOLVER.ByCollector";
 
 		if (namedQueryMap.get(RESOLVER_BY_COLLECTOR) == null) {
@@ -547,10 +1024,8 @@ public final class PersistenceService {
 	}
 
 	public List<Material> fetchAllMaterials() {
-		final String MATL_ALL = "MATL.All";
-
 		if (namedQueryMap.get(MATL_ALL) == null) {
-			createNamedQuery(MATL_ALL, "SELECT matl FROM Material matl");
+			createNamedQuery(MATL_ALL, MATL_ALL_JPQL);
 		}
 
 		TypedQuery<Material> query = getEntityManager().createNamedQuery(MATL_ALL, Material.class);
@@ -570,10 +1045,12 @@ public final class PersistenceService {
 	}
 
 	public Material fetchMaterialByName(String name) {
-		final String MATL_BY_NAME = "MATL.ByName";
+		return referenceCache.get(Material.class, MATL_BY_NAME, name, () -> queryMaterialByName(name));
+	}
 
+	private Material queryMaterialByName(String name) {
 		if (namedQueryMap.get(MATL_BY_NAME) == null) {
-			createNamedQuery(MATL_BY_NAME, "SELECT matl FROM Material matl WHERE matl.name = :name");
+			createNamedQuery(MATL_BY_NAME, MATL_BY_NAME_JPQL);
 		}
 
 		Material material = null;
@@ -588,14 +1065,20 @@ public final class PersistenceService {
 	}
 
 	public Material fetchMaterialByKey(Long key) throws Exception {
+		return referenceCache.get(Material.class, "MATL.ByKey", key, () -> queryMaterialByKey(key));
+	}
+
+	private Material queryMaterialByKey(Long key) throws Exception {
 		return getEntityManager().find(Material.class, key);
 	}
 
 	public Reason fetchReasonByName(String name) {
-		final String REASON_BY_NAME = "REASON.ByName";
+		return referenceCache.get(Reason.class, REASON_BY_NAME, name, () -> queryReasonByName(name));
+	}
 
+	private Reason queryReasonByName(String name) {
 		if (namedQueryMap.get(REASON_BY_NAME) == null) {
-			createNamedQuery(REASON_BY_NAME, "SELECT reason FROM Reason reason WHERE reason.name = :name");
+			createNamedQuery(REASON_BY_NAME, REASON_BY_NAME_JPQL);
 		}
 
 		Reason reason = null;
@@ -611,14 +1094,16 @@ public final class PersistenceService {
 	}
 
 	public Reason fetchReasonByKey(Long key) throws Exception {
+		return referenceCache.get(Reason.class, "REASON.ByKey", key, () -> queryReasonByKey(key));
+	}
+
+	private Reason queryReasonByKey(Long key) throws Exception {
 		return getEntityManager().find(Reason.class, key);
 	}
 
 	public List<Reason> fetchAllReasons() {
-		final String REASON_ALL = "REASON.All";
-
 		if (namedQueryMap.get(REASON_ALL) == null) {
-			createNamedQuery(REASON_ALL, "SELECT reason FROM Reason reason");
+			createNamedQuery(REASON_ALL, REASON_ALL_JPQL);
 		}
 
 		TypedQuery<Reason> query = getEntityManager().createNamedQuery(REASON_ALL, Reason.class);
@@ -687,6 +1172,10 @@ public final class PersistenceService {
 	}
 
 	public WorkSchedule fetchScheduleByKey(Long key) throws Exception {
+		return referenceCache.get(WorkSchedule.class, "WS.ByKey", key, () -> queryScheduleByKey(key));
+	}
+
+	private WorkSchedule queryScheduleByKey(Long key) throws Exception {
 		return getEntityManager().find(WorkSchedule.class, key);
 	}
 
@@ -713,6 +1202,10 @@ public final class PersistenceService {
 	}
 
 	public WorkSchedule fetchWorkScheduleByName(String name) {
+		return referenceCache.get(WorkSchedule.class, "WS.ByName", name, () -> queryWorkScheduleByName(name));
+	}
+
+	private WorkSchedule queryWorkScheduleByName(String name) {
 		final String WS_BY_NAME = "WS.ByName";
 
 		if (namedQueryMap.get(WS_BY_NAME) == null) {
@@ -761,6 +1254,10 @@ public final class PersistenceService {
 	}
 
 	public UnitOfMeasure fetchUomByKey(Long key) throws Exception {
+		return referenceCache.get(UnitOfMeasure.class, "UOM.ByKey", key, () -> queryUomByKey(key));
+	}
+
+	private UnitOfMeasure queryUomByKey(Long key) throws Exception {
 		UnitOfMeasure uom = getEntityManager().find(UnitOfMeasure.class, key);
 
 		// cache it
@@ -817,10 +1314,12 @@ public final class PersistenceService {
 
 	// query for UOM based on its unique symbol
 	public UnitOfMeasure fetchUomBySymbol(String symbol) throws Exception {
-		final String UOM_BY_SYMBOL = "UOM.BySymbol";
+		return referenceCache.get(UnitOfMeasure.class, UOM_BY_SYMBOL, symbol, () -> queryUomBySymbol(symbol));
+	}
 
+	private UnitOfMeasure queryUomBySymbol(String symbol) throws Exception {
 		if (namedQueryMap.get(UOM_BY_SYMBOL) == null) {
-			createNamedQuery(UOM_BY_SYMBOL, "SELECT uom FROM UnitOfMeasure uom WHERE uom.symbol = :symbol");
+			createNamedQuery(UOM_BY_SYMBOL, UOM_BY_SYMBOL_JPQL);
 		}
 
 		TypedQuery<UnitOfMeasure> query = getEntityManager().createNamedQuery(UOM_BY_SYMBOL, UnitOfMeasure.class);
@@ -860,6 +1359,10 @@ public final class PersistenceService {
 
 	// fetch UOM by its enumeration
 	public UnitOfMeasure fetchUomByUnit(Unit unit) throws Exception {
+		return referenceCache.get(UnitOfMeasure.class, "UOM.ByUnit", unit, () -> queryUomByUnit(unit));
+	}
+
+	private UnitOfMeasure queryUomByUnit(Unit unit) throws Exception {
 		final String UOM_BY_UNIT = "UOM.ByUnit";
 
 		if (namedQueryMap.get(UOM_BY_UNIT) == null) {
@@ -1054,7 +1557,7 @@ public final class PersistenceService {
 
 		// create the PU info
 		PersistenceUnitInfo persistenceUnitInfo = new PersistenceUnitInfoImpl(PU_NAME, getEntityClassNames(),
-				createProperties(jdbcUrl, userName, password));
+				createProperties(jdbcUrl, userName, password, getPrimaryPoolSize()));
 
 		// add any mapping files
 		String[] fileNames = getMappingFileNames();
@@ -1079,7 +1582,8 @@ public final class PersistenceService {
 	public void connectToDatabaseEventServer(String jdbcUrl, String userName, String password) throws Exception {
 		// create the PU info
 		PersistenceUnitInfo persistenceUnitInfo = new PersistenceUnitInfoImpl(DB_PU_NAME,
-				getDatabaseEventEntityClassNames(), createProperties(jdbcUrl, userName, password));
+				getDatabaseEventEntityClassNames(),
+				createProperties(jdbcUrl, userName, password, getPrimaryPoolSize()));
 
 		// add any mapping files
 		String[] fileNames = getMappingFileNames();
@@ -1132,40 +1636,50 @@ public final class PersistenceService {
 		return Arrays.asList(getEntityClasses()).stream().map(Class::getName).collect(Collectors.toList());
 	}
 
-	private Properties createProperties(String jdbcUrl, String userName, String password) throws Exception {
-		DatabaseType databaseType = null;
+	private int getPrimaryPoolSize() {
+		return Integer.getInteger(PRIMARY_POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE);
+	}
 
-		if (jdbcUrl.contains("sqlserver")) {
-			databaseType = DatabaseType.MSSQL;
-		} else if (jdbcUrl.contains("oracle")) {
-			databaseType = DatabaseType.ORACLE;
-		} else if (jdbcUrl.contains("hsqldb")) {
-			databaseType = DatabaseType.HSQL;
-		} else if (jdbcUrl.contains("mysql")) {
-			databaseType = DatabaseType.MYSQL;
-		} else if (jdbcUrl.contains("postgresql")) {
-			databaseType = DatabaseType.POSTGRES;
-		} else {
-			throw new Exception("Unrecognized JDBC URL: " + jdbcUrl);
-		}
+	private Properties createProperties(String jdbcUrl, String userName, String password, int poolSize)
+			throws Exception {
+		DatabaseType databaseType = DatabaseType.fromJdbcUrl(jdbcUrl);
 
 		Properties properties = new Properties();
 
 		if (databaseType.equals(DatabaseType.MSSQL)) {
 			properties.put("hibernate.dialect", "org.hibernate.dialect.SQLServer2012Dialect");
 			properties.put("javax.persistence.jdbc.driver", "com.microsoft.sqlserver.jdbc.SQLServerDriver");
+
+			// reuse prepared statement handles
+			properties.put("hibernate.hikari.dataSource.disableStatementPooling", "false");
+			properties.put("hibernate.hikari.dataSource.statementPoolingCacheSize", "250");
 		} else if (databaseType.equals(DatabaseType.ORACLE)) {
 			properties.put("hibernate.dialect", "org.hibernate.dialect.Oracle12cDialect");
 			properties.put("javax.persistence.jdbc.driver", "oracle.jdbc.driver.OracleDriver");
+
+			// driver statement cache
+			properties.put("hibernate.hikari.dataSource.oracle.jdbc.implicitStatementCacheSize", "250");
 		} else if (databaseType.equals(DatabaseType.HSQL)) {
 			properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
 			properties.put("javax.persistence.jdbc.driver", "org.hsqldb.jdbc.JDBCDriver");
 		} else if (databaseType.equals(DatabaseType.MYSQL)) {
 			properties.put("hibernate.dialect", "org.hibernate.dialect.MySQL8Dialect");
 			properties.put("javax.persistence.jdbc.driver", "com.mysql.cj.jdbc.Driver");
+
+			// send a batch as one multi-row statement and cache prepared statements
+			properties.put("hibernate.hikari.dataSource.rewriteBatchedStatements", "true");
+			properties.put("hibernate.hikari.dataSource.cachePrepStmts", "true");
+			properties.put("hibernate.hikari.dataSource.prepStmtCacheSize", "250");
+			properties.put("hibernate.hikari.dataSource.prepStmtCacheSqlLimit", "2048");
+
+			// honor the fetch size instead of reading the whole result
+			properties.put("hibernate.hikari.dataSource.useCursorFetch", "true");
 		} else if (databaseType.equals(DatabaseType.POSTGRES)) {
 			properties.put("hibernate.dialect", "org.hibernate.dialect.PostgreSQL95Dialect");
 			properties.put("javax.persistence.jdbc.driver", "org.postgresql.Driver");
+
+			// send a batch of inserts as multi-row statements
+			properties.put("hibernate.hikari.dataSource.reWriteBatchedInserts", "true");
 		}
 
 		// jdbc connection
@@ -1182,9 +1696,15 @@ public final class PersistenceService {
 		// multiple representations of the same entity are being merged
 		properties.put("hibernate.event.merge.entity_copy_observer", "allow");
 
+		// JDBC batching of updates and of inserts without IDENTITY keys
+		properties.put("hibernate.jdbc.batch_size", String.valueOf(getJdbcBatchSize()));
+		properties.put("hibernate.order_inserts", "true");
+		properties.put("hibernate.order_updates", "true");
+		properties.put("hibernate.jdbc.batch_versioned_data", "true");
+
 		// Hikari connection pool
 		properties.put("hibernate.hikari.minimumIdle", "1");
-		properties.put("hibernate.hikari.maximumPoolSize", "20");
+		properties.put("hibernate.hikari.maximumPoolSize", String.valueOf(poolSize));
 		properties.put("hibernate.hikari.idleTimeout", "60000");
 		properties.put("hibernate.connection.provider_class",
 				"org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
@@ -1197,87 +1717,91 @@ public final class PersistenceService {
 	}
 
 	public List<OeeEvent> fetchAvailability(Equipment equipment, OffsetDateTime from, OffsetDateTime to) {
-		final String AVAIL_RECORDS = "Availability.FromTo";
-
-		if (namedQueryMap.get(AVAIL_RECORDS) == null) {
-			createNamedQuery(AVAIL_RECORDS,
-					"SELECT e FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType = :type "
-							+ "AND (e.startTime.localDateTime >= :from AND e.startTime.localDateTime < :to) ORDER BY e.startTime.localDateTime ASC");
+		if (eventStore != null) {
+			return eventStore.fetchAvailability(equipment, from, to);
 		}
 
-		TypedQuery<OeeEvent> query = getEntityManager().createNamedQuery(AVAIL_RECORDS, OeeEvent.class);
-		query.setParameter("type", OeeEventType.AVAILABILITY);
-		query.setParameter("equipment", equipment);
-		query.setParameter("from", from.toLocalDateTime());
-		query.setParameter("to", to.toLocalDateTime());
+		return executeReportingQuery(em -> {
+			TypedQuery<OeeEvent> query = createReportingQuery(em, AVAIL_RECORDS, AVAIL_RECORDS_JPQL, OeeEvent.class);
+			query.setParameter("type", OeeEventType.AVAILABILITY);
+			query.setParameter("equipment", equipment);
+			query.setParameter("from", from.toLocalDateTime());
+			query.setParameter("to", to.toLocalDateTime());
 
-		return query.getResultList();
+			return query.getResultList();
+		});
 	}
 
 	public List<OeeEvent> fetchProduction(Equipment equipment, Material material, OffsetDateTime from,
 			OffsetDateTime to) {
-		final String PROD_RECORDS = "Production.FromTo";
-
-		if (namedQueryMap.get(PROD_RECORDS) == null) {
-			createNamedQuery(PROD_RECORDS, "SELECT e FROM OeeEvent e WHERE e.equipment = :equipment "
-					+ "AND e.eventType IN :types AND (e.startTime.localDateTime >= :from AND e.startTime.localDateTime < :to) AND e.material = :material ORDER BY e.startTime.localDateTime ASC");
+		if (eventStore != null) {
+			return eventStore.fetchProduction(equipment, material, from, to);
 		}
 
-		TypedQuery<OeeEvent> query = getEntityManager().createNamedQuery(PROD_RECORDS, OeeEvent.class);
+		return executeReportingQuery(em -> {
+			TypedQuery<OeeEvent> query = createReportingQuery(em, PROD_RECORDS, PROD_RECORDS_JPQL, OeeEvent.class);
 
-		query.setParameter("types", OeeEventType.getProductionTypes());
-		query.setParameter("equipment", equipment);
-		query.setParameter("material", material);
-		query.setParameter("from", from.toLocalDateTime());
-		query.setParameter("to", to.toLocalDateTime());
+			query.setParameter("types", OeeEventType.getProductionTypes());
+			query.setParameter("equipment", equipment);
+			query.setParameter("material", material);
+			query.setParameter("from", from.toLocalDateTime());
+			query.setParameter("to", to.toLocalDateTime());
 
-		return query.getResultList();
+			return query.getResultList();
+		});
 	}
 
 	public List<OeeEvent> fetchSetupsForPeriod(Equipment equipment, OffsetDateTime from, OffsetDateTime to) {
+		if (eventStore != null) {
+			return eventStore.fetchSetups(equipment, null, from, to);
+		}
+
 		final String SETUP_PERIOD = "Setup.Period";
 
-		if (namedQueryMap.get(SETUP_PERIOD) == null) {
-			createNamedQuery(SETUP_PERIOD,
+		return executeReportingQuery(em -> {
+			TypedQuery<OeeEvent> query = createReportingQuery(em, SETUP_PERIOD,
 					"SELECT e FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType = :type "
-							+ "AND e.startTime.localDateTime  <= :to AND (e.endTime.localDateTime  >= :from OR e.endTime.localDateTime IS NULL)");
-		}
-
-		TypedQuery<OeeEvent> query = getEntityManager().createNamedQuery(SETUP_PERIOD, OeeEvent.class);
-		query.setParameter("type", OeeEventType.MATL_CHANGE);
-		query.setParameter("equipment", equipment);
-		query.setParameter("from", from.toLocalDateTime());
-		query.setParameter("to", to.toLocalDateTime());
+							+ "AND e.startTime.localDateTime  <= :to AND (e.endTime.localDateTime  >= :from OR e.endTime.localDateTime IS NULL)",
+					OeeEvent.class);
+			query.setParameter("type", OeeEventType.MATL_CHANGE);
+			query.setParameter("equipment", equipment);
+			query.setParameter("from", from.toLocalDateTime());
+			query.setParameter("to", to.toLocalDateTime());
 
-		return query.getResultList();
+			return query.getResultList();
+		});
 	}
 
 	public List<OeeEvent> fetchSetupsForPeriodAndMaterial(Equipment equipment, OffsetDateTime from, OffsetDateTime to,
 			Material material) {
+		if (eventStore != null) {
+			return eventStore.fetchSetups(equipment, material, from, to);
+		}
+
 		final String SETUP_PERIOD_MATL = "Setup.Period.Material";
 
-		if (namedQueryMap.get(SETUP_PERIOD_MATL) == null) {
-			createNamedQuery(SETUP_PERIOD_MATL,
+		return executeReportingQuery(em -> {
+			TypedQuery<OeeEvent> query = createReportingQuery(em, SETUP_PERIOD_MATL,
 					"SELECT e FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType = :type "
-							+ "AND e.startTime.localDateTime  <= :to AND (e.endTime.localDateTime  >= :from OR e.endTime.localDateTime IS NULL) AND e.material = :matl");
-		}
-
-		TypedQuery<OeeEvent> query = getEntityManager().createNamedQuery(SETUP_PERIOD_MATL, OeeEvent.class);
-		query.setParameter("type", OeeEventType.MATL_CHANGE);
-		query.setParameter("equipment", equipment);
-		query.setParameter("from", from.toLocalDateTime());
-		query.setParameter("to", to.toLocalDateTime());
-		query.setParameter("matl", material);
+							+ "AND e.startTime.localDateTime  <= :to AND (e.endTime.localDateTime  >= :from OR e.endTime.localDateTime IS NULL) AND e.material = :matl",
+					OeeEvent.class);
+			query.setParameter("type", OeeEventType.MATL_CHANGE);
+			query.setParameter("equipment", equipment);
+			query.setParameter("from", from.toLocalDateTime());
+			query.setParameter("to", to.toLocalDateTime());
+			query.setParameter("matl", material);
 
-		return query.getResultList();
+			return query.getResultList();
+		});
 	}
 
 	public OeeEvent fetchLastEvent(Equipment equipment, OeeEventType type) {
-		final String LAST_EVENT = "Event.Last";
+		if (eventStore != null) {
+			return eventStore.fetchLastEvent(equipment, type);
+		}
 
 		if (namedQueryMap.get(LAST_EVENT) == null) {
-			createNamedQuery(LAST_EVENT,
-					"SELECT e FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType = :type ORDER BY e.startTime.localDateTime DESC");
+			createNamedQuery(LAST_EVENT, LAST_EVENT_JPQL);
 		}
 
 		TypedQuery<OeeEvent> query = getEntityManager().createNamedQuery(LAST_EVENT, OeeEvent.class);
@@ -1294,59 +1818,64 @@ public final class PersistenceService {
 		return record;
 	}
 
+	/**
+	 * Check whether the OEE_EVENT table has been partitioned by
+	 * {@link EventPartitionManager}, in which case retention drops whole
+	 * partitions instead of deleting rows
+	 * 
+	 * @return True if partitioned
+	 * @throws Exception Exception
+	 */
+	public boolean isEventTablePartitioned() throws Exception {
+		if (eventStore != null) {
+			return false;
+		}
+
+		if (eventTablePartitioned == null) {
+			EntityManager em = getEntityManagerFactory().createEntityManager();
+
+			try {
+				eventTablePartitioned = em.unwrap(Session.class)
+						.doReturningWork(connection -> EventPartitionManager.isPartitioned(connection, databaseType));
+			} finally {
+				em.close();
+			}
+		}
+		return eventTablePartitioned;
+	}
+
 	public int purge(Equipment equipment, OffsetDateTime cutoff) throws Exception {
-		EntityManager em = getEntityManager();
+		if (eventStore != null) {
+			return eventStore.purge(equipment, cutoff);
+		}
 
 		// preserve active setup records
-		final String PURGE_OEE = "Oee.Purge";
-
 		if (namedQueryMap.get(PURGE_OEE) == null) {
-			createNamedQuery(PURGE_OEE,
-					"DELETE FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType != :type AND e.startTime.localDateTime < :cutoff");
+			createNamedQuery(PURGE_OEE, PURGE_OEE_JPQL);
 		}
 
-		Query purgeOee = em.createNamedQuery(PURGE_OEE);
-		purgeOee.setParameter("equipment", equipment);
-		purgeOee.setParameter("cutoff", cutoff.toLocalDateTime());
-		purgeOee.setParameter("type", OeeEventType.MATL_CHANGE);
-
 		// purge inactive setup records
-		final String PURGE_MATL = "Matl.Purge";
-
 		if (namedQueryMap.get(PURGE_MATL) == null) {
-			createNamedQuery(PURGE_MATL,
-					"DELETE FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType = :type AND e.endTime.localDateTime IS NOT NULL AND e.endTime.localDateTime < :cutoff");
+			createNamedQuery(PURGE_MATL, PURGE_MATL_JPQL);
 		}
 
-		Query purgeMaterial = em.createNamedQuery(PURGE_MATL);
-		purgeMaterial.setParameter("cutoff", cutoff.toLocalDateTime());
-		purgeMaterial.setParameter("equipment", equipment);
-		purgeMaterial.setParameter("type", OeeEventType.MATL_CHANGE);
+		return executeInTransaction(em -> {
+			Query purgeOee = em.createNamedQuery(PURGE_OEE);
+			purgeOee.setParameter("equipment", equipment);
+			purgeOee.setParameter("cutoff", cutoff.toLocalDateTime());
+			purgeOee.setParameter("type", OeeEventType.MATL_CHANGE);
 
-		EntityTransaction txn = null;
-
-		try {
-			// start transaction
-			txn = em.getTransaction();
-			txn.begin();
+			Query purgeMaterial = em.createNamedQuery(PURGE_MATL);
+			purgeMaterial.setParameter("cutoff", cutoff.toLocalDateTime());
+			purgeMaterial.setParameter("equipment", equipment);
+			purgeMaterial.setParameter("type", OeeEventType.MATL_CHANGE);
 
 			// execute the deletions
 			int deletedCount = purgeOee.executeUpdate();
 			purgeMaterial.executeUpdate();
 
-			// commit transaction
-			txn.commit();
-
 			return deletedCount;
-		} catch (Exception e) {
-			// roll back transaction
-			if (txn != null && txn.isActive()) {
-				txn.rollback();
-			}
-			throw e;
-		} finally {
-			em.close();
-		}
+		});
 	}
 
 	/**
@@ -1356,31 +1885,13 @@ public final class PersistenceService {
 	 * @return Number of rows inserted
 	 */
 	public int executeUpdate(String sql) {
-		EntityManager em = getEntityManager();
-
-		EntityTransaction txn = null;
+		// execute the statement
+		int updatedCount = executeInTransaction(em -> em.createNativeQuery(sql).executeUpdate());
 
-		try {
-			// start transaction
-			txn = em.getTransaction();
-			txn.begin();
-
-			// execute the deletions
-			int updatedCount = em.createNativeQuery(sql).executeUpdate();
-
-			// commit transaction
-			txn.commit();
+		// native SQL can change any table
+		referenceCache.clear();
 
-			return updatedCount;
-		} catch (Exception e) {
-			// roll back transaction
-			if (txn != null && txn.isActive()) {
-				txn.rollback();
-			}
-			throw e;
-		} finally {
-			em.close();
-		}
+		return updatedCount;
 	}
 
 	/**
@@ -1391,7 +1902,7 @@ public final class PersistenceService {
 	 */
 	@SuppressWarnings("unchecked")
 	public String executeQuery(String sql) {
-		List<Object[]> rowList = getEntityManager().createNativeQuery(sql).getResultList();
+		List<Object[]> rowList = executeReportingQuery(em -> em.createNativeQuery(sql).getResultList());
 		Gson gson = new Gson();
 		return gson.toJson(rowList);
 	}
@@ -1448,6 +1959,14 @@ public final class PersistenceService {
 	 * @return List of {@link OeeEvent}
 	 */
 	public List<OeeEvent> fetchEvents(Equipment equipment, OeeEventType type, OffsetDateTime from, OffsetDateTime to) {
+		if (eventStore != null) {
+			return eventStore.fetchEvents(equipment, type, from, to);
+		}
+		return executeReportingQuery(em -> createEventsQuery(em, equipment, type, from, to).getResultList());
+	}
+
+	private TypedQuery<OeeEvent> createEventsQuery(EntityManager em, Equipment equipment, OeeEventType type,
+			OffsetDateTime from, OffsetDateTime to) {
 		String qry = "SELECT e FROM OeeEvent e WHERE e.equipment = :equipment AND e.eventType = :type ";
 
 		if (from != null) {
@@ -1459,7 +1978,7 @@ public final class PersistenceService {
 		}
 		qry += " ORDER BY e.startTime.localDateTime ASC";
 
-		TypedQuery<OeeEvent> query = getEntityManager().createQuery(qry, OeeEvent.class);
+		TypedQuery<OeeEvent> query = em.createQuery(qry, OeeEvent.class);
 		query.setParameter("type", type);
 		query.setParameter("equipment", equipment);
 
@@ -1471,7 +1990,172 @@ public final class PersistenceService {
 			query.setParameter("to", to.toLocalDateTime());
 		}
 
-		return query.getResultList();
+		return query;
+	}
+
+	public int getJdbcFetchSize() {
+		return Integer.getInteger(JDBC_FETCH_SIZE_PROPERTY, DEFAULT_JDBC_FETCH_SIZE);
+	}
+
+	/**
+	 * Stream OEE events for the equipment and event type over the specified
+	 * period through a database cursor. Events are detached after every fetch so
+	 * memory use does not depend on the number of events.
+	 * 
+	 * @param equipment {@link Equipment}
+	 * @param type      {@link OeeEventType}
+	 * @param from      starting date and time
+	 * @param to        ending date and time
+	 * @param consumer  Consumer of each {@link OeeEvent}
+	 * @return Number of events
+	 */
+	public long streamEvents(Equipment equipment, OeeEventType type, OffsetDateTime from, OffsetDateTime to,
+			Consumer<OeeEvent> consumer) {
+		if (eventStore != null) {
+			return eventStore.streamEvents(equipment, type, from, to, consumer);
+		}
+
+		EntityManager em = getReportingEntityManager();
+		EntityTransaction txn = null;
+		ScrollableResults results = null;
+		int fetchSize = getJdbcFetchSize();
+		long count = 0;
+
+		try {
+			// some drivers only use a cursor inside a transaction
+			txn = em.getTransaction();
+			txn.begin();
+
+			org.hibernate.query.Query<?> query = createEventsQuery(em, equipment, type, from, to)
+					.unwrap(org.hibernate.query.Query.class);
+			query.setFetchSize(fetchSize);
+			query.setReadOnly(true);
+
+			results = query.scroll(ScrollMode.FORWARD_ONLY);
+
+			while (results.next()) {
+				consumer.accept((OeeEvent) results.get(0));
+				count++;
+
+				if (count % fetchSize == 0) {
+					em.clear();
+				}
+			}
+			return count;
+		} finally {
+			if (results != null) {
+				results.close();
+			}
+
+			if (txn != null && txn.isActive()) {
+				txn.rollback();
+			}
+			em.close();
+		}
+	}
+
+	/**
+	 * Write OEE events for the equipment and event type over the specified period
+	 * as they are read
+	 * 
+	 * @param equipment {@link Equipment}
+	 * @param type      {@link OeeEventType}
+	 * @param from      starting date and time
+	 * @param to        ending date and time
+	 * @param writer    Writer for the output
+	 * @param format    CSV or JSON {@link ResultStreamWriter.Format}
+	 * @return Number of events written
+	 * @throws Exception Exception
+	 */
+	public long writeEvents(Equipment equipment, OeeEventType type, OffsetDateTime from, OffsetDateTime to,
+			Writer writer, ResultStreamWriter.Format format) throws Exception {
+		ResultStreamWriter out = new ResultStreamWriter(writer, format);
+		out.writeHeader("equipment", "type", "start", "end", "shift", "team", "reason", "duration", "amount", "uom",
+				"material", "job", "input", "source");
+
+		try {
+			streamEvents(equipment, type, from, to, event -> {
+				try {
+					out.writeRow(getName(event.getEquipment()), event.getEventType(), event.getStartTime(),
+							event.getEndTime(), event.getShift() != null ? event.getShift().getName() : null,
+							event.getTeam() != null ? event.getTeam().getName() : null, getName(event.getReason()),
+							event.getDuration(), event.getAmount(),
+							event.getUOM() != null ? event.getUOM().getSymbol() : null, getName(event.getMaterial()),
+							event.getJob(), event.getInputValue(), event.getSourceId());
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		out.finish();
+
+		return out.getRowCount();
+	}
+
+	private static String getName(NamedObject named) {
+		return named != null ? named.getName() : null;
+	}
+
+	/**
+	 * Execute the SQL query and write the rows as they are read through a
+	 * database cursor
+	 * 
+	 * @param sql    SQL select statement
+	 * @param writer Writer for the output
+	 * @param format CSV or JSON {@link ResultStreamWriter.Format}
+	 * @return Number of rows written
+	 * @throws Exception Exception
+	 */
+	public long executeQuery(String sql, Writer writer, ResultStreamWriter.Format format) throws Exception {
+		EntityManager em = getReportingEntityManager();
+		EntityTransaction txn = null;
+		ResultStreamWriter out = new ResultStreamWriter(writer, format);
+
+		try {
+			// some drivers only use a cursor inside a transaction
+			txn = em.getTransaction();
+			txn.begin();
+
+			em.unwrap(Session.class).doWork(connection -> {
+				try (Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY)) {
+					statement.setFetchSize(getJdbcFetchSize());
+
+					try (ResultSet rs = statement.executeQuery(sql)) {
+						ResultSetMetaData metadata = rs.getMetaData();
+						String[] columns = new String[metadata.getColumnCount()];
+
+						for (int i = 0; i < columns.length; i++) {
+							columns[i] = metadata.getColumnLabel(i + 1);
+						}
+						out.writeHeader(columns);
+
+						Object[] values = new Object[columns.length];
+
+						while (rs.next()) {
+							for (int i = 0; i < values.length; i++) {
+								values[i] = rs.getObject(i + 1);
+							}
+							out.writeRow(values);
+						}
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			if (txn != null && txn.isActive()) {
+				txn.rollback();
+			}
+			em.close();
+		}
+		out.finish();
+
+		return out.getRowCount();
 	}
 
 	public static String getJdbcConnection() {
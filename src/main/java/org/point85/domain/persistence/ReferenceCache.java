@@ -0,0 +1,293 @@
+package org.point85.domain.persistence;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+
+import org.point85.domain.collector.CollectorDataSource;
+import org.point85.domain.collector.DataCollector;
+import org.point85.domain.plant.EquipmentMaterial;
+import org.point85.domain.plant.KeyedObject;
+import org.point85.domain.plant.Material;
+import org.point85.domain.plant.PlantEntity;
+import org.point85.domain.plant.Reason;
+import org.point85.domain.schedule.NonWorkingPeriod;
+import org.point85.domain.schedule.Rotation;
+import org.point85.domain.schedule.RotationSegment;
+import org.point85.domain.schedule.Shift;
+import org.point85.domain.schedule.Team;
+import org.point85.domain.schedule.WorkSchedule;
+import org.point85.domain.script.EventResolver;
+import org.point85.domain.uom.UnitOfMeasure;
+
+/**
+ * Least recently used cache of reference query results fetched by the
+ * PersistenceService. Entries are grouped in regions by the entity class they
+ * hold. A region is evicted when an entity it depends on is saved or deleted
+ * through the PersistenceService, and every entry expires after a time to live
+ * so that changes made by other processes are seen. A value is fetched in its
+ * own EntityManager, which is closed once the lazy associations of its entities
+ * are loaded, so a hit runs no SQL and opens no EntityManager. The cached
+ * entities are detached and shared by all threads; they are read only, and a
+ * change is made by saving a copy through the PersistenceService, which evicts
+ * the region.
+ *
+ */
+public class ReferenceCache implements PersistenceListener {
+	// system property for the maximum number of entries, 0 disables caching
+	public static final String SIZE_PROPERTY = "persistence_cache_size";
+
+	public static final int DEFAULT_SIZE = 1000;
+
+	// system property for the sec an entry is used before it is fetched again
+	public static final String TTL_PROPERTY = "persistence_cache_ttl_sec";
+
+	public static final int DEFAULT_TTL_SEC = 60;
+
+	// regions and the classes whose changes evict them
+	private static final Class<?>[][] REGIONS = {
+			{ Reason.class, Reason.class },
+			{ Material.class, Material.class },
+			{ UnitOfMeasure.class, UnitOfMeasure.class },
+			{ PlantEntity.class, PlantEntity.class, EquipmentMaterial.class, Material.class, UnitOfMeasure.class,
+					WorkSchedule.class },
+			{ WorkSchedule.class, WorkSchedule.class, Team.class, Shift.class, Rotation.class,
+					RotationSegment.class, NonWorkingPeriod.class },
+			{ EventResolver.class, EventResolver.class, PlantEntity.class, CollectorDataSource.class,
+					DataCollector.class } };
+
+	private final int maxSize;
+
+	private final long ttlMillis;
+
+	private final PersistenceService persistenceService;
+
+	// values by region|query|parameters
+	private final Map<String, Entry> entries;
+
+	// incremented on each eviction so that a value fetched concurrently is not
+	// cached
+	private long generation = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	ReferenceCache(PersistenceService persistenceService) {
+		this.persistenceService = persistenceService;
+		maxSize = Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE);
+		ttlMillis = Integer.getInteger(TTL_PROPERTY, DEFAULT_TTL_SEC) * 1000L;
+
+		entries = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	// get the cached value or fetch it
+	<T, E extends Exception> T get(Class<?> region, String query, Object parameter, Fetcher<T, E> fetcher)
+			throws E {
+		if (maxSize <= 0) {
+			return fetcher.fetch();
+		}
+
+		String key = region.getSimpleName() + '|' + query + '|' + parameter;
+		long fetchGeneration;
+		Entry entry;
+
+		synchronized (this) {
+			entry = entries.get(key);
+
+			if (entry != null && System.currentTimeMillis() - entry.loadedAt > ttlMillis) {
+				entries.remove(key);
+				evictions++;
+				entry = null;
+			}
+			fetchGeneration = generation;
+		}
+
+		if (entry != null) {
+			synchronized (this) {
+				hits++;
+			}
+
+			@SuppressWarnings("unchecked")
+			T value = (T) fromCached(entry.value);
+			return value;
+		}
+
+		synchronized (this) {
+			misses++;
+		}
+
+		T value = fetchLoaded(fetcher);
+
+		if (value != null) {
+			synchronized (this) {
+				if (generation == fetchGeneration) {
+					entries.put(key, new Entry(toCached(value)));
+				}
+			}
+		}
+		return value;
+	}
+
+	// add a value fetched in bulk, detached and with its associations loaded
+	synchronized void put(Class<?> region, String query, Object parameter, Object value) {
+		if (maxSize > 0 && value != null) {
+			entries.put(region.getSimpleName() + '|' + query + '|' + parameter, new Entry(toCached(value)));
+		}
+	}
+
+	// lists are copied so that a caller cannot change the cached one
+	private static Object toCached(Object value) {
+		if (value instanceof List) {
+			return Collections.unmodifiableList(new ArrayList<>((List<?>) value));
+		}
+		return value;
+	}
+
+	private static Object fromCached(Object cached) {
+		if (cached instanceof List) {
+			return new ArrayList<>((List<?>) cached);
+		}
+		return cached;
+	}
+
+	// fetch detached from an EntityManager that is closed after the lazy
+	// associations of the entities are loaded
+	<T, E extends Exception> T fetchLoaded(Fetcher<T, E> fetcher) throws E {
+		return persistenceService.fetchDetached(() -> {
+			T fetched = fetcher.fetch();
+			initialize(fetched, Collections.newSetFromMap(new IdentityHashMap<>()));
+			return fetched;
+		});
+	}
+
+	private static void initialize(Object value, Set<Object> visited) {
+		if (value == null || !visited.add(value)) {
+			return;
+		}
+
+		if (value instanceof Collection) {
+			Hibernate.initialize(value);
+
+			for (Object element : (Collection<?>) value) {
+				initialize(element, visited);
+			}
+			return;
+		}
+
+		if (!(value instanceof KeyedObject)) {
+			return;
+		}
+
+		Object entity = Hibernate.unproxy(value);
+
+		for (Class<?> clazz = entity.getClass(); clazz != null; clazz = clazz.getSuperclass()) {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive()) {
+					continue;
+				}
+
+				try {
+					field.setAccessible(true);
+					initialize(field.get(entity), visited);
+				} catch (IllegalAccessException e) {
+					// not an association
+				}
+			}
+		}
+	}
+
+	synchronized void evict(Class<?> region) {
+		generation++;
+
+		String prefix = region.getSimpleName() + '|';
+		Iterator<String> iter = entries.keySet().iterator();
+
+		while (iter.hasNext()) {
+			if (iter.next().startsWith(prefix)) {
+				iter.remove();
+				evictions++;
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		generation++;
+		evictions += entries.size();
+		entries.clear();
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized double getHitRate() {
+		long requests = hits + misses;
+		return requests > 0 ? (double) hits / requests : 0.0d;
+	}
+
+	@Override
+	public void onPersistenceChange(KeyedObject keyed) {
+		for (Class<?>[] region : REGIONS) {
+			for (int i = 1; i < region.length; i++) {
+				if (region[i].isInstance(keyed)) {
+					evict(region[0]);
+					break;
+				}
+			}
+		}
+	}
+
+	private static class Entry {
+		private final Object value;
+		private final long loadedAt = System.currentTimeMillis();
+
+		private Entry(Object value) {
+			this.value = value;
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Size: " + entries.size() + ", hits: " + hits + ", misses: " + misses + ", evictions: " + evictions;
+	}
+
+	// fetches a value from the database
+	@FunctionalInterface
+	interface Fetcher<T, E extends Exception> {
+		T fetch() throws E;
+	}
+}
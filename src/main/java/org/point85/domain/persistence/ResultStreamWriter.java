@@ -0,0 +1,126 @@
+package org.point85.domain.persistence;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes query result rows as CSV or as a JSON array of objects while they are
+ * read, so that memory use does not depend on the number of rows.
+ *
+ */
+public class ResultStreamWriter {
+	public enum Format {
+		CSV, JSON;
+	}
+
+	private final Format format;
+
+	private final BufferedWriter out;
+
+	// JSON output
+	private JsonWriter jsonWriter;
+
+	private String[] columns;
+
+	private long rowCount = 0;
+
+	public ResultStreamWriter(Writer writer, Format format) {
+		this.format = format;
+		this.out = writer instanceof BufferedWriter ? (BufferedWriter) writer : new BufferedWriter(writer);
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Write the column names. Must be called before the first row.
+	 *
+	 * @param columns Column names
+	 * @throws IOException IOException
+	 */
+	public void writeHeader(String... columns) throws IOException {
+		this.columns = columns;
+
+		if (format.equals(Format.CSV)) {
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				out.write(toCsvField(columns[i]));
+			}
+			out.newLine();
+		} else {
+			jsonWriter = new JsonWriter(out);
+			jsonWriter.setLenient(true);
+			jsonWriter.beginArray();
+		}
+	}
+
+	/**
+	 * Write a row of values in column order
+	 *
+	 * @param values Column values
+	 * @throws IOException IOException
+	 */
+	public void writeRow(Object... values) throws IOException {
+		if (format.equals(Format.CSV)) {
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				out.write(values[i] != null ? toCsvField(values[i].toString()) : "");
+			}
+			out.newLine();
+		} else {
+			jsonWriter.beginObject();
+
+			for (int i = 0; i < values.length; i++) {
+				jsonWriter.name(columns[i]);
+				writeJsonValue(values[i]);
+			}
+			jsonWriter.endObject();
+		}
+		rowCount++;
+	}
+
+	/**
+	 * Complete the output and flush it. The underlying writer is not closed.
+	 *
+	 * @throws IOException IOException
+	 */
+	public void finish() throws IOException {
+		if (jsonWriter != null) {
+			jsonWriter.endArray();
+			jsonWriter.flush();
+		}
+		out.flush();
+	}
+
+	private void writeJsonValue(Object value) throws IOException {
+		if (value == null) {
+			jsonWriter.nullValue();
+		} else if (value instanceof Number) {
+			jsonWriter.value((Number) value);
+		} else if (value instanceof Boolean) {
+			jsonWriter.value((Boolean) value);
+		} else {
+			jsonWriter.value(value.toString());
+		}
+	}
+
+	// quote a CSV field containing a separator, quote or line break
+	private static String toCsvField(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
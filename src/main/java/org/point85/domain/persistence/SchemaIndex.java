@@ -0,0 +1,92 @@
+package org.point85.domain.persistence;
+
+/**
+ * Composite indexes on the event tables matching the predicates of the
+ * PersistenceService event queries. The same definitions are declared on the
+ * OeeEvent and DatabaseEvent entities.
+ *
+ */
+public enum SchemaIndex {
+	// fetchLastEvent, fetchAvailability, fetchSetupsForPeriod, fetchEvents and
+	// purge of non-setup events
+	OEE_EVENT_TYPE_IDX(SchemaIndex.OEE_EVENT_TABLE, "ENT_KEY, EVENT_TYPE, START_TIME"),
+
+	// fetchProduction by equipment and material
+	OEE_EVENT_MATL_IDX(SchemaIndex.OEE_EVENT_TABLE, "ENT_KEY, MATL_KEY, START_TIME"),
+
+	// purge of completed setup events
+	OEE_EVENT_END_IDX(SchemaIndex.OEE_EVENT_TABLE, "ENT_KEY, EVENT_TYPE, END_TIME"),
+
+	// fetchDatabaseEvents by status and source
+	DB_EVENT_STATUS_IDX(SchemaIndex.DB_EVENT_TABLE, "STATUS, SOURCE_ID, EVENT_TIME");
+
+	public static final String OEE_EVENT_TABLE = "OEE_EVENT";
+	public static final String DB_EVENT_TABLE = "DB_EVENT";
+
+	private final String tableName;
+	private final String columnList;
+
+	private SchemaIndex(String tableName, String columnList) {
+		this.tableName = tableName;
+		this.columnList = columnList;
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public String getColumnList() {
+		return columnList;
+	}
+
+	/**
+	 * Get the DDL statement to create this index
+	 * 
+	 * @param databaseType {@link DatabaseType}
+	 * @return CREATE INDEX statement
+	 */
+	public String getCreateDdl(DatabaseType databaseType) {
+		String ddl = null;
+
+		switch (databaseType) {
+		case MSSQL:
+			// secondary index on the clustered primary key
+			ddl = "CREATE NONCLUSTERED INDEX " + name() + " ON " + tableName + " (" + columnList + ")";
+			break;
+		case MYSQL:
+			ddl = "CREATE INDEX " + name() + " USING BTREE ON " + tableName + " (" + columnList + ")";
+			break;
+		case HSQL:
+		case ORACLE:
+		case POSTGRES:
+		default:
+			ddl = "CREATE INDEX " + name() + " ON " + tableName + " (" + columnList + ")";
+			break;
+		}
+		return ddl;
+	}
+
+	/**
+	 * Get the DDL statement to drop this index
+	 * 
+	 * @param databaseType {@link DatabaseType}
+	 * @return DROP INDEX statement
+	 */
+	public String getDropDdl(DatabaseType databaseType) {
+		String ddl = null;
+
+		switch (databaseType) {
+		case MSSQL:
+		case MYSQL:
+			ddl = "DROP INDEX " + name() + " ON " + tableName;
+			break;
+		case HSQL:
+		case ORACLE:
+		case POSTGRES:
+		default:
+			ddl = "DROP INDEX " + name();
+			break;
+		}
+		return ddl;
+	}
+}
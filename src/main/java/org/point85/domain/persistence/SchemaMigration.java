@@ -0,0 +1,173 @@
+package org.point85.domain.persistence;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the {@link SchemaIndex} indexes on an existing OEE or interface table
+ * database. Indexes that already exist and tables that are not present are
+ * skipped, so the migration can be run more than once. <br>
+ * Usage: SchemaMigration &lt;JDBC URL&gt; &lt;user name&gt; &lt;password&gt;
+ * [drop]
+ *
+ */
+public class SchemaMigration {
+	// logger
+	private static final Logger logger = LoggerFactory.getLogger(SchemaMigration.class);
+
+	private final String jdbcUrl;
+	private final String userName;
+	private final String password;
+	private final DatabaseType databaseType;
+
+	public SchemaMigration(String jdbcUrl, String userName, String password) throws Exception {
+		this.jdbcUrl = jdbcUrl;
+		this.userName = userName;
+		this.password = password;
+		this.databaseType = DatabaseType.fromJdbcUrl(jdbcUrl);
+	}
+
+	public DatabaseType getDatabaseType() {
+		return databaseType;
+	}
+
+	/**
+	 * Create the missing indexes
+	 * 
+	 * @return List of created {@link SchemaIndex}
+	 * @throws Exception Exception
+	 */
+	public List<SchemaIndex> createIndexes() throws Exception {
+		try (Connection connection = DriverManager.getConnection(jdbcUrl, userName, password)) {
+			return createIndexes(connection);
+		}
+	}
+
+	/**
+	 * Create the missing indexes on this connection
+	 * 
+	 * @param connection JDBC {@link Connection}
+	 * @return List of created {@link SchemaIndex}
+	 * @throws Exception Exception
+	 */
+	public List<SchemaIndex> createIndexes(Connection connection) throws Exception {
+		List<SchemaIndex> created = new ArrayList<>();
+
+		for (SchemaIndex index : SchemaIndex.values()) {
+			String table = findTable(connection, index.getTableName());
+
+			if (table == null) {
+				if (logger.isInfoEnabled()) {
+					logger.info("Table " + index.getTableName() + " does not exist, skipping " + index.name());
+				}
+				continue;
+			}
+
+			if (getIndexNames(connection, table).contains(index.name())) {
+				continue;
+			}
+
+			execute(connection, index.getCreateDdl(databaseType));
+			created.add(index);
+		}
+		return created;
+	}
+
+	/**
+	 * Drop the existing indexes
+	 * 
+	 * @return List of dropped {@link SchemaIndex}
+	 * @throws Exception Exception
+	 */
+	public List<SchemaIndex> dropIndexes() throws Exception {
+		List<SchemaIndex> dropped = new ArrayList<>();
+
+		try (Connection connection = DriverManager.getConnection(jdbcUrl, userName, password)) {
+			for (SchemaIndex index : SchemaIndex.values()) {
+				String table = findTable(connection, index.getTableName());
+
+				if (table == null || !getIndexNames(connection, table).contains(index.name())) {
+					continue;
+				}
+
+				execute(connection, index.getDropDdl(databaseType));
+				dropped.add(index);
+			}
+		}
+		return dropped;
+	}
+
+	private void execute(Connection connection, String ddl) throws Exception {
+		if (logger.isInfoEnabled()) {
+			logger.info("Executing: " + ddl);
+		}
+
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(ddl);
+		}
+
+		if (!connection.getAutoCommit()) {
+			connection.commit();
+		}
+	}
+
+	// table name as stored in the catalog, or null if not found
+	static String findTable(Connection connection, String tableName) throws Exception {
+		DatabaseMetaData metadata = connection.getMetaData();
+
+		for (String name : new String[] { tableName, tableName.toLowerCase() }) {
+			try (ResultSet rs = metadata.getTables(null, null, name, new String[] { "TABLE" })) {
+				if (rs.next()) {
+					return rs.getString("TABLE_NAME");
+				}
+			}
+		}
+		return null;
+	}
+
+	// upper case names of the indexes on this table
+	static Set<String> getIndexNames(Connection connection, String tableName) throws Exception {
+		Set<String> names = new HashSet<>();
+
+		try (ResultSet rs = connection.getMetaData().getIndexInfo(null, null, tableName, false, true)) {
+			while (rs.next()) {
+				String name = rs.getString("INDEX_NAME");
+
+				if (name != null) {
+					names.add(name.toUpperCase());
+				}
+			}
+		}
+		return names;
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 3) {
+			System.out.println("Usage: SchemaMigration <JDBC URL> <user name> <password> [drop]");
+			return;
+		}
+
+		try {
+			SchemaMigration migration = new SchemaMigration(args[0], args[1], args[2]);
+
+			if (args.length > 3 && args[3].equalsIgnoreCase("drop")) {
+				System.out.println("Dropped indexes: " + migration.dropIndexes());
+			} else {
+				System.out.println("Created indexes: " + migration.createIndexes());
+			}
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
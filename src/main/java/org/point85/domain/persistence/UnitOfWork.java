@@ -0,0 +1,124 @@
+package org.point85.domain.persistence;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+import org.point85.domain.plant.KeyedObject;
+
+/**
+ * One EntityManager and one transaction shared by all PersistenceService reads
+ * and writes on the calling thread until the unit of work is closed. Units of
+ * work can be nested; the outermost one commits if it and every nested unit
+ * called {@link #commit()}, otherwise everything is rolled back. Persistence
+ * listeners are notified after the commit. <br>
+ * Usage:
+ *
+ * <pre>
+ * try (UnitOfWork work = PersistenceService.instance().beginUnitOfWork()) {
+ * 	// fetch and save
+ * 	work.commit();
+ * }
+ * </pre>
+ *
+ */
+public class UnitOfWork implements AutoCloseable {
+	private final PersistenceService persistenceService;
+
+	private final EntityManager entityManager;
+
+	private final EntityTransaction transaction;
+
+	// commit flag of each nesting level
+	private final Deque<Boolean> levels = new ArrayDeque<>();
+
+	// set when a nested unit or an operation failed
+	private boolean rollbackOnly = false;
+
+	// saved and deleted objects to notify listeners of after the commit
+	private final List<KeyedObject> changes = new ArrayList<>();
+
+	UnitOfWork(PersistenceService persistenceService, EntityManager entityManager) {
+		this.persistenceService = persistenceService;
+		this.entityManager = entityManager;
+		this.transaction = entityManager.getTransaction();
+		this.transaction.begin();
+		this.levels.push(false);
+	}
+
+	public EntityManager getEntityManager() {
+		return entityManager;
+	}
+
+	public boolean isRollbackOnly() {
+		return rollbackOnly;
+	}
+
+	public void setRollbackOnly() {
+		rollbackOnly = true;
+	}
+
+	/**
+	 * Mark this level of the unit of work as complete. The transaction is
+	 * committed when the outermost level is closed.
+	 */
+	public void commit() {
+		if (levels.isEmpty()) {
+			throw new IllegalStateException("The unit of work has been closed.");
+		}
+		levels.pop();
+		levels.push(true);
+	}
+
+	@Override
+	public void close() {
+		if (levels.isEmpty()) {
+			return;
+		}
+
+		if (!levels.pop()) {
+			rollbackOnly = true;
+		}
+
+		if (!levels.isEmpty()) {
+			// nested level
+			return;
+		}
+
+		boolean committed = false;
+
+		try {
+			if (!rollbackOnly && transaction.isActive()) {
+				transaction.commit();
+				committed = true;
+			}
+		} finally {
+			if (transaction.isActive()) {
+				transaction.rollback();
+			}
+			entityManager.close();
+			persistenceService.endUnitOfWork(this);
+		}
+
+		if (committed) {
+			for (KeyedObject keyed : changes) {
+				persistenceService.notifyPersistenceListeners(keyed);
+			}
+		}
+		changes.clear();
+	}
+
+	// join a unit of work already in progress on this thread
+	UnitOfWork join() {
+		levels.push(false);
+		return this;
+	}
+
+	void addChange(KeyedObject keyed) {
+		changes.add(keyed);
+	}
+}
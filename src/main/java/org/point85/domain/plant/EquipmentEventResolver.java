@@ -172,12 +172,12 @@ public class EquipmentEventResolver {
 		Team team = null;
 
 		if (schedule != null) {
-			List<ShiftInstance> shiftInstances = schedule.getShiftInstancesForTime(eventTime.toLocalDateTime());
+			// first one in progress
+			ShiftInstance shiftInstance = schedule.findShiftInstance(eventTime.toLocalDateTime());
 
-			if (!shiftInstances.isEmpty()) {
-				// pick first one
-				shift = shiftInstances.get(0).getShift();
-				team = shiftInstances.get(0).getTeam();
+			if (shiftInstance != null) {
+				shift = shiftInstance.getShift();
+				team = shiftInstance.getTeam();
 			}
 		}
 
@@ -333,7 +333,15 @@ public class EquipmentEventResolver {
 		}
 	}
 
-	private Reason fetchReason(String reasonName) throws Exception {
+	/**
+	 * Get a reason by name from the cache of this resolver, fetching it the first
+	 * time
+	 * 
+	 * @param reasonName Name of the reason
+	 * @return {@link Reason}
+	 * @throws Exception if the reason is not defined
+	 */
+	public Reason fetchReason(String reasonName) throws Exception {
 		Reason reason = this.reasonCache.get(reasonName);
 
 		if (reason == null) {
@@ -0,0 +1,122 @@
+/*
+MIT License
+
+Copyright (c) 2016 Kent Randall
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package org.point85.domain.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class NonWorkingIntervals holds the non-working periods of a work schedule as
+ * sorted intervals with overlapping periods merged. The non-working time in a
+ * range is found with binary searches and prefix sums of the interval lengths.
+ * 
+ * @author Kent Randall
+ *
+ */
+final class NonWorkingIntervals {
+	// merged interval start and end local epoch seconds
+	private final long[] starts;
+	private final long[] ends;
+
+	// length of all intervals before each interval
+	private final long[] prefixSums;
+
+	// schedule definition version the intervals were built from
+	private final int version = WorkSchedule.getDefinitionVersion();
+
+	NonWorkingIntervals(List<NonWorkingPeriod> periods) throws Exception {
+		List<long[]> intervals = new ArrayList<>(periods.size());
+
+		for (NonWorkingPeriod period : periods) {
+			intervals.add(new long[] { RotationWorkingTime.toRoundedSecond(period.getStartDateTime()),
+					RotationWorkingTime.toRoundedSecond(period.getEndDateTime()) });
+		}
+		intervals.sort((a, b) -> Long.compare(a[0], b[0]));
+
+		// merge overlapping and adjacent intervals
+		List<long[]> merged = new ArrayList<>(intervals.size());
+
+		for (long[] interval : intervals) {
+			long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+
+			if (last != null && interval[0] <= last[1]) {
+				last[1] = Math.max(last[1], interval[1]);
+			} else {
+				merged.add(interval);
+			}
+		}
+
+		int count = merged.size();
+		starts = new long[count];
+		ends = new long[count];
+		prefixSums = new long[count + 1];
+
+		for (int i = 0; i < count; i++) {
+			starts[i] = merged.get(i)[0];
+			ends[i] = merged.get(i)[1];
+			prefixSums[i + 1] = prefixSums[i] + ends[i] - starts[i];
+		}
+	}
+
+	// non-working seconds before this second
+	private long nonWorkingSecondsTo(long second) {
+		// number of intervals starting before the second
+		int low = 0;
+		int high = starts.length;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (starts[mid] < second) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		if (low == 0) {
+			return 0;
+		}
+
+		// the last of these can contain the second
+		int last = low - 1;
+		return prefixSums[last] + Math.min(second, ends[last]) - starts[last];
+	}
+
+	/**
+	 * Non-working seconds between two local epoch seconds
+	 * 
+	 * @param from Starting second
+	 * @param to   Ending second
+	 * @return Non-working seconds
+	 */
+	long nonWorkingSeconds(long from, long to) {
+		return nonWorkingSecondsTo(to) - nonWorkingSecondsTo(from);
+	}
+
+	int getVersion() {
+		return version;
+	}
+}
@@ -105,6 +105,7 @@ public class NonWorkingPeriod extends Named implements Comparable<NonWorkingPeri
 		}
 
 		this.startDateTime = startDateTime;
+		WorkSchedule.definitionChanged();
 	}
 
 	/**
@@ -141,6 +142,7 @@ public class NonWorkingPeriod extends Named implements Comparable<NonWorkingPeri
 		}
 
 		this.duration = duration;
+		WorkSchedule.definitionChanged();
 	}
 
 	/**
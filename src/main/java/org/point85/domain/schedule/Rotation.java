@@ -195,6 +195,11 @@ public class Rotation extends Named implements Comparable<Rotation> {
 		return segment;
 	}
 
+	// rebuild the periods after a segment has changed
+	void clearPeriods() {
+		periods = null;
+	}
+
 	/**
 	 * Get the work schedule that owns this rotation
 	 * 
@@ -101,6 +101,7 @@ public class RotationSegment extends KeyedObject implements Comparable<RotationS
 	 */
 	public void setStartingShift(Shift startingShift) {
 		this.startingShift = startingShift;
+		definitionChanged();
 	}
 
 	/**
@@ -120,6 +121,7 @@ public class RotationSegment extends KeyedObject implements Comparable<RotationS
 	 */
 	public void setDaysOn(int daysOn) {
 		this.daysOn = daysOn;
+		definitionChanged();
 	}
 
 	/**
@@ -139,6 +141,7 @@ public class RotationSegment extends KeyedObject implements Comparable<RotationS
 	 */
 	public void setDaysOff(int daysOff) {
 		this.daysOff = daysOff;
+		definitionChanged();
 	}
 
 	/**
@@ -167,6 +170,14 @@ public class RotationSegment extends KeyedObject implements Comparable<RotationS
 	 */
 	public void setSequence(int sequence) {
 		this.sequence = sequence;
+		definitionChanged();
+	}
+
+	private void definitionChanged() {
+		if (rotation != null) {
+			rotation.clearPeriods();
+		}
+		WorkSchedule.definitionChanged();
 	}
 
 	/**
@@ -0,0 +1,147 @@
+/*
+MIT License
+
+Copyright (c) 2016 Kent Randall
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package org.point85.domain.schedule;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Class RotationWorkingTime calculates the working time of a team with prefix
+ * sums of the working seconds at the start of each rotation day. The rotation
+ * repeats before and after the rotation start, so the working time up to any
+ * time is the whole rotations multiplied out plus a lookup for the partial
+ * rotation and the partial day.
+ * 
+ * @author Kent Randall
+ *
+ */
+final class RotationWorkingTime {
+	private static final long SECONDS_PER_DAY = 86400;
+
+	// local epoch second of the rotation start
+	private final long rotationStart;
+
+	// rotation length in seconds
+	private final long rotationSeconds;
+
+	// working seconds in a whole rotation
+	private final long rotationWorkingSeconds;
+
+	// shift start second of day and duration by rotation day, duration 0 if off
+	private final long[] shiftStarts;
+	private final long[] shiftDurations;
+
+	// working seconds from the rotation start to the start of each day
+	private final long[] prefixSums;
+
+	RotationWorkingTime(Rotation rotation, LocalDate rotationStartDate) {
+		List<TimePeriod> periods = rotation.getPeriods();
+		int dayCount = periods.size();
+
+		rotationStart = rotationStartDate.toEpochDay() * SECONDS_PER_DAY;
+		rotationSeconds = dayCount * SECONDS_PER_DAY;
+
+		shiftStarts = new long[dayCount];
+		shiftDurations = new long[dayCount];
+
+		for (int i = 0; i < dayCount; i++) {
+			TimePeriod period = periods.get(i);
+
+			if (period.isWorkingPeriod()) {
+				shiftStarts[i] = period.getStart().toSecondOfDay();
+				shiftDurations[i] = period.getDuration().getSeconds();
+			}
+		}
+
+		prefixSums = new long[dayCount + 1];
+
+		for (int i = 0; i < dayCount; i++) {
+			prefixSums[i + 1] = prefixSums[i] + workingSecondsInDay(i, SECONDS_PER_DAY);
+		}
+		rotationWorkingSeconds = prefixSums[dayCount];
+	}
+
+	// working seconds from midnight to this second of the rotation day
+	private long workingSecondsInDay(int day, long secondOfDay) {
+		// the previous day's shift can run past midnight
+		int previous = day == 0 ? shiftStarts.length - 1 : day - 1;
+		long afterMidnight = shiftStarts[previous] + shiftDurations[previous] - SECONDS_PER_DAY;
+		long seconds = afterMidnight > 0 ? Math.min(secondOfDay, afterMidnight) : 0;
+
+		// this day's shift until midnight
+		long start = shiftStarts[day];
+		long end = Math.min(start + shiftDurations[day], SECONDS_PER_DAY);
+		long todayEnd = Math.min(secondOfDay, end);
+
+		if (shiftDurations[day] > 0 && todayEnd > start) {
+			seconds += todayEnd - start;
+		}
+		return seconds;
+	}
+
+	/**
+	 * Working seconds from the rotation start to the local epoch second, negative
+	 * before the start
+	 * 
+	 * @param second Local epoch second
+	 * @return Working seconds
+	 */
+	long workingSecondsTo(long second) {
+		if (rotationSeconds == 0) {
+			return 0;
+		}
+
+		long sinceStart = second - rotationStart;
+		long rotations = Math.floorDiv(sinceStart, rotationSeconds);
+		long inRotation = Math.floorMod(sinceStart, rotationSeconds);
+
+		int day = (int) (inRotation / SECONDS_PER_DAY);
+		long secondOfDay = inRotation % SECONDS_PER_DAY;
+
+		return rotations * rotationWorkingSeconds + prefixSums[day] + workingSecondsInDay(day, secondOfDay);
+	}
+
+	/**
+	 * Working seconds between two times
+	 * 
+	 * @param from Starting date and time
+	 * @param to   Ending date and time
+	 * @return Working seconds
+	 */
+	long workingSeconds(LocalDateTime from, LocalDateTime to) {
+		return workingSecondsTo(toRoundedSecond(to)) - workingSecondsTo(toRoundedSecond(from));
+	}
+
+	static long toRoundedSecond(LocalDateTime dateTime) {
+		long second = dateTime.toEpochSecond(ZoneOffset.UTC);
+
+		if (dateTime.getNano() > 500E+06) {
+			second++;
+		}
+		return second;
+	}
+}
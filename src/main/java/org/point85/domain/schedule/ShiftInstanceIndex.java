@@ -0,0 +1,175 @@
+/*
+MIT License
+
+Copyright (c) 2016 Kent Randall
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package org.point85.domain.schedule;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class ShiftInstanceIndex holds the shift instances of a work schedule that
+ * start within a range of days, sorted by start time. A time of day is looked
+ * up with a binary search. Since a shift lasts at most 24 hours, only the
+ * instances starting in the preceding day need to be checked.
+ * 
+ * @author Kent Randall
+ *
+ */
+final class ShiftInstanceIndex {
+	// days materialized after the day that triggered the build
+	static final int HORIZON_DAYS = 31;
+
+	private static final long SECONDS_PER_DAY = 86400;
+
+	// times covered by the index, in local epoch seconds
+	private final long coveredFrom;
+	private final long coveredTo;
+
+	// instance start and end times in local epoch seconds
+	private final long[] starts;
+	private final long[] ends;
+
+	// instances in start time order
+	private final ShiftInstance[] instances;
+
+	// schedule definition version the instances were built from
+	private final int version;
+
+	private ShiftInstanceIndex(LocalDate firstDay, LocalDate lastDay, List<ShiftInstance> sorted, int version) {
+		this.version = version;
+
+		// an instance covering a time started no more than a day before it
+		coveredFrom = toSecond(firstDay.atStartOfDay()) + SECONDS_PER_DAY;
+		coveredTo = toSecond(lastDay.plusDays(1).atStartOfDay());
+
+		int count = sorted.size();
+		starts = new long[count];
+		ends = new long[count];
+		instances = sorted.toArray(new ShiftInstance[count]);
+
+		for (int i = 0; i < count; i++) {
+			starts[i] = toSecond(instances[i].getStartTime());
+			ends[i] = starts[i] + instances[i].getShift().getDuration().getSeconds();
+		}
+	}
+
+	/**
+	 * Build the index for the range of days around this time
+	 * 
+	 * @param schedule {@link WorkSchedule}
+	 * @param dateTime Date and time of day that must be covered
+	 * @return {@link ShiftInstanceIndex}
+	 * @throws Exception exception
+	 */
+	static ShiftInstanceIndex build(WorkSchedule schedule, LocalDateTime dateTime) throws Exception {
+		LocalDate day = dateTime.toLocalDate();
+		LocalDate first = day.minusDays(2);
+		LocalDate last = day.plusDays(HORIZON_DAYS);
+
+		// read first so that a change made during the build causes another build
+		int version = WorkSchedule.getDefinitionVersion();
+
+		List<ShiftInstance> sorted = new ArrayList<>();
+
+		// generated in start time order
+		ShiftInstanceIterator iterator = new ShiftInstanceIterator(schedule, first, last);
+		while (iterator.hasNext()) {
+			sorted.add(iterator.next());
+		}
+
+		return new ShiftInstanceIndex(first, last, sorted, version);
+	}
+
+	static long toSecond(LocalDateTime dateTime) {
+		return dateTime.toEpochSecond(ZoneOffset.UTC);
+	}
+
+	int getVersion() {
+		return version;
+	}
+
+	boolean covers(long second) {
+		return second >= coveredFrom && second < coveredTo;
+	}
+
+	// index of the last instance starting at or before this time, else -1
+	private int floor(long second) {
+		int low = 0;
+		int high = starts.length - 1;
+		int found = -1;
+
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+
+			if (starts[mid] <= second) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find the earliest starting instance in progress at this time
+	 * 
+	 * @param second Local epoch second
+	 * @return {@link ShiftInstance} or null if none
+	 */
+	ShiftInstance find(long second) {
+		ShiftInstance found = null;
+
+		for (int i = floor(second); i >= 0 && starts[i] > second - SECONDS_PER_DAY; i--) {
+			if (ends[i] > second) {
+				found = instances[i];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Find all instances in progress at this time
+	 * 
+	 * @param second Local epoch second
+	 * @param found  List to add the instances to in start time order
+	 */
+	void findAll(long second, List<ShiftInstance> found) {
+		int last = floor(second);
+		int first = last;
+
+		while (first > 0 && starts[first - 1] > second - SECONDS_PER_DAY) {
+			first--;
+		}
+
+		for (int i = first; i >= 0 && i <= last; i++) {
+			if (ends[i] > second) {
+				found.add(instances[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*
+MIT License
+
+Copyright (c) 2016 Kent Randall
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+package org.point85.domain.schedule;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Class ShiftInstanceIterator generates the shift instances of a work schedule
+ * one day at a time, in start time order. Instances starting in a non-working
+ * period's dates are skipped, as in
+ * {@link WorkSchedule#getShiftInstancesForDay(LocalDate)}.
+ * 
+ * @author Kent Randall
+ *
+ */
+final class ShiftInstanceIterator implements Iterator<ShiftInstance> {
+	private final List<Team> teams;
+
+	// rotation periods and start epoch day by team
+	private final TimePeriod[][] teamPeriods;
+	private final long[] teamStartDays;
+
+	// non-working period first and last epoch days, sorted by first day
+	private final long[] nonWorkingFirstDays;
+	private final long[] nonWorkingLastDays;
+
+	// next non-working period that can contain the current day
+	private int nonWorkingIndex = 0;
+
+	private long day;
+	private final long lastDay;
+
+	// instances of the current day in start time order
+	private final ShiftInstance[] dayInstances;
+	private int dayCount = 0;
+	private int dayPosition = 0;
+
+	ShiftInstanceIterator(WorkSchedule schedule, LocalDate from, LocalDate to) throws Exception {
+		teams = new ArrayList<>(schedule.getTeams());
+
+		int teamCount = teams.size();
+		teamPeriods = new TimePeriod[teamCount][];
+		teamStartDays = new long[teamCount];
+
+		for (int i = 0; i < teamCount; i++) {
+			Team team = teams.get(i);
+			teamPeriods[i] = team.getRotation().getPeriods().toArray(new TimePeriod[0]);
+			teamStartDays[i] = team.getRotationStart().toEpochDay();
+		}
+
+		List<long[]> ranges = new ArrayList<>();
+		for (NonWorkingPeriod period : schedule.getNonWorkingPeriods()) {
+			ranges.add(new long[] { period.getStartDateTime().toLocalDate().toEpochDay(),
+					period.getEndDateTime().toLocalDate().toEpochDay() });
+		}
+		ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+
+		nonWorkingFirstDays = new long[ranges.size()];
+		nonWorkingLastDays = new long[ranges.size()];
+
+		for (int i = 0; i < ranges.size(); i++) {
+			nonWorkingFirstDays[i] = ranges.get(i)[0];
+			nonWorkingLastDays[i] = ranges.get(i)[1];
+		}
+
+		dayInstances = new ShiftInstance[teamCount];
+		day = from.toEpochDay();
+		lastDay = to.toEpochDay();
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (dayPosition == dayCount) {
+			if (day > lastDay) {
+				return false;
+			}
+			generateDay(day++);
+		}
+		return true;
+	}
+
+	@Override
+	public ShiftInstance next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return dayInstances[dayPosition++];
+	}
+
+	private boolean isNonWorkingDay(long epochDay) {
+		// periods are visited in day order
+		while (nonWorkingIndex < nonWorkingFirstDays.length && nonWorkingLastDays[nonWorkingIndex] < epochDay) {
+			nonWorkingIndex++;
+		}
+
+		for (int i = nonWorkingIndex; i < nonWorkingFirstDays.length && nonWorkingFirstDays[i] <= epochDay; i++) {
+			if (nonWorkingLastDays[i] >= epochDay) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void generateDay(long epochDay) {
+		dayCount = 0;
+		dayPosition = 0;
+
+		if (isNonWorkingDay(epochDay)) {
+			return;
+		}
+
+		LocalDate date = null;
+
+		for (int i = 0; i < teamPeriods.length; i++) {
+			TimePeriod[] periods = teamPeriods[i];
+
+			if (periods.length == 0 || epochDay < teamStartDays[i]) {
+				continue;
+			}
+
+			TimePeriod period = periods[(int) ((epochDay - teamStartDays[i]) % periods.length)];
+
+			if (!period.isWorkingPeriod()) {
+				continue;
+			}
+
+			if (date == null) {
+				date = LocalDate.ofEpochDay(epochDay);
+			}
+			ShiftInstance instance = new ShiftInstance((Shift) period, LocalDateTime.of(date, period.getStart()),
+					teams.get(i));
+
+			// insertion sort by start time, teams are few
+			int position = dayCount++;
+			while (position > 0 && dayInstances[position - 1].compareTo(instance) > 0) {
+				dayInstances[position] = dayInstances[position - 1];
+				position--;
+			}
+			dayInstances[position] = instance;
+		}
+	}
+}
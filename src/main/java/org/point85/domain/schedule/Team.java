@@ -29,7 +29,6 @@ import java.text.MessageFormat;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 
 import javax.persistence.AttributeOverride;
 import javax.persistence.CascadeType;
@@ -95,6 +94,7 @@ public class Team extends Named implements Comparable<Team> {
 	 */
 	public void setRotationStart(LocalDate rotationStart) {
 		this.rotationStart = rotationStart;
+		WorkSchedule.definitionChanged();
 	}
 
 	private long getDayFrom() {
@@ -118,6 +118,7 @@ public class Team extends Named implements Comparable<Team> {
 	 */
 	public void setRotation(Rotation rotation) {
 		this.rotation = rotation;
+		WorkSchedule.definitionChanged();
 	}
 
 	/**
@@ -237,7 +238,8 @@ public class Team extends Named implements Comparable<Team> {
 	}
 
 	/**
-	 * Calculate the schedule working time between the specified dates and times
+	 * Calculate the schedule working time between the specified dates and times.
+	 * The time after midnight of a shift that spans midnight is included.
 	 * 
 	 * @param from
 	 *            Starting date and time of day
@@ -253,76 +255,10 @@ public class Team extends Named implements Comparable<Team> {
 			throw new Exception(msg);
 		}
 
-		Duration sum = Duration.ZERO;
+		// whole rotations are multiplied out, only the edges are evaluated
+		RotationWorkingTime workingTime = new RotationWorkingTime(getRotation(), rotationStart);
 
-		LocalDate thisDate = from.toLocalDate();
-		LocalTime thisTime = from.toLocalTime();
-		LocalDate toDate = to.toLocalDate();
-		LocalTime toTime = to.toLocalTime();
-		int dayCount = getRotation().getDayCount();
-
-		// get the working shift from yesterday
-		Shift lastShift = null;
-
-		LocalDate yesterday = thisDate.plusDays(-1);
-		ShiftInstance yesterdayInstance = getShiftInstanceForDay(yesterday);
-
-		if (yesterdayInstance != null) {
-			lastShift = yesterdayInstance.getShift();
-		}
-
-		// step through each day until done
-		while (thisDate.compareTo(toDate) < 1) {
-			if (lastShift != null && lastShift.spansMidnight()) {
-				// check for days in the middle of the time period
-				boolean lastDay = thisDate.compareTo(toDate) == 0 ? true : false;
-
-				if (!lastDay || (lastDay && !toTime.equals(LocalTime.MIDNIGHT))) {
-					// add time after midnight in this day
-					int afterMidnightSecond = lastShift.getEnd().toSecondOfDay();
-					int fromSecond = thisTime.toSecondOfDay();
-
-					if (afterMidnightSecond > fromSecond) {
-						sum = sum.plusSeconds(afterMidnightSecond - fromSecond);
-					}
-				}
-			}
-
-			// today's shift
-			ShiftInstance instance = getShiftInstanceForDay(thisDate);
-
-			Duration duration = null;
-
-			if (instance != null) {
-				lastShift = instance.getShift();
-				// check for last date
-				if (thisDate.compareTo(toDate) == 0) {
-					duration = lastShift.calculateWorkingTime(thisTime, toTime, true);
-				} else {
-					duration = lastShift.calculateWorkingTime(thisTime, LocalTime.MAX, true);
-				}
-				sum = sum.plus(duration);
-			} else {
-				lastShift = null;
-			}
-
-			int n = 1;
-			if (getDayInRotation(thisDate) == dayCount) {
-				// move ahead by the rotation count if possible
-				LocalDate rotationEndDate = thisDate.plusDays(dayCount);
-
-				if (rotationEndDate.compareTo(toDate) < 0) {
-					n = dayCount;
-					sum = sum.plus(getRotation().getWorkingTime());
-				}
-			}
-
-			// move ahead n days starting at midnight
-			thisDate = thisDate.plusDays(n);
-			thisTime = LocalTime.MIDNIGHT;
-		} // end day loop
-
-		return sum;
+		return Duration.ofSeconds(workingTime.workingSeconds(from, to));
 	}
 
 	/**
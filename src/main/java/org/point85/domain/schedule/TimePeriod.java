@@ -84,6 +84,7 @@ abstract class TimePeriod extends Named {
 			throw new Exception(WorkSchedule.getMessage("duration.not.allowed"));
 		}
 		this.duration = duration;
+		WorkSchedule.definitionChanged();
 	}
 
 	/**
@@ -107,6 +108,7 @@ abstract class TimePeriod extends Named {
 			throw new Exception(WorkSchedule.getMessage("start.not.defined"));
 		}
 		this.startTime = startTime;
+		WorkSchedule.definitionChanged();
 	}
 
 	/**
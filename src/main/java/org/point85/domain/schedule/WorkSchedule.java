@@ -24,6 +24,8 @@ SOFTWARE.
 
 package org.point85.domain.schedule;
 
+import java.io.BufferedWriter;
+import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.MessageFormat;
 import java.time.Duration;
@@ -36,6 +38,11 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.AttributeOverride;
 import javax.persistence.CascadeType;
@@ -85,6 +92,16 @@ public class WorkSchedule extends NamedObject {
 	@OneToMany(mappedBy = "workSchedule", cascade = CascadeType.ALL, orphanRemoval = true)
 	private final List<Rotation> rotations = new ArrayList<>();
 
+	// version of the team, rotation, shift and non-working period definitions of
+	// all schedules, changed by their setters so that the indexes are rebuilt
+	private static final AtomicInteger definitionVersion = new AtomicInteger();
+
+	// shift instances around the last looked up time
+	private transient volatile ShiftInstanceIndex shiftInstanceIndex;
+
+	// sorted and merged non-working periods
+	private transient volatile NonWorkingIntervals nonWorkingIntervals;
+
 	public WorkSchedule() {
 		super();
 	}
@@ -113,6 +130,7 @@ public class WorkSchedule extends NamedObject {
 	public void deleteTeam(Team team) {
 		if (teams.contains(team)) {
 			teams.remove(team);
+			clearShiftInstanceIndex();
 		}
 	}
 
@@ -133,6 +151,7 @@ public class WorkSchedule extends NamedObject {
 	public void deleteNonWorkingPeriod(NonWorkingPeriod period) {
 		if (this.nonWorkingPeriods.contains(period)) {
 			this.nonWorkingPeriods.remove(period);
+			clearShiftInstanceIndex();
 		}
 	}
 
@@ -156,8 +175,22 @@ public class WorkSchedule extends NamedObject {
 	public List<ShiftInstance> getShiftInstancesForDay(LocalDate day) throws Exception {
 		List<ShiftInstance> workingShifts = new ArrayList<>();
 
+		addShiftInstancesForDay(day, workingShifts);
+
+		Collections.sort(workingShifts);
+
+		return workingShifts;
+	}
+
+	// add the working shift instances starting in this day, in team order
+	void addShiftInstancesForDay(LocalDate day, List<ShiftInstance> workingShifts) throws Exception {
 		// for each team see if there is a working shift
 		for (Team team : teams) {
+			if (team.getRotationStart() != null && day.isBefore(team.getRotationStart())) {
+				// rotation has not started
+				continue;
+			}
+
 			ShiftInstance instance = team.getShiftInstanceForDay(day);
 
 			if (instance == null) {
@@ -180,14 +213,11 @@ public class WorkSchedule extends NamedObject {
 				workingShifts.add(instance);
 			}
 		}
-
-		Collections.sort(workingShifts);
-
-		return workingShifts;
 	}
 
 	/**
-	 * Get the list of shift instances for the specified date and time of day
+	 * Get the list of shift instances in progress at the specified date and time
+	 * of day, including those that started on the previous day
 	 * 
 	 * @param dateTime Date and time of day
 	 * @return List of {@link ShiftInstance}
@@ -196,17 +226,53 @@ public class WorkSchedule extends NamedObject {
 	public List<ShiftInstance> getShiftInstancesForTime(LocalDateTime dateTime) throws Exception {
 		List<ShiftInstance> workingShifts = new ArrayList<>();
 
-		// day
-		List<ShiftInstance> candidateShifts = getShiftInstancesForDay(dateTime.toLocalDate());
+		long second = ShiftInstanceIndex.toSecond(dateTime);
+		getShiftInstanceIndex(dateTime, second).findAll(second, workingShifts);
 
-		// check time now
-		for (ShiftInstance instance : candidateShifts) {
-			if (instance.getShift().isInShift(dateTime.toLocalTime())) {
-				workingShifts.add(instance);
-			}
+		return workingShifts;
+	}
+
+	/**
+	 * Find the earliest starting shift instance in progress at the specified date
+	 * and time of day
+	 * 
+	 * @param dateTime Date and time of day
+	 * @return {@link ShiftInstance} or null if not in a shift
+	 * @throws Exception exception
+	 */
+	public ShiftInstance findShiftInstance(LocalDateTime dateTime) throws Exception {
+		long second = ShiftInstanceIndex.toSecond(dateTime);
+		return getShiftInstanceIndex(dateTime, second).find(second);
+	}
+
+	// rebuild the index when the time is outside of it
+	private ShiftInstanceIndex getShiftInstanceIndex(LocalDateTime dateTime, long second) throws Exception {
+		ShiftInstanceIndex index = shiftInstanceIndex;
+
+		if (index == null || index.getVersion() != definitionVersion.get() || !index.covers(second)) {
+			index = ShiftInstanceIndex.build(this, dateTime);
+			shiftInstanceIndex = index;
 		}
+		return index;
+	}
 
-		return workingShifts;
+	/**
+	 * Discard the indexed shift instances and non-working periods after changing
+	 * a team, rotation, shift or non-working period. Changes made through this
+	 * schedule or the setters of its parts clear the index.
+	 */
+	public void clearShiftInstanceIndex() {
+		shiftInstanceIndex = null;
+		nonWorkingIntervals = null;
+	}
+
+	// a team, rotation, shift or non-working period has been changed
+	static void definitionChanged() {
+		definitionVersion.incrementAndGet();
+	}
+
+	static int getDefinitionVersion() {
+		return definitionVersion.get();
 	}
 
 	/**
@@ -230,6 +296,7 @@ public class WorkSchedule extends NamedObject {
 
 		teams.add(team);
 		team.setWorkSchedule(this);
+		clearShiftInstanceIndex();
 		return team;
 	}
 
@@ -302,6 +369,7 @@ public class WorkSchedule extends NamedObject {
 		}
 
 		shifts.remove(shift);
+		clearShiftInstanceIndex();
 	}
 
 	/**
@@ -326,6 +394,7 @@ public class WorkSchedule extends NamedObject {
 		nonWorkingPeriods.add(period);
 
 		Collections.sort(nonWorkingPeriods);
+		clearShiftInstanceIndex();
 
 		return period;
 	}
@@ -390,6 +459,7 @@ public class WorkSchedule extends NamedObject {
 
 	/**
 	 * Calculate the non-working time between the specified dates and times of day.
+	 * Overlapping non-working periods are counted once.
 	 * 
 	 * @param from Starting date and time
 	 * @param to   Ending date and time
@@ -397,47 +467,17 @@ public class WorkSchedule extends NamedObject {
 	 * @throws Exception exception
 	 */
 	public Duration calculateNonWorkingTime(LocalDateTime from, LocalDateTime to) throws Exception {
-		Duration sum = Duration.ZERO;
+		NonWorkingIntervals intervals = nonWorkingIntervals;
+
+		if (intervals == null || intervals.getVersion() != definitionVersion.get()) {
+			intervals = new NonWorkingIntervals(getNonWorkingPeriods());
+			nonWorkingIntervals = intervals;
+		}
 
 		long fromSeconds = from.atZone(ZONE_ID).toEpochSecond();
 		long toSeconds = to.atZone(ZONE_ID).toEpochSecond();
 
-		for (NonWorkingPeriod period : getNonWorkingPeriods()) {
-			LocalDateTime start = period.getStartDateTime();
-			long startSeconds = start.atZone(ZONE_ID).toEpochSecond();
-
-			LocalDateTime end = period.getEndDateTime();
-			long endSeconds = end.atZone(ZONE_ID).toEpochSecond();
-
-			if (fromSeconds >= endSeconds) {
-				// look at next period
-				continue;
-			}
-
-			if (toSeconds <= startSeconds) {
-				// done with periods
-				break;
-			}
-
-			if (fromSeconds <= endSeconds) {
-				// found a period, check edge conditions
-				if (fromSeconds > startSeconds) {
-					startSeconds = fromSeconds;
-				}
-
-				if (toSeconds < endSeconds) {
-					endSeconds = toSeconds;
-				}
-
-				sum = sum.plusSeconds(endSeconds - startSeconds);
-			}
-
-			if (toSeconds <= endSeconds) {
-				break;
-			}
-		}
-
-		return sum;
+		return Duration.ofSeconds(intervals.nonWorkingSeconds(fromSeconds, toSeconds));
 	}
 
 	/**
@@ -494,6 +534,81 @@ public class WorkSchedule extends NamedObject {
 		}
 	}
 
+	/**
+	 * Generate the working shift instances starting on the days from the start
+	 * date to the end date inclusive, in start time order. Instances are created
+	 * as the stream is consumed.
+	 * 
+	 * @param start Starting date
+	 * @param end   Ending date
+	 * @return Stream of {@link ShiftInstance}
+	 * @throws Exception exception
+	 */
+	public Stream<ShiftInstance> shiftInstances(LocalDate start, LocalDate end) throws Exception {
+		if (start.isAfter(end)) {
+			String msg = MessageFormat.format(WorkSchedule.getMessage("end.earlier.than.start"), start, end);
+			throw new Exception(msg);
+		}
+
+		ShiftInstanceIterator iterator = new ShiftInstanceIterator(this, start, end);
+
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+	}
+
+	/**
+	 * Write the working shift instances starting on the days from the start date
+	 * to the end date inclusive as CSV with columns team, shift, start and end
+	 * 
+	 * @param start  Starting date
+	 * @param end    Ending date
+	 * @param writer {@link Writer}
+	 * @return Number of shift instances written
+	 * @throws Exception exception
+	 */
+	public long writeShiftInstances(LocalDate start, LocalDate end, Writer writer) throws Exception {
+		if (start.isAfter(end)) {
+			String msg = MessageFormat.format(WorkSchedule.getMessage("end.earlier.than.start"), start, end);
+			throw new Exception(msg);
+		}
+
+		ShiftInstanceIterator iterator = new ShiftInstanceIterator(this, start, end);
+
+		BufferedWriter out = writer instanceof BufferedWriter ? (BufferedWriter) writer : new BufferedWriter(writer);
+		out.write("team,shift,start,end");
+		out.newLine();
+
+		long count = 0;
+		while (iterator.hasNext()) {
+			ShiftInstance instance = iterator.next();
+
+			out.write(toCsvField(instance.getTeam().getName()));
+			out.write(',');
+			out.write(toCsvField(instance.getShift().getName()));
+			out.write(',');
+			out.write(instance.getStartTime().toString());
+			out.write(',');
+			out.write(instance.getEndTime().toString());
+			out.newLine();
+			count++;
+		}
+		out.flush();
+
+		return count;
+	}
+
+	// quote a CSV field containing a separator, quote or line break
+	private static String toCsvField(String value) {
+		if (value == null) {
+			return "";
+		}
+
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
 	/**
 	 * Build a string value for the work schedule
 	 * 
@@ -0,0 +1,152 @@
+/*
+MIT License
+
+Copyright (c) 2016 Kent Randall
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package org.point85.domain.uom;
+
+import java.util.Arrays;
+
+/**
+ * The ConversionTable class holds the conversion factors between registered
+ * units of measure. Each registered unit is given a dense, stable index and the
+ * factors are stored in rows by the index of the unit converted from. Factors
+ * are resolved on first use. Reads do not lock; a factor not yet visible to a
+ * reading thread is simply resolved again.
+ * 
+ * @author Kent Randall
+ *
+ */
+final class ConversionTable {
+	// initial number of rows
+	private static final int INITIAL_CAPACITY = 512;
+
+	// next unit index
+	private int nextIndex = 0;
+
+	// factor rows by source unit index, NaN until resolved
+	private volatile double[][] rows = new double[INITIAL_CAPACITY][];
+
+	/**
+	 * Give the unit of measure an index if it does not already have one
+	 * 
+	 * @param uom {@link UnitOfMeasure}
+	 */
+	synchronized void register(UnitOfMeasure uom) {
+		if (uom.getConversionIndex() < 0) {
+			uom.setConversionIndex(nextIndex++);
+		}
+	}
+
+	/**
+	 * Get the number of indexed units of measure
+	 * 
+	 * @return Count
+	 */
+	synchronized int size() {
+		return nextIndex;
+	}
+
+	/**
+	 * Get the cached conversion factor
+	 * 
+	 * @param fromIndex Index of the source unit of measure
+	 * @param toIndex   Index of the target unit of measure
+	 * @return Factor or NaN if not resolved
+	 */
+	double getFactor(int fromIndex, int toIndex) {
+		double[][] table = rows;
+
+		if (fromIndex < table.length) {
+			double[] row = table[fromIndex];
+
+			if (row != null && toIndex < row.length) {
+				return row[toIndex];
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Cache a conversion factor
+	 * 
+	 * @param fromIndex Index of the source unit of measure
+	 * @param toIndex   Index of the target unit of measure
+	 * @param factor    Conversion factor
+	 */
+	synchronized void putFactor(int fromIndex, int toIndex, double factor) {
+		double[][] table = rows;
+
+		if (fromIndex >= table.length) {
+			table = Arrays.copyOf(table, Math.max(fromIndex + 1, table.length * 2));
+		}
+
+		double[] row = table[fromIndex];
+
+		if (row == null || toIndex >= row.length) {
+			// new rows are sized for all current units
+			int length = Math.max(toIndex + 1, nextIndex);
+			double[] newRow = new double[length];
+			Arrays.fill(newRow, Double.NaN);
+
+			if (row != null) {
+				System.arraycopy(row, 0, newRow, 0, row.length);
+			}
+			row = newRow;
+			table[fromIndex] = row;
+		}
+		row[toIndex] = factor;
+
+		// publish
+		rows = table;
+	}
+
+	/**
+	 * Remove the cached factors to and from this unit of measure
+	 * 
+	 * @param index Index of the unit of measure
+	 */
+	synchronized void removeFactors(int index) {
+		if (index < 0) {
+			return;
+		}
+
+		double[][] table = rows;
+
+		if (index < table.length) {
+			table[index] = null;
+		}
+
+		for (double[] row : table) {
+			if (row != null && index < row.length) {
+				row[index] = Double.NaN;
+			}
+		}
+		rows = table;
+	}
+
+	/**
+	 * Remove all cached factors. Unit indexes are kept.
+	 */
+	synchronized void clear() {
+		rows = new double[Math.max(INITIAL_CAPACITY, nextIndex)][];
+	}
+}
@@ -26,7 +26,6 @@ package org.point85.domain.uom;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -81,9 +80,6 @@ public class MeasurementSystem {
 	// resource bundle for exception messages
 	private static ResourceBundle messages;
 
-	// standard unified system
-	private static MeasurementSystem unifiedSystem;
-
 	// name of resource bundle with translatable strings for UOMs (e.g. time)
 	private static final String UNIT_BUNDLE_NAME = "Unit";
 
@@ -93,6 +89,9 @@ public class MeasurementSystem {
 	// UOM cache manager
 	private final CacheManager cacheManager;
 
+	// conversion factors between registered units
+	private static final ConversionTable conversionTable = new ConversionTable();
+
 	private MeasurementSystem() {
 		cacheManager = new CacheManager();
 
@@ -107,11 +106,18 @@ public class MeasurementSystem {
 	 * 
 	 * @return {@link MeasurementSystem}
 	 */
-	public static synchronized MeasurementSystem instance() {
-		if (unifiedSystem == null) {
-			unifiedSystem = new MeasurementSystem();
-		}
-		return unifiedSystem;
+	public static MeasurementSystem instance() {
+		return SystemHolder.UNIFIED_SYSTEM;
+	}
+
+	// standard unified system, created on first use by the class loader
+	private static class SystemHolder {
+		private static final MeasurementSystem UNIFIED_SYSTEM = new MeasurementSystem();
+	}
+
+	// get the conversion factors between registered units
+	static ConversionTable getConversionTable() {
+		return conversionTable;
 	}
 
 	// get a particular message by its key
@@ -1385,6 +1391,7 @@ public class MeasurementSystem {
 	 */
 	public void clearCache() {
 		cacheManager.clearCache();
+		conversionTable.clear();
 	}
 
 	/**
@@ -1393,16 +1400,7 @@ public class MeasurementSystem {
 	 * @return List of {@link UnitOfMeasure}
 	 */
 	public List<UnitOfMeasure> getRegisteredUnits() {
-		Collection<UnitOfMeasure> units = cacheManager.getCachedUnits();
-		List<UnitOfMeasure> list = new ArrayList<UnitOfMeasure>(units);
-
-		Collections.sort(list, new Comparator<UnitOfMeasure>() {
-			public int compare(UnitOfMeasure unit1, UnitOfMeasure unit2) {
-				return unit1.getSymbol().compareTo(unit2.getSymbol());
-			}
-		});
-
-		return list;
+		return new ArrayList<UnitOfMeasure>(cacheManager.getSortedUnits());
 	}
 
 	/**
@@ -1811,326 +1809,11 @@ public class MeasurementSystem {
 	 *             Exception
 	 */
 	public List<UnitOfMeasure> getUnitsOfMeasure(UnitType type) throws Exception {
-		List<UnitOfMeasure> units = new ArrayList<UnitOfMeasure>();
-
-		switch (type) {
-		case LENGTH:
-			// SI
-			units.add(getUOM(Unit.METRE));
-			units.add(getUOM(Unit.ANGSTROM));
-			units.add(getUOM(Unit.PARSEC));
-			units.add(getUOM(Unit.ASTRONOMICAL_UNIT));
-
-			// customary
-			units.add(getUOM(Unit.FOOT));
-			units.add(getUOM(Unit.INCH));
-			units.add(getUOM(Unit.MIL));
-			units.add(getUOM(Unit.POINT));
-			units.add(getUOM(Unit.YARD));
-			units.add(getUOM(Unit.MILE));
-			units.add(getUOM(Unit.NAUTICAL_MILE));
-			units.add(getUOM(Unit.FATHOM));
-			break;
-
-		case MASS:
-			// SI
-			units.add(getUOM(Unit.KILOGRAM));
-			units.add(getUOM(Unit.TONNE));
-			units.add(getUOM(Unit.CARAT));
-
-			// customary
-			units.add(getUOM(Unit.POUND_MASS));
-			units.add(getUOM(Unit.OUNCE));
-			units.add(getUOM(Unit.TROY_OUNCE));
-			units.add(getUOM(Unit.SLUG));
-			units.add(getUOM(Unit.GRAIN));
-
-			// US
-			units.add(getUOM(Unit.US_TON));
-
-			// British
-			units.add(getUOM(Unit.BR_TON));
-			break;
-
-		case TIME:
-			units.add(getUOM(Unit.SECOND));
-			units.add(getUOM(Unit.MINUTE));
-			units.add(getUOM(Unit.HOUR));
-			units.add(getUOM(Unit.DAY));
-			units.add(getUOM(Unit.WEEK));
-			units.add(getUOM(Unit.JULIAN_YEAR));
-
-			break;
-
-		case ACCELERATION:
-			units.add(getUOM(Unit.METRE_PER_SEC_SQUARED));
-			units.add(getUOM(Unit.FEET_PER_SEC_SQUARED));
-			break;
-
-		case AREA:
-			// customary
-			units.add(getUOM(Unit.SQUARE_INCH));
-			units.add(getUOM(Unit.SQUARE_FOOT));
-			units.add(getUOM(Unit.SQUARE_YARD));
-			units.add(getUOM(Unit.ACRE));
-
-			// SI
-			units.add(getUOM(Unit.SQUARE_METRE));
-			units.add(getUOM(Unit.HECTARE));
-
-			break;
-
-		case CATALYTIC_ACTIVITY:
-			units.add(getUOM(Unit.KATAL));
-			units.add(getUOM(Unit.UNIT));
-			break;
-
-		case COMPUTER_SCIENCE:
-			units.add(getUOM(Unit.BIT));
-			units.add(getUOM(Unit.BYTE));
-			break;
-
-		case DENSITY:
-			units.add(getUOM(Unit.KILOGRAM_PER_CU_METRE));
-			break;
-
-		case DYNAMIC_VISCOSITY:
-			units.add(getUOM(Unit.PASCAL_SECOND));
-			break;
-
-		case ELECTRIC_CAPACITANCE:
-			units.add(getUOM(Unit.FARAD));
-			break;
-
-		case ELECTRIC_CHARGE:
-			units.add(getUOM(Unit.COULOMB));
-			break;
-
-		case ELECTRIC_CONDUCTANCE:
-			units.add(getUOM(Unit.SIEMENS));
-			break;
-
-		case ELECTRIC_CURRENT:
-			units.add(getUOM(Unit.AMPERE));
-			break;
-
-		case ELECTRIC_FIELD_STRENGTH:
-			units.add(getUOM(Unit.AMPERE_PER_METRE));
-			break;
-
-		case ELECTRIC_INDUCTANCE:
-			units.add(getUOM(Unit.HENRY));
-			break;
-
-		case ELECTRIC_PERMITTIVITY:
-			units.add(getUOM(Unit.FARAD_PER_METRE));
-			break;
-
-		case ELECTRIC_RESISTANCE:
-			units.add(getUOM(Unit.OHM));
-			break;
-
-		case ELECTROMOTIVE_FORCE:
-			units.add(getUOM(Unit.VOLT));
-			break;
-
-		case ENERGY:
-			// customary
-			units.add(getUOM(Unit.BTU));
-			units.add(getUOM(Unit.FOOT_POUND_FORCE));
-
-			// SI
-			units.add(getUOM(Unit.CALORIE));
-			units.add(getUOM(Unit.NEWTON_METRE));
-			units.add(getUOM(Unit.JOULE));
-			units.add(getUOM(Unit.WATT_HOUR));
-			units.add(getUOM(Unit.ELECTRON_VOLT));
-			break;
-
-		case CURRENCY:
-			units.add(getUOM(Unit.US_DOLLAR));
-			units.add(getUOM(Unit.EURO));
-			units.add(getUOM(Unit.YUAN));
-			break;
-
-		case FORCE:
-			// customary
-			units.add(getUOM(Unit.POUND_FORCE));
-
-			// SI
-			units.add(getUOM(Unit.NEWTON));
-			break;
-
-		case FREQUENCY:
-			units.add(getUOM(Unit.REV_PER_MIN));
-			units.add(getUOM(Unit.HERTZ));
-			units.add(getUOM(Unit.RAD_PER_SEC));
-			break;
-
-		case ILLUMINANCE:
-			units.add(getUOM(Unit.LUX));
-			break;
+		List<Unit> enumerations = UnitCatalogue.getUnits(type);
+		List<UnitOfMeasure> units = new ArrayList<UnitOfMeasure>(enumerations.size());
 
-		case INTENSITY:
-			units.add(getUOM(Unit.DECIBEL));
-			break;
-
-		case IRRADIANCE:
-			units.add(getUOM(Unit.WATTS_PER_SQ_METRE));
-			break;
-
-		case KINEMATIC_VISCOSITY:
-			units.add(getUOM(Unit.SQUARE_METRE_PER_SEC));
-			break;
-
-		case LUMINOSITY:
-			units.add(getUOM(Unit.CANDELA));
-			break;
-
-		case LUMINOUS_FLUX:
-			units.add(getUOM(Unit.LUMEN));
-			break;
-
-		case MAGNETIC_FLUX:
-			units.add(getUOM(Unit.WEBER));
-			break;
-
-		case MAGNETIC_FLUX_DENSITY:
-			units.add(getUOM(Unit.TESLA));
-			break;
-
-		case MASS_FLOW:
-			units.add(getUOM(Unit.KILOGRAM_PER_SEC));
-			break;
-
-		case MOLAR_CONCENTRATION:
-			units.add(getUOM(Unit.PH));
-			break;
-
-		case PLANE_ANGLE:
-			units.add(getUOM(Unit.DEGREE));
-			units.add(getUOM(Unit.RADIAN));
-			units.add(getUOM(Unit.ARC_SECOND));
-			break;
-
-		case POWER:
-			units.add(getUOM(Unit.HP));
-			units.add(getUOM(Unit.WATT));
-			break;
-
-		case PRESSURE:
-			// customary
-			units.add(getUOM(Unit.PSI));
-			units.add(getUOM(Unit.IN_HG));
-
-			// SI
-			units.add(getUOM(Unit.PASCAL));
-			units.add(getUOM(Unit.ATMOSPHERE));
-			units.add(getUOM(Unit.BAR));
-			break;
-
-		case RADIATION_DOSE_ABSORBED:
-			units.add(getUOM(Unit.GRAY));
-			break;
-
-		case RADIATION_DOSE_EFFECTIVE:
-			units.add(getUOM(Unit.SIEVERT));
-			break;
-
-		case RADIATION_DOSE_RATE:
-			units.add(getUOM(Unit.SIEVERTS_PER_HOUR));
-			break;
-
-		case RADIOACTIVITY:
-			units.add(getUOM(Unit.BECQUEREL));
-			break;
-
-		case RECIPROCAL_LENGTH:
-			units.add(getUOM(Unit.DIOPTER));
-			break;
-
-		case SOLID_ANGLE:
-			units.add(getUOM(Unit.STERADIAN));
-			break;
-
-		case SUBSTANCE_AMOUNT:
-			units.add(getUOM(Unit.MOLE));
-			units.add(getUOM(Unit.EQUIVALENT));
-			units.add(getUOM(Unit.INTERNATIONAL_UNIT));
-			break;
-
-		case TEMPERATURE:
-			// customary
-			units.add(getUOM(Unit.RANKINE));
-			units.add(getUOM(Unit.FAHRENHEIT));
-
-			// SI
-			units.add(getUOM(Unit.KELVIN));
-			units.add(getUOM(Unit.CELSIUS));
-			break;
-
-		case TIME_SQUARED:
-			units.add(getUOM(Unit.SQUARE_SECOND));
-			break;
-
-		case UNCLASSIFIED:
-			break;
-
-		case UNITY:
-			units.add(getUOM(Unit.ONE));
-			units.add(getUOM(Unit.PERCENT));
-			break;
-
-		case VELOCITY:
-			// customary
-			units.add(getUOM(Unit.FEET_PER_SEC));
-			units.add(getUOM(Unit.MILES_PER_HOUR));
-			units.add(getUOM(Unit.KNOT));
-
-			// SI
-			units.add(getUOM(Unit.METRE_PER_SEC));
-			break;
-
-		case VOLUME:
-			// British
-			units.add(getUOM(Unit.BR_BUSHEL));
-			units.add(getUOM(Unit.BR_CUP));
-			units.add(getUOM(Unit.BR_FLUID_OUNCE));
-			units.add(getUOM(Unit.BR_GALLON));
-			units.add(getUOM(Unit.BR_PINT));
-			units.add(getUOM(Unit.BR_QUART));
-			units.add(getUOM(Unit.BR_TABLESPOON));
-			units.add(getUOM(Unit.BR_TEASPOON));
-
-			// customary
-			units.add(getUOM(Unit.CUBIC_FOOT));
-			units.add(getUOM(Unit.CUBIC_YARD));
-			units.add(getUOM(Unit.CUBIC_INCH));
-			units.add(getUOM(Unit.CORD));
-
-			// SI
-			units.add(getUOM(Unit.CUBIC_METRE));
-			units.add(getUOM(Unit.LITRE));
-
-			// US
-			units.add(getUOM(Unit.US_BARREL));
-			units.add(getUOM(Unit.US_BUSHEL));
-			units.add(getUOM(Unit.US_CUP));
-			units.add(getUOM(Unit.US_FLUID_OUNCE));
-			units.add(getUOM(Unit.US_GALLON));
-			units.add(getUOM(Unit.US_PINT));
-			units.add(getUOM(Unit.US_QUART));
-			units.add(getUOM(Unit.US_TABLESPOON));
-			units.add(getUOM(Unit.US_TEASPOON));
-			break;
-
-		case VOLUMETRIC_FLOW:
-			units.add(getUOM(Unit.CUBIC_METRE_PER_SEC));
-			units.add(getUOM(Unit.CUBIC_FEET_PER_SEC));
-			break;
-
-		default:
-			break;
+		for (Unit unit : enumerations) {
+			units.add(getUOM(unit));
 		}
 
 		return units;
@@ -2162,10 +1845,28 @@ public class MeasurementSystem {
 			symbolRegistry.clear();
 			baseRegistry.clear();
 			unitRegistry.clear();
+			sortedUnits = null;
 		}
 
-		private Collection<UnitOfMeasure> getCachedUnits() {
-			return symbolRegistry.values();
+		// registered units sorted by symbol, rebuilt after a change
+		private volatile List<UnitOfMeasure> sortedUnits;
+
+		private List<UnitOfMeasure> getSortedUnits() {
+			List<UnitOfMeasure> units = sortedUnits;
+
+			if (units == null) {
+				units = new ArrayList<UnitOfMeasure>(symbolRegistry.values());
+
+				Collections.sort(units, new Comparator<UnitOfMeasure>() {
+					public int compare(UnitOfMeasure unit1, UnitOfMeasure unit2) {
+						return unit1.getSymbol().compareTo(unit2.getSymbol());
+					}
+				});
+
+				units = Collections.unmodifiableList(units);
+				sortedUnits = units;
+			}
+			return units;
 		}
 
 		private Map<String, UnitOfMeasure> getSymbolCache() {
@@ -2188,6 +1889,10 @@ public class MeasurementSystem {
 			// remove by symbol and base symbol
 			symbolRegistry.remove(uom.getSymbol());
 			baseRegistry.remove(uom.getBaseSymbol());
+			sortedUnits = null;
+
+			// the conversion may change
+			conversionTable.removeFactors(uom.getConversionIndex());
 		}
 
 		private void registerUnit(UnitOfMeasure uom) throws Exception {
@@ -2203,6 +1908,8 @@ public class MeasurementSystem {
 
 			// cache it
 			symbolRegistry.put(key, uom);
+			conversionTable.register(uom);
+			sortedUnits = null;
 
 			// next by unit enumeration
 			Unit id = uom.getEnumeration();
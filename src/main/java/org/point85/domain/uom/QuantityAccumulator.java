@@ -0,0 +1,184 @@
+/*
+MIT License
+
+Copyright (c) 2016 Kent Randall
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package org.point85.domain.uom;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The QuantityAccumulator class sums amounts of possibly different units of
+ * measure into a primitive amount of one {@link UnitOfMeasure}. The conversion
+ * from each source unit of measure is resolved once, so summing many
+ * quantities does not create intermediate {@link Quantity} objects.
+ * 
+ * @author Kent Randall
+ *
+ */
+public class QuantityAccumulator {
+	// unit of measure of the sum
+	private final UnitOfMeasure uom;
+
+	// sum in the accumulated unit of measure
+	private double amount = 0.0d;
+
+	// number of amounts added
+	private long count = 0;
+
+	// multiplier and offsets by source unit of measure
+	private final Map<UnitOfMeasure, double[]> conversions = new IdentityHashMap<>();
+
+	// last used conversion
+	private UnitOfMeasure lastUOM;
+	private double[] lastConversion;
+
+	// quantity for the current sum
+	private Quantity quantity;
+
+	/**
+	 * Construct an accumulator with a zero amount
+	 * 
+	 * @param uom {@link UnitOfMeasure} of the sum
+	 */
+	public QuantityAccumulator(UnitOfMeasure uom) {
+		this.uom = uom;
+	}
+
+	/**
+	 * Construct an accumulator starting with a quantity. Amounts added later are
+	 * converted to its unit of measure.
+	 * 
+	 * @param quantity Initial {@link Quantity}
+	 */
+	public QuantityAccumulator(Quantity quantity) {
+		this.uom = quantity.getUOM();
+		this.amount = quantity.getAmount();
+		this.count = 1;
+		this.quantity = quantity;
+	}
+
+	/**
+	 * Get the unit of measure of the sum
+	 * 
+	 * @return {@link UnitOfMeasure}
+	 */
+	public UnitOfMeasure getUOM() {
+		return uom;
+	}
+
+	/**
+	 * Get the sum
+	 * 
+	 * @return Amount in the accumulated unit of measure
+	 */
+	public double getAmount() {
+		return amount;
+	}
+
+	/**
+	 * Get the number of amounts added
+	 * 
+	 * @return Count
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Add a quantity
+	 * 
+	 * @param other {@link Quantity}
+	 * @throws Exception Exception
+	 */
+	public void add(Quantity other) throws Exception {
+		add(other.getAmount(), other.getUOM());
+	}
+
+	/**
+	 * Add an amount of the specified unit of measure
+	 * 
+	 * @param otherAmount Amount
+	 * @param otherUOM    {@link UnitOfMeasure} of the amount
+	 * @throws Exception Exception
+	 */
+	public void add(double otherAmount, UnitOfMeasure otherUOM) throws Exception {
+		amount += convert(otherAmount, otherUOM);
+		count++;
+		quantity = null;
+	}
+
+	/**
+	 * Convert an amount to the accumulated unit of measure without adding it
+	 * 
+	 * @param otherAmount Amount
+	 * @param otherUOM    {@link UnitOfMeasure} of the amount
+	 * @return Converted amount
+	 * @throws Exception Exception
+	 */
+	public double convert(double otherAmount, UnitOfMeasure otherUOM) throws Exception {
+		if (otherUOM == uom) {
+			return otherAmount;
+		}
+
+		if (otherUOM != lastUOM) {
+			double[] conversion = conversions.get(otherUOM);
+
+			if (conversion == null) {
+				// same relation as Quantity.convert()
+				conversion = new double[] { otherUOM.getConversionFactor(uom), otherUOM.getOffset(),
+						uom.getOffset() };
+				conversions.put(otherUOM, conversion);
+			}
+			lastUOM = otherUOM;
+			lastConversion = conversion;
+		}
+
+		return (otherAmount + lastConversion[1]) * lastConversion[0] - lastConversion[2];
+	}
+
+	/**
+	 * Set the sum back to zero. Resolved conversions are kept.
+	 */
+	public void reset() {
+		amount = 0.0d;
+		count = 0;
+		quantity = null;
+	}
+
+	/**
+	 * Create a quantity for the sum
+	 * 
+	 * @return {@link Quantity}
+	 */
+	public Quantity toQuantity() {
+		if (quantity == null) {
+			quantity = new Quantity(amount, uom);
+		}
+		return quantity;
+	}
+
+	@Override
+	public String toString() {
+		return amount + " " + (uom != null ? uom.getSymbol() : "") + " (" + count + ")";
+	}
+}
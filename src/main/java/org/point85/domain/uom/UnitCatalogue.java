@@ -0,0 +1,284 @@
+/*
+MIT License
+
+Copyright (c) 2016 Kent Randall
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+package org.point85.domain.uom;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The UnitCatalogue class lists the enumerated units of measure offered for
+ * each {@link UnitType}. The units themselves are only created when requested
+ * from the {@link MeasurementSystem}.
+ * 
+ * @author Kent Randall
+ *
+ */
+final class UnitCatalogue {
+	// enumerated units by type, in display order
+	private static final Map<UnitType, List<Unit>> unitsByType = new EnumMap<>(UnitType.class);
+
+	static {
+		add(UnitType.LENGTH,
+				// SI
+				Unit.METRE,
+				Unit.ANGSTROM,
+				Unit.PARSEC,
+				Unit.ASTRONOMICAL_UNIT,
+				// customary
+				Unit.FOOT,
+				Unit.INCH,
+				Unit.MIL,
+				Unit.POINT,
+				Unit.YARD,
+				Unit.MILE,
+				Unit.NAUTICAL_MILE,
+				Unit.FATHOM);
+
+		add(UnitType.MASS,
+				// SI
+				Unit.KILOGRAM,
+				Unit.TONNE,
+				Unit.CARAT,
+				// customary
+				Unit.POUND_MASS,
+				Unit.OUNCE,
+				Unit.TROY_OUNCE,
+				Unit.SLUG,
+				Unit.GRAIN,
+				// US
+				Unit.US_TON,
+				// British
+				Unit.BR_TON);
+
+		add(UnitType.TIME,
+				Unit.SECOND,
+				Unit.MINUTE,
+				Unit.HOUR,
+				Unit.DAY,
+				Unit.WEEK,
+				Unit.JULIAN_YEAR);
+
+		add(UnitType.ACCELERATION,
+				Unit.METRE_PER_SEC_SQUARED,
+				Unit.FEET_PER_SEC_SQUARED);
+
+		add(UnitType.AREA,
+				// customary
+				Unit.SQUARE_INCH,
+				Unit.SQUARE_FOOT,
+				Unit.SQUARE_YARD,
+				Unit.ACRE,
+				// SI
+				Unit.SQUARE_METRE,
+				Unit.HECTARE);
+
+		add(UnitType.CATALYTIC_ACTIVITY,
+				Unit.KATAL,
+				Unit.UNIT);
+
+		add(UnitType.COMPUTER_SCIENCE,
+				Unit.BIT,
+				Unit.BYTE);
+
+		add(UnitType.DENSITY, Unit.KILOGRAM_PER_CU_METRE);
+
+		add(UnitType.DYNAMIC_VISCOSITY, Unit.PASCAL_SECOND);
+
+		add(UnitType.ELECTRIC_CAPACITANCE, Unit.FARAD);
+
+		add(UnitType.ELECTRIC_CHARGE, Unit.COULOMB);
+
+		add(UnitType.ELECTRIC_CONDUCTANCE, Unit.SIEMENS);
+
+		add(UnitType.ELECTRIC_CURRENT, Unit.AMPERE);
+
+		add(UnitType.ELECTRIC_FIELD_STRENGTH, Unit.AMPERE_PER_METRE);
+
+		add(UnitType.ELECTRIC_INDUCTANCE, Unit.HENRY);
+
+		add(UnitType.ELECTRIC_PERMITTIVITY, Unit.FARAD_PER_METRE);
+
+		add(UnitType.ELECTRIC_RESISTANCE, Unit.OHM);
+
+		add(UnitType.ELECTROMOTIVE_FORCE, Unit.VOLT);
+
+		add(UnitType.ENERGY,
+				// customary
+				Unit.BTU,
+				Unit.FOOT_POUND_FORCE,
+				// SI
+				Unit.CALORIE,
+				Unit.NEWTON_METRE,
+				Unit.JOULE,
+				Unit.WATT_HOUR,
+				Unit.ELECTRON_VOLT);
+
+		add(UnitType.CURRENCY,
+				Unit.US_DOLLAR,
+				Unit.EURO,
+				Unit.YUAN);
+
+		add(UnitType.FORCE,
+				// customary
+				Unit.POUND_FORCE,
+				// SI
+				Unit.NEWTON);
+
+		add(UnitType.FREQUENCY,
+				Unit.REV_PER_MIN,
+				Unit.HERTZ,
+				Unit.RAD_PER_SEC);
+
+		add(UnitType.ILLUMINANCE, Unit.LUX);
+
+		add(UnitType.INTENSITY, Unit.DECIBEL);
+
+		add(UnitType.IRRADIANCE, Unit.WATTS_PER_SQ_METRE);
+
+		add(UnitType.KINEMATIC_VISCOSITY, Unit.SQUARE_METRE_PER_SEC);
+
+		add(UnitType.LUMINOSITY, Unit.CANDELA);
+
+		add(UnitType.LUMINOUS_FLUX, Unit.LUMEN);
+
+		add(UnitType.MAGNETIC_FLUX, Unit.WEBER);
+
+		add(UnitType.MAGNETIC_FLUX_DENSITY, Unit.TESLA);
+
+		add(UnitType.MASS_FLOW, Unit.KILOGRAM_PER_SEC);
+
+		add(UnitType.MOLAR_CONCENTRATION, Unit.PH);
+
+		add(UnitType.PLANE_ANGLE,
+				Unit.DEGREE,
+				Unit.RADIAN,
+				Unit.ARC_SECOND);
+
+		add(UnitType.POWER,
+				Unit.HP,
+				Unit.WATT);
+
+		add(UnitType.PRESSURE,
+				// customary
+				Unit.PSI,
+				Unit.IN_HG,
+				// SI
+				Unit.PASCAL,
+				Unit.ATMOSPHERE,
+				Unit.BAR);
+
+		add(UnitType.RADIATION_DOSE_ABSORBED, Unit.GRAY);
+
+		add(UnitType.RADIATION_DOSE_EFFECTIVE, Unit.SIEVERT);
+
+		add(UnitType.RADIATION_DOSE_RATE, Unit.SIEVERTS_PER_HOUR);
+
+		add(UnitType.RADIOACTIVITY, Unit.BECQUEREL);
+
+		add(UnitType.RECIPROCAL_LENGTH, Unit.DIOPTER);
+
+		add(UnitType.SOLID_ANGLE, Unit.STERADIAN);
+
+		add(UnitType.SUBSTANCE_AMOUNT,
+				Unit.MOLE,
+				Unit.EQUIVALENT,
+				Unit.INTERNATIONAL_UNIT);
+
+		add(UnitType.TEMPERATURE,
+				// customary
+				Unit.RANKINE,
+				Unit.FAHRENHEIT,
+				// SI
+				Unit.KELVIN,
+				Unit.CELSIUS);
+
+		add(UnitType.TIME_SQUARED, Unit.SQUARE_SECOND);
+
+		add(UnitType.UNITY,
+				Unit.ONE,
+				Unit.PERCENT);
+
+		add(UnitType.VELOCITY,
+				// customary
+				Unit.FEET_PER_SEC,
+				Unit.MILES_PER_HOUR,
+				Unit.KNOT,
+				// SI
+				Unit.METRE_PER_SEC);
+
+		add(UnitType.VOLUME,
+				// British
+				Unit.BR_BUSHEL,
+				Unit.BR_CUP,
+				Unit.BR_FLUID_OUNCE,
+				Unit.BR_GALLON,
+				Unit.BR_PINT,
+				Unit.BR_QUART,
+				Unit.BR_TABLESPOON,
+				Unit.BR_TEASPOON,
+				// customary
+				Unit.CUBIC_FOOT,
+				Unit.CUBIC_YARD,
+				Unit.CUBIC_INCH,
+				Unit.CORD,
+				// SI
+				Unit.CUBIC_METRE,
+				Unit.LITRE,
+				// US
+				Unit.US_BARREL,
+				Unit.US_BUSHEL,
+				Unit.US_CUP,
+				Unit.US_FLUID_OUNCE,
+				Unit.US_GALLON,
+				Unit.US_PINT,
+				Unit.US_QUART,
+				Unit.US_TABLESPOON,
+				Unit.US_TEASPOON);
+
+		add(UnitType.VOLUMETRIC_FLOW,
+				Unit.CUBIC_METRE_PER_SEC,
+				Unit.CUBIC_FEET_PER_SEC);
+	}
+
+	private UnitCatalogue() {
+	}
+
+	private static void add(UnitType type, Unit... units) {
+		unitsByType.put(type, Collections.unmodifiableList(Arrays.asList(units)));
+	}
+
+	/**
+	 * Get the enumerated units of measure of this type
+	 * 
+	 * @param type {@link UnitType}
+	 * @return List of {@link Unit}
+	 */
+	static List<Unit> getUnits(UnitType type) {
+		List<Unit> units = unitsByType.get(type);
+		return units != null ? units : Collections.emptyList();
+	}
+}
@@ -25,6 +25,7 @@ package org.point85.domain.uom;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +35,7 @@ import java.util.ResourceBundle;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.AttributeOverride;
 import javax.persistence.CascadeType;
@@ -124,8 +126,18 @@ public class UnitOfMeasure extends NamedObject {
 	// registry of unit conversion factor
 	private transient final Map<UnitOfMeasure, Double> conversionRegistry = new ConcurrentHashMap<UnitOfMeasure, Double>();
 
-	// cached base symbol
-	private transient String baseSymbol;
+	// index in the measurement system's conversion table if registered
+	private transient volatile int conversionIndex = -1;
+
+	// version of the unit definitions, changed when a unit used in a reduction
+	// is redefined
+	private static final AtomicInteger reductionVersion = new AtomicInteger();
+
+	// reduction to base units, valid for its version
+	private transient volatile Reducer reducer;
+
+	// true if this unit is part of a reduction
+	private transient volatile boolean reduced = false;
 
 	// symbol or abbreviation, e.g. "Vc"
 	@Column(name = "SYMBOL")
@@ -239,6 +251,7 @@ public class UnitOfMeasure extends NamedObject {
 	private void setPowerProduct(UnitOfMeasure uom1, Integer exponent1) {
 		this.uom1 = uom1;
 		this.exponent1 = exponent1;
+		onDefinitionChange();
 	}
 
 	private void setPowerProduct(UnitOfMeasure uom1, Integer exponent1, UnitOfMeasure uom2, Integer exponent2) {
@@ -246,6 +259,7 @@ public class UnitOfMeasure extends NamedObject {
 		this.exponent1 = exponent1;
 		this.uom2 = uom2;
 		this.exponent2 = exponent2;
+		onDefinitionChange();
 	}
 
 	private Integer getExponent1() {
@@ -339,6 +353,15 @@ public class UnitOfMeasure extends NamedObject {
 	 */
 	public void clearCache() {
 		conversionRegistry.clear();
+		MeasurementSystem.getConversionTable().removeFactors(conversionIndex);
+	}
+
+	int getConversionIndex() {
+		return conversionIndex;
+	}
+
+	void setConversionIndex(int index) {
+		this.conversionIndex = index;
 	}
 
 	/**
@@ -561,9 +584,9 @@ public class UnitOfMeasure extends NamedObject {
 		Reducer thisReducer = getReducer();
 		Map<UnitOfMeasure, Integer> thisMap = thisReducer.getTerms();
 
-		// other base symbol map
+		// other base symbol map, a copy since matched terms are removed
 		Reducer otherReducer = other.getReducer();
-		Map<UnitOfMeasure, Integer> otherMap = otherReducer.getTerms();
+		Map<UnitOfMeasure, Integer> otherMap = new HashMap<UnitOfMeasure, Integer>(otherReducer.getTerms());
 
 		// create a map of the unit of measure powers
 		Map<UnitOfMeasure, Integer> resultMap = new HashMap<UnitOfMeasure, Integer>();
@@ -607,7 +630,7 @@ public class UnitOfMeasure extends NamedObject {
 		}
 
 		// get the base symbol and possibly base UOM
-		Reducer resultReducer = new Reducer();
+		Reducer resultReducer = new Reducer(reductionVersion.get());
 		resultReducer.setTerms(resultMap);
 
 		// product or quotient
@@ -705,18 +728,33 @@ public class UnitOfMeasure extends NamedObject {
 	 * @throws Exception
 	 *             Exception
 	 */
-	public synchronized String getBaseSymbol() throws Exception {
-		if (baseSymbol == null) {
-			Reducer powerMap = getReducer();
-			baseSymbol = powerMap.buildBaseString();
+	public String getBaseSymbol() throws Exception {
+		return getReducer().getBaseString();
+	}
+
+	// the reduction is immutable once built, so racing threads may each build
+	// one but always read a complete one
+	private Reducer getReducer() throws Exception {
+		int version = reductionVersion.get();
+		Reducer current = reducer;
+
+		if (current == null || current.version != version) {
+			current = new Reducer(version);
+			current.explode(this);
+			current.freeze();
+			reducer = current;
 		}
-		return baseSymbol;
+		return current;
 	}
 
-	private final synchronized Reducer getReducer() throws Exception {
-		Reducer reducer = new Reducer();
-		reducer.explode(this);
-		return reducer;
+	// invalidate the reductions and conversions that may depend on this unit
+	private void onDefinitionChange() {
+		reducer = null;
+
+		if (reduced) {
+			reductionVersion.incrementAndGet();
+			MeasurementSystem.getConversionTable().clear();
+		}
 	}
 
 	/**
@@ -746,11 +784,11 @@ public class UnitOfMeasure extends NamedObject {
 
 		// unit has been previously cached, so first remove it, then cache again
 		MeasurementSystem.instance().unregisterUnit(this);
-		baseSymbol = null;
 
 		this.scalingFactor = scalingFactor;
 		this.abscissaUnit = abscissaUnit;
 		this.offset = offset;
+		onDefinitionChange();
 
 		// re-cache
 		MeasurementSystem.instance().registerUnit(this);
@@ -820,6 +858,7 @@ public class UnitOfMeasure extends NamedObject {
 	 */
 	public void setScalingFactor(double scalingFactor) {
 		this.scalingFactor = scalingFactor;
+		onDefinitionChange();
 	}
 
 	/**
@@ -839,6 +878,7 @@ public class UnitOfMeasure extends NamedObject {
 	 */
 	public void setAbscissaUnit(UnitOfMeasure abscissaUnit) {
 		this.abscissaUnit = abscissaUnit;
+		onDefinitionChange();
 	}
 
 	private double convertScalarToScalar(UnitOfMeasure targetUOM) throws Exception {
@@ -906,11 +946,26 @@ public class UnitOfMeasure extends NamedObject {
 			throw new Exception(MeasurementSystem.getMessage("unit.cannot.be.null"));
 		}
 
+		// registered units use the measurement system's table
+		int fromIndex = conversionIndex;
+		int toIndex = targetUOM.conversionIndex;
+		boolean indexed = fromIndex >= 0 && toIndex >= 0;
+
 		// first check the cache
-		Double cachedFactor = conversionRegistry.get(targetUOM);
+		Double cachedFactor = null;
+
+		if (indexed) {
+			double factor = MeasurementSystem.getConversionTable().getFactor(fromIndex, toIndex);
 
-		if (cachedFactor != null) {
-			return cachedFactor;
+			if (!Double.isNaN(factor)) {
+				return factor;
+			}
+		} else {
+			cachedFactor = conversionRegistry.get(targetUOM);
+
+			if (cachedFactor != null) {
+				return cachedFactor;
+			}
 		}
 
 		checkTypes(this, targetUOM);
@@ -962,7 +1017,11 @@ public class UnitOfMeasure extends NamedObject {
 		cachedFactor = factor * scaling;
 
 		// cache it
-		conversionRegistry.put(targetUOM, cachedFactor);
+		if (indexed) {
+			MeasurementSystem.getConversionTable().putFactor(fromIndex, toIndex, cachedFactor);
+		} else {
+			conversionRegistry.put(targetUOM, cachedFactor);
+		}
 
 		return cachedFactor;
 
@@ -1258,8 +1317,14 @@ public class UnitOfMeasure extends NamedObject {
 		// recursion counter
 		private int counter = 0;
 
-		private Reducer() {
+		// version of the unit definitions reduced
+		private final int version;
+
+		// base symbol built from the terms
+		private volatile String baseString;
 
+		private Reducer(int version) {
+			this.version = version;
 		}
 
 		@Override
@@ -1283,6 +1348,21 @@ public class UnitOfMeasure extends NamedObject {
 			explodeRecursively(unit, STARTING_LEVEL);
 		}
 
+		// make the terms read-only for sharing
+		private void freeze() {
+			terms = Collections.unmodifiableMap(terms);
+		}
+
+		private String getBaseString() throws Exception {
+			String base = baseString;
+
+			if (base == null) {
+				base = buildBaseString();
+				baseString = base;
+			}
+			return base;
+		}
+
 		private void explodeRecursively(UnitOfMeasure unit, int level) throws Exception {
 			if (++counter > MAX_RECURSIONS) {
 				String msg = MessageFormat.format(MeasurementSystem.getMessage("circular.references"),
@@ -1293,11 +1373,15 @@ public class UnitOfMeasure extends NamedObject {
 			// down a level
 			level++;
 
+			// a change to this unit invalidates the reduction
+			unit.reduced = true;
+
 			// scaling factor to abscissa unit
 			double scalingFactor = unit.getScalingFactor();
 
 			// explode the abscissa unit
 			UnitOfMeasure abscissaUnit = unit.getAbscissaUnit();
+			abscissaUnit.reduced = true;
 
 			UnitOfMeasure uom1 = abscissaUnit.getUOM1();
 			UnitOfMeasure uom2 = abscissaUnit.getUOM2();